@@ -0,0 +1,109 @@
+// src/jmh/java/com/vivacrm/crm/service/DashboardFixtures.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardResultSets.Summary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcCall;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Deterministic synthetic SP_GetDashboardData result sets for the benchmarks. */
+final class DashboardFixtures {
+
+    private static final long SEED = 42L;
+
+    private DashboardFixtures() {}
+
+    static List<StoreYoY> stores(int count) {
+        Random rnd = new Random(SEED);
+        List<StoreYoY> out = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            out.add(new StoreYoY(i, "Store " + i, money(rnd, 5_000_000), money(rnd, 5_000_000)));
+        }
+        return out;
+    }
+
+    /** Hourly labels "HH:00" starting at 06:00; some hours fall under the merge threshold. */
+    static List<LabeledAmount> hourly(int hours) {
+        Random rnd = new Random(SEED + 1);
+        List<LabeledAmount> out = new ArrayList<>(hours);
+        for (int i = 0; i < hours; i++) {
+            int hour = (6 + i) % 24;
+            BigDecimal amount = rnd.nextInt(5) == 0 ? money(rnd, 400) : money(rnd, 250_000);
+            out.add(new LabeledAmount(String.format("%02d:00", hour), amount));
+        }
+        return out;
+    }
+
+    static List<LabeledAmount> daily(int days, DateTimeFormatter labelFormat) {
+        Random rnd = new Random(SEED + 2);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        List<LabeledAmount> out = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            out.add(new LabeledAmount(labelFormat.format(start.plusDays(i)), money(rnd, 3_000_000)));
+        }
+        return out;
+    }
+
+    static Summary summary(List<StoreYoY> stores) {
+        StoreYoY top = stores.isEmpty() ? new StoreYoY(0, "", BigDecimal.ZERO, BigDecimal.ZERO) : stores.get(0);
+        for (StoreYoY s : stores) if (s.thisYear().compareTo(top.thisYear()) > 0) top = s;
+        BigDecimal total = BigDecimal.ZERO;
+        for (StoreYoY s : stores) total = total.add(s.thisYear());
+        return new Summary(
+                total, new BigDecimal("3.5"), new BigDecimal("-1.2"), total.multiply(new BigDecimal("0.97")),
+                total.multiply(new BigDecimal("1.02")), BigDecimal.valueOf(18_250), BigDecimal.valueOf(17_900),
+                "17:00", new BigDecimal("1523.40"), new BigDecimal("1498.10"),
+                top.store(), String.valueOf(top.oe()), top.thisYear());
+    }
+
+    /** The map SimpleJdbcCall#execute returns for the given shape. */
+    static Map<String, Object> spOutput(int stores, int hours, int days) {
+        List<StoreYoY> storeRows = stores(stores);
+        Map<String, Object> out = new HashMap<>();
+        out.put("#result-set-1", List.of(summary(storeRows)));
+        out.put("#result-set-2", daily(days, DateTimeFormatter.ISO_LOCAL_DATE));
+        out.put("#result-set-3", hourly(hours));
+        out.put("#result-set-4", storeRows);
+        return out;
+    }
+
+    /** Service whose SP call returns {@code out} without touching a database. */
+    static DashboardService service(Map<String, Object> out) {
+        SqlServerGuard guard = new SqlServerGuard(5, Duration.ofSeconds(30), 4, Duration.ofSeconds(2),
+                2, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        return new DashboardService(new StubCall(out), null, null, null, null, null, guard, event -> { }, null,
+                "Europe/Tirane");
+    }
+
+    private static BigDecimal money(Random rnd, int max) {
+        return BigDecimal.valueOf(rnd.nextInt(max * 100)).divide(BigDecimal.valueOf(100), 2, RoundingMode.UNNECESSARY);
+    }
+
+    private static final class StubCall extends SimpleJdbcCall {
+        private final Map<String, Object> out;
+
+        StubCall(Map<String, Object> out) {
+            super(new JdbcTemplate());
+            this.out = out;
+        }
+
+        @Override
+        public Map<String, Object> execute(SqlParameterSource parameterSource) {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// src/jmh/java/com/vivacrm/crm/service/DashboardFormattingBenchmark.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/** Per-value parsing and formatting helpers used while building the dashboard. */
+@State(Scope.Benchmark)
+public class DashboardFormattingBenchmark {
+
+    /** Label format of the daily series; later formats cost more failed parse attempts. */
+    @Param({"yyyy-MM-dd", "dd.MM.yyyy", "yyyyMMdd"})
+    public String dateFormat;
+
+    private String[] dateLabels;
+    private String[] hourLabels;
+    private BigDecimal[] amounts;
+
+    @Setup
+    public void setUp() {
+        dateLabels = labels(DashboardFixtures.daily(31, DateTimeFormatter.ofPattern(dateFormat)));
+        List<LabeledAmount> hourly = DashboardFixtures.hourly(24);
+        hourLabels = labels(hourly);
+        amounts = DashboardFixtures.stores(100).stream()
+                .map(s -> s.thisYear())
+                .toArray(BigDecimal[]::new);
+    }
+
+    @Benchmark
+    public void toDayOfWeek(Blackhole bh) {
+        for (String label : dateLabels) bh.consume(DashboardService.toDayOfWeek(label));
+    }
+
+    @Benchmark
+    public void parseHour(Blackhole bh) {
+        for (String label : hourLabels) bh.consume(DashboardService.parseHour(label));
+    }
+
+    @Benchmark
+    public void formatCompact(Blackhole bh) {
+        for (BigDecimal amount : amounts) bh.consume(DashboardService.formatCompact(amount));
+    }
+
+    private static String[] labels(List<LabeledAmount> rows) {
+        return rows.stream().map(LabeledAmount::label).toArray(String[]::new);
+    }
+}
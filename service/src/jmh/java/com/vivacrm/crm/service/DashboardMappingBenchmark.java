@@ -0,0 +1,74 @@
+// src/jmh/java/com/vivacrm/crm/service/DashboardMappingBenchmark.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardResultSets.Summary;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.Point;
+import com.vivacrm.crm.service.dto.StoreCompare;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/** Per-load post-processing of SP_GetDashboardData for different data shapes. */
+@State(Scope.Benchmark)
+public class DashboardMappingBenchmark {
+
+    @Param({"30", "120", "500"})
+    public int stores;
+
+    @Param({"16", "24"})
+    public int hours;
+
+    @Param({"7", "31"})
+    public int days;
+
+    private List<StoreYoY> storeRows;
+    private List<LabeledAmount> hourlyRows;
+    private List<LabeledAmount> dailyRows;
+    private Summary summary;
+    private DashboardService service;
+
+    @Setup
+    public void setUp() {
+        storeRows = DashboardFixtures.stores(stores);
+        hourlyRows = DashboardFixtures.hourly(hours);
+        dailyRows = DashboardFixtures.daily(days, DateTimeFormatter.ISO_LOCAL_DATE);
+        summary = DashboardFixtures.summary(storeRows);
+        service = DashboardFixtures.service(DashboardFixtures.spOutput(stores, hours, days));
+    }
+
+    @Benchmark
+    public DashboardService.TopStoreStats analyzeTopStore() {
+        return DashboardService.analyzeTopStore(storeRows,
+                DashboardService.parseOe(summary.topStoreOE()), summary.topStoreName(),
+                summary.topStoreRevenue(), summary.totalRevenue());
+    }
+
+    @Benchmark
+    public List<Point> mapHourlyCompressed() {
+        return DashboardService.mapHourlyCompressed(hourlyRows);
+    }
+
+    @Benchmark
+    public List<Point> mapDailyPointsWithDOW() {
+        return DashboardService.mapDailyPointsWithDOW(dailyRows);
+    }
+
+    @Benchmark
+    public List<StoreCompare> mapStores() {
+        return DashboardService.mapStores(storeRows);
+    }
+
+    /** Whole loadMetrics mapping against a stubbed SimpleJdbcCall. */
+    @Benchmark
+    public DashboardPayload loadMetrics() {
+        return service.loadMetrics(null);
+    }
+}
@@ -337,7 +337,7 @@ BEGIN
     ORDER BY h.H;
 
     -- 4) Store comparison
-    SELECT Store, LastYear, ThisYear
+    SELECT Store, LastYear, ThisYear, OE
     FROM #Store
     ORDER BY Store;
 END
@@ -295,7 +295,7 @@ BEGIN
     WHERE h.H <= @CutoffHour
     ORDER BY h.H;
 
-    SELECT Store, LastYear, ThisYear
+    SELECT Store, LastYear, ThisYear, OE
     FROM #Store
     ORDER BY Store;
 END
@@ -0,0 +1,74 @@
+﻿USE [wtrgksvf]
+GO
+
+/****** Object:  StoredProcedure [dbo].[SP_GetDashboardHourly]    Script Date: 10/18/2026 ******/
+SET ANSI_NULLS ON
+GO
+
+SET QUOTED_IDENTIFIER ON
+GO
+
+
+/*  Delta source for the incremental "today" dashboard.
+    Returns revenue/transactions per store and hour for @FromHour..@ToHour of
+    @ForDate (Series 'T'), the same date last year ('P') and yesterday ('Y'),
+    using the same filters as SP_GetDashboardData_Today. The service keeps
+    per-hour running totals and only asks for the newly completed hour(s).   */
+CREATE PROCEDURE [dbo].[SP_GetDashboardHourly]
+    @ForDate                 date,
+    @FromHour                int,
+    @ToHour                  int,
+    @ExcludedTokenStampSPro  bigint = 160621121005298
+AS
+BEGIN
+    SET NOCOUNT ON;
+    SET XACT_ABORT ON;
+
+    IF @FromHour < 0  SET @FromHour = 0;
+    IF @ToHour   > 23 SET @ToHour   = 23;
+
+    DECLARE @Yesterday        date = DATEADD(day, -1, @ForDate);
+    DECLARE @PrevYearSameDate date = DATEADD(year, -1, @ForDate);
+
+    IF OBJECT_ID('tempdb..#Delta') IS NOT NULL DROP TABLE #Delta;
+    SELECT
+        Series    = CASE p.Datum_Evid WHEN @ForDate THEN 'T' WHEN @PrevYearSameDate THEN 'P' ELSE 'Y' END,
+        OE        = p.Sifra_Oe,
+        HourOfDay = DATEPART(hour, p.DatumVreme),
+        Amount    = SUM(CAST(s.Kolic * s.Cena * (1 - s.Popust/100.0) AS decimal(19,2))),
+        TxCount   = COUNT_BIG(DISTINCT (
+                        CAST(p.Sifra_Oe AS varchar(10)) + ':' +
+                        CAST(p.Grp_Kasa AS varchar(10)) + ':' +
+                        CAST(p.BrKasa   AS varchar(10)) + ':' +
+                        CAST(p.Broj_Ska AS varchar(10))
+                  ))
+    INTO #Delta
+    FROM Promet p WITH (NOLOCK)
+    JOIN SPromet s WITH (NOLOCK)
+      ON s.Sifra_Oe = p.Sifra_Oe AND s.Grp_Kasa = p.Grp_Kasa AND s.BrKasa = p.BrKasa AND s.Broj_Ska = p.Broj_Ska
+    WHERE p.Datum_Evid IN (@ForDate, @PrevYearSameDate, @Yesterday)
+      AND DATEPART(hour, p.DatumVreme) BETWEEN @FromHour AND @ToHour
+      AND (s.TokenStampSPro IS NULL OR s.TokenStampSPro <> @ExcludedTokenStampSPro)
+    GROUP BY p.Datum_Evid, p.Sifra_Oe, DATEPART(hour, p.DatumVreme);
+
+    SELECT
+        d.Series,
+        d.OE,
+        Store =
+            CASE
+                WHEN o2.Sifra_Oe = 3 THEN 'VFS 03 Ferizaj'
+                WHEN o2.Sifra_Oe IS NULL
+                     THEN 'OE ' + CAST(CASE WHEN d.OE = 33 THEN 3 ELSE d.OE END AS varchar(10))
+                ELSE o2.ImeOrg
+            END,
+        d.HourOfDay,
+        d.Amount,
+        TxCount = CAST(d.TxCount AS int)
+    FROM #Delta d
+    LEFT JOIN orged AS o2 WITH (NOLOCK)
+           ON o2.Sifra_Oe = CASE WHEN d.OE = 33 THEN 3 ELSE d.OE END
+    ORDER BY d.Series, d.OE, d.HourOfDay;
+END
+GO
+
+
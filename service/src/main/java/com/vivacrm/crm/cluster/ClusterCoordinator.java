@@ -0,0 +1,118 @@
+// src/main/java/com/vivacrm/crm/cluster/ClusterCoordinator.java
+package com.vivacrm.crm.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Leader election for cluster mode ({@code app.cluster.enabled=true}): nodes
+ * compete for one lease row in {@link ClusterStore}; the holder renews it every
+ * {@code renew-interval} and is the only node that runs the SQL Server refresh
+ * jobs, publishing each new snapshot for the others.
+ * <p>
+ * Without cluster mode every node is its own leader (single-node behaviour).
+ * If the lease table cannot be reached a node also acts as leader: refreshing
+ * on several nodes costs SP calls, whereas nobody refreshing would serve
+ * stale data everywhere.
+ */
+@Component
+public class ClusterCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    static final String LEASE = "cache-refresh";
+
+    private final ClusterStore store;
+    private final boolean enabled;
+    private final Duration leaseDuration;
+    private final String nodeId;
+
+    private volatile boolean leader;
+
+    public ClusterCoordinator(ClusterStore store,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.cluster.enabled:false}") boolean enabled,
+                              @Value("${app.cluster.lease:PT30S}") Duration leaseDuration,
+                              @Value("${app.cluster.node-id:}") String nodeId) {
+        this.store = store;
+        this.enabled = enabled;
+        this.leaseDuration = leaseDuration;
+        this.nodeId = nodeId.isBlank()
+                ? ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : nodeId;
+        this.leader = !enabled;
+        Gauge.builder("cluster.leader", this, c -> c.isLeader() ? 1 : 0)
+                .description("1 if this node runs the SQL Server refresh jobs")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        try {
+            store.createTables();
+        } catch (RuntimeException e) {
+            log.warn("Could not create cluster tables: {}", e.getMessage());
+        }
+        renewLease(); // decide before the refresh scheduler warms up
+    }
+
+    /** True if this node should call the SQL Server SPs; always true outside cluster mode. */
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * True if followers can read what the leader persists to the local day
+     * store ({@code app.cluster.store=sqlite}, nodes on one host).
+     */
+    public boolean sharesDayStore() {
+        return store.isLocal();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.renew-interval:PT10S}")
+    public void renewLease() {
+        if (!enabled) return;
+        boolean now;
+        try {
+            long t = System.currentTimeMillis();
+            now = store.tryAcquire(LEASE, nodeId, t, t + leaseDuration.toMillis());
+        } catch (RuntimeException e) {
+            if (!leader) log.warn("Cluster lease unavailable, refreshing locally: {}", e.getMessage());
+            now = true;
+        }
+        if (now != leader) {
+            log.info("Node {} is now {}", nodeId, now ? "the refresh leader" : "a follower");
+        }
+        leader = now;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled || !leader) return;
+        try {
+            store.release(LEASE, nodeId);
+        } catch (RuntimeException e) {
+            log.debug("Could not release cluster lease: {}", e.getMessage());
+        }
+    }
+}
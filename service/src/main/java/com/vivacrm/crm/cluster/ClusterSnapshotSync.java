@@ -0,0 +1,180 @@
+// src/main/java/com/vivacrm/crm/cluster/ClusterSnapshotSync.java
+package com.vivacrm.crm.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivacrm.crm.service.DashboardRefreshedEvent;
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.SalesCube;
+import com.vivacrm.crm.service.StoreHourlyRefreshedEvent;
+import com.vivacrm.crm.service.StoreHourlySnapshot;
+import com.vivacrm.crm.service.StoreKpiRefreshedEvent;
+import com.vivacrm.crm.service.StoreKpiService;
+import com.vivacrm.crm.service.StoreKpiSnapshot;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Replicates the leader's snapshots to followers through {@link ClusterStore}.
+ * The leader writes every fresh dashboard payload / store KPI generation /
+ * set of per-store hourly curves as gzipped JSON; followers poll the version column and install a new
+ * snapshot with {@code adopt(...)}, which updates their caches and fires the
+ * usual refresh events (SSE, pre-rendering, scoped views) without any SP call.
+ * The stale flag travels with the snapshot, so followers flag the leader's
+ * data as stale when the leader's refresh fails.
+ * <p>
+ * Each publish bumps the stored version by one (compare-and-set on the
+ * version read just before). Losing that race means another node published
+ * as well, i.e. two nodes believe they lead; it is logged, counted
+ * ({@code cluster.publish.conflicts}) and the publish retried once on top.
+ */
+@Component
+public class ClusterSnapshotSync {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterSnapshotSync.class);
+
+    static final String KIND_DASHBOARD = "dashboard";
+    static final String KIND_STORE_KPI = "storeKpi";
+    static final String KIND_STORE_HOURLY = "storeHourly";
+
+    /** Wire form of a store KPI generation. */
+    record StoreKpiGeneration(LocalDateTime asOf, boolean stale, List<StoreKpi> stores) {}
+
+    private final ClusterCoordinator coordinator;
+    private final ClusterStore store;
+    private final DashboardService dashboardService;
+    private final StoreKpiService storeKpiService;
+    private final SalesCube salesCube;
+    private final ObjectMapper objectMapper;
+    private final Counter conflicts;
+
+    private final ConcurrentHashMap<String, Long> applied = new ConcurrentHashMap<>();
+
+    public ClusterSnapshotSync(ClusterCoordinator coordinator,
+                               ClusterStore store,
+                               DashboardService dashboardService,
+                               StoreKpiService storeKpiService,
+                               SalesCube salesCube,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry) {
+        this.coordinator = coordinator;
+        this.store = store;
+        this.dashboardService = dashboardService;
+        this.storeKpiService = storeKpiService;
+        this.salesCube = salesCube;
+        this.objectMapper = objectMapper;
+        this.conflicts = Counter.builder("cluster.publish.conflicts")
+                .description("Snapshot publishes that found another node's newer version")
+                .register(meterRegistry);
+    }
+
+    /* ---------------------- leader side ---------------------- */
+
+    @EventListener
+    public void onDashboardRefreshed(DashboardRefreshedEvent event) {
+        if (coordinator.isEnabled() && coordinator.isLeader()) {
+            publish(KIND_DASHBOARD, event.payload());
+        }
+    }
+
+    @EventListener
+    public void onStoreKpiRefreshed(StoreKpiRefreshedEvent event) {
+        if (coordinator.isEnabled() && coordinator.isLeader()) {
+            StoreKpiSnapshot s = event.current();
+            publish(KIND_STORE_KPI, new StoreKpiGeneration(s.asOf(), s.isStale(), s.all()));
+        }
+    }
+
+    @EventListener
+    public void onStoreHourlyRefreshed(StoreHourlyRefreshedEvent event) {
+        if (coordinator.isEnabled() && coordinator.isLeader()) {
+            publish(KIND_STORE_HOURLY, event.snapshot().toWire());
+        }
+    }
+
+    private synchronized void publish(String kind, Object value) {
+        try {
+            byte[] payload = encode(value);
+            long version;
+            try {
+                version = store.publish(kind, store.version(kind).orElse(0L), payload);
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                log.warn("Another node published the {} snapshot while node {} leads; publishing on top: {}",
+                        kind, coordinator.getNodeId(), e.getMessage());
+                version = store.publish(kind, store.version(kind).orElse(0L), payload);
+            }
+            applied.put(kind, version);
+        } catch (RuntimeException | IOException e) {
+            log.warn("Could not publish {} snapshot to the cluster: {}", kind, e.getMessage());
+        }
+    }
+
+    /* ---------------------- follower side ---------------------- */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void pullOnStartup() {
+        pull();
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.poll-interval:PT5S}")
+    public void pull() {
+        if (!coordinator.isEnabled() || coordinator.isLeader()) return;
+        pull(KIND_DASHBOARD);
+        pull(KIND_STORE_KPI);
+        pull(KIND_STORE_HOURLY);
+    }
+
+    private void pull(String kind) {
+        try {
+            Long version = store.version(kind).orElse(null);
+            if (version == null || version.equals(applied.get(kind))) return;
+
+            ClusterStore.Published published = store.read(kind).orElse(null);
+            if (published == null) return;
+            if (KIND_DASHBOARD.equals(kind)) {
+                dashboardService.adopt(decode(published.payload(), DashboardPayload.class));
+            } else if (KIND_STORE_HOURLY.equals(kind)) {
+                salesCube.adoptStoreHourly(StoreHourlySnapshot.fromWire(
+                        decode(published.payload(), StoreHourlySnapshot.Wire.class)));
+            } else {
+                StoreKpiGeneration g = decode(published.payload(), StoreKpiGeneration.class);
+                storeKpiService.adopt(g.stores(), g.asOf(), g.stale());
+            }
+            applied.put(kind, published.version());
+        } catch (RuntimeException | IOException e) {
+            log.warn("Could not pull {} snapshot from the cluster: {}", kind, e.getMessage());
+        }
+    }
+
+    private byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gz, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return objectMapper.readValue(gz, type);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+// src/main/java/com/vivacrm/crm/cluster/ClusterStore.java
+package com.vivacrm.crm.cluster;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Tables shared by all nodes of a cluster: a lease row per leadership name
+ * and the last published snapshot per kind. By default they live in the
+ * embedded SQLite database, a stand-in for several nodes on one host. Nodes
+ * on different hosts opt in to {@code app.cluster.store=sqlserver}, which
+ * uses its own writable pool ({@code app.cluster.datasource.*}), never the
+ * read-only reporting pool the SPs run on.
+ * Lease times are epoch millis from the writing node's clock; snapshot
+ * versions are counters and do not depend on any clock.
+ */
+@Component
+public class ClusterStore {
+
+    /** A published snapshot: monotonically increasing version plus gzipped JSON. */
+    public record Published(long version, byte[] payload) {}
+
+    private final JdbcTemplate jdbc;
+    private final boolean sqlServer;
+
+    public ClusterStore(@Qualifier("clusterDataSource") ObjectProvider<DataSource> clusterSqlServer,
+                        @Qualifier("sqliteDataSource") DataSource sqlite,
+                        @Value("${app.cluster.store:sqlite}") String store,
+                        @Value("${app.cluster.query-timeout-seconds:5}") int queryTimeoutSeconds) {
+        this.sqlServer = "sqlserver".equals(store.trim().toLowerCase(Locale.ROOT));
+        this.jdbc = new JdbcTemplate(sqlServer ? clusterSqlServer.getObject() : sqlite);
+        this.jdbc.setQueryTimeout(queryTimeoutSeconds);
+    }
+
+    /** Creates both tables if missing (needs DDL rights; otherwise run the statements once by hand). */
+    void createTables() {
+        if (sqlServer) {
+            jdbc.execute("""
+                    IF OBJECT_ID('dbo.crm_cluster_lease', 'U') IS NULL
+                    CREATE TABLE dbo.crm_cluster_lease (
+                        name       VARCHAR(64)  NOT NULL PRIMARY KEY,
+                        owner      VARCHAR(200) NOT NULL,
+                        expires_at BIGINT       NOT NULL
+                    )""");
+            jdbc.execute("""
+                    IF OBJECT_ID('dbo.crm_cluster_snapshot', 'U') IS NULL
+                    CREATE TABLE dbo.crm_cluster_snapshot (
+                        kind    VARCHAR(32)    NOT NULL PRIMARY KEY,
+                        version BIGINT         NOT NULL,
+                        payload VARBINARY(MAX) NOT NULL
+                    )""");
+        } else {
+            jdbc.execute("""
+                    CREATE TABLE IF NOT EXISTS crm_cluster_lease (
+                        name       TEXT    NOT NULL PRIMARY KEY,
+                        owner      TEXT    NOT NULL,
+                        expires_at INTEGER NOT NULL
+                    )""");
+            jdbc.execute("""
+                    CREATE TABLE IF NOT EXISTS crm_cluster_snapshot (
+                        kind    TEXT    NOT NULL PRIMARY KEY,
+                        version INTEGER NOT NULL,
+                        payload BLOB    NOT NULL
+                    )""");
+        }
+    }
+
+    /**
+     * Takes or extends the lease if it is free, expired or already ours.
+     *
+     * @return true if {@code owner} holds the lease until {@code expiresAt}
+     */
+    boolean tryAcquire(String name, String owner, long now, long expiresAt) {
+        int updated = jdbc.update(
+                "UPDATE " + table("crm_cluster_lease") + " SET owner = ?, expires_at = ?"
+                        + " WHERE name = ? AND (owner = ? OR expires_at < ?)",
+                owner, expiresAt, name, owner, now);
+        if (updated > 0) return true;
+        try {
+            return jdbc.update("INSERT INTO " + table("crm_cluster_lease") + " (name, owner, expires_at) VALUES (?, ?, ?)",
+                    name, owner, expiresAt) > 0;
+        } catch (DataIntegrityViolationException e) {
+            return false; // row exists and another node holds a live lease
+        }
+    }
+
+    /** Gives the lease up early (clean shutdown) so a follower can take over at once. */
+    void release(String name, String owner) {
+        jdbc.update("DELETE FROM " + table("crm_cluster_lease") + " WHERE name = ? AND owner = ?", name, owner);
+    }
+
+    /**
+     * Replaces the snapshot if its version is still {@code expected} (0 = none
+     * published yet).
+     *
+     * @return the new version, {@code expected + 1}
+     * @throws OptimisticLockingFailureException if another node published since {@code expected} was read
+     */
+    long publish(String kind, long expected, byte[] payload) {
+        long next = expected + 1;
+        if (expected > 0) {
+            int updated = jdbc.update(
+                    "UPDATE " + table("crm_cluster_snapshot") + " SET version = ?, payload = ? WHERE kind = ? AND version = ?",
+                    next, payload, kind, expected);
+            if (updated > 0) return next;
+        } else {
+            try {
+                jdbc.update("INSERT INTO " + table("crm_cluster_snapshot") + " (kind, version, payload) VALUES (?, ?, ?)",
+                        kind, next, payload);
+                return next;
+            } catch (DataIntegrityViolationException e) {
+                // another node inserted the first version
+            }
+        }
+        throw new OptimisticLockingFailureException(
+                "Snapshot '" + kind + "' is no longer at version " + expected + "; another node published it");
+    }
+
+    /** Current version only: the cheap query followers poll. */
+    Optional<Long> version(String kind) {
+        List<Long> rows = jdbc.query("SELECT version FROM " + table("crm_cluster_snapshot") + " WHERE kind = ?",
+                (rs, i) -> rs.getLong(1), kind);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    Optional<Published> read(String kind) {
+        List<Published> rows = jdbc.query("SELECT version, payload FROM " + table("crm_cluster_snapshot") + " WHERE kind = ?",
+                (rs, i) -> new Published(rs.getLong(1), rs.getBytes(2)), kind);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /** True if the nodes share this host's SQLite database, and with it the local day store. */
+    boolean isLocal() {
+        return !sqlServer;
+    }
+
+    private String table(String name) {
+        return sqlServer ? "dbo." + name : name;
+    }
+}
@@ -1,11 +1,159 @@
 // src/main/java/com/vivacrm/crm/config/CacheConfig.java
 package com.vivacrm.crm.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Caffeine-backed caches. Every cache is bounded; "today" entries expire with
+ * the hourly SP cut-off while closed historical days are long-lived.
+ * Current-day store KPIs are not cached here: {@code StoreKpiService} keeps
+ * them in an atomically swapped snapshot; only closed days go to
+ * {@link #STORE_KPI_DAYS}. {@link #USER_DETAILS} keeps the per-request
+ * account lookup off SQLite for a short TTL.
+ */
 @Configuration
-@EnableCaching // uses Spring’s simple ConcurrentMap cache by default
+@EnableCaching
 @EnableScheduling
-public class CacheConfig {}
+public class CacheConfig {
+
+    public static final String DASHBOARD = "dashboard";
+    public static final String STORE_KPI_DAYS = "storeKpiDays";
+    public static final String USER_DETAILS = "userDetails";
+
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${app.timezone:UTC}") String zone,
+            @Value("${app.cache.memory-budget:64MB}") DataSize memoryBudget,
+            @Value("${app.cache.today.grace:PT5M}") Duration todayGrace,
+            @Value("${app.cache.dashboard.historical-ttl:P7D}") Duration historicalTtl,
+            @Value("${app.cache.store-kpi-days.max-days:120}") long storeKpiMaxDays,
+            @Value("${app.cache.user-details.max-entries:10000}") long userDetailsMaxEntries,
+            @Value("${app.cache.user-details.ttl:PT5M}") Duration userDetailsTtl,
+            @Value("${app.cache.default.max-entries:1000}") long defaultMaxEntries,
+            @Value("${app.cache.default.ttl:PT1H}") Duration defaultTtl) {
+
+        ZoneId zoneId = ZoneId.of(zone);
+        CaffeineCacheManager manager = new CaffeineCacheManager();
+
+        // Fallback for caches created on the fly: still bounded.
+        manager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(defaultMaxEntries)
+                .expireAfterWrite(defaultTtl)
+                .recordStats());
+
+        // dashboard: today + historical days, bounded by an estimated memory budget
+        manager.registerCustomCache(DASHBOARD, Caffeine.newBuilder()
+                .maximumWeight(memoryBudget.toBytes())
+                .weigher((Object key, Object value) -> estimateBytes(value))
+                .expireAfter(new DayAwareExpiry(zoneId, todayGrace, historicalTtl))
+                .removalListener((key, value, cause) -> logEviction(DASHBOARD, key, cause))
+                .recordStats()
+                .build());
+
+        // storeKpiDays: one all-stores snapshot per closed day (immutable)
+        manager.registerCustomCache(STORE_KPI_DAYS, Caffeine.newBuilder()
+                .maximumSize(storeKpiMaxDays)
+                .expireAfter(new DayAwareExpiry(zoneId, todayGrace, historicalTtl))
+                .removalListener((key, value, cause) -> logEviction(STORE_KPI_DAYS, key, cause))
+                .recordStats()
+                .build());
+
+        // userDetails: account rows by username; evicted by UserService on change
+        manager.registerCustomCache(USER_DETAILS, Caffeine.newBuilder()
+                .maximumSize(userDetailsMaxEntries)
+                .expireAfterWrite(userDetailsTtl)
+                .recordStats()
+                .build());
+
+        return manager;
+    }
+
+    /**
+     * Today's entries live until the next hourly cut-off plus a grace period,
+     * long enough for the top-of-hour refresh to replace them before they
+     * expire; anything keyed by a past date keeps the historical TTL.
+     */
+    static final class DayAwareExpiry implements Expiry<Object, Object> {
+        private final ZoneId zoneId;
+        private final Duration todayGrace;
+        private final Duration historicalTtl;
+
+        DayAwareExpiry(ZoneId zoneId, Duration todayGrace, Duration historicalTtl) {
+            this.zoneId = zoneId;
+            this.todayGrace = todayGrace;
+            this.historicalTtl = historicalTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            LocalDateTime now = LocalDateTime.now(zoneId);
+            if (isHistorical(key, now.toLocalDate())) {
+                return historicalTtl.toNanos();
+            }
+            LocalDateTime nextCutoff = now.truncatedTo(ChronoUnit.HOURS).plusHours(1).plus(todayGrace);
+            return Duration.between(now, nextCutoff).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        /** {@code LocalDate} keys and keys like {@code 'metrics:2025-08-27'} address a closed day. */
+        private static boolean isHistorical(Object key, LocalDate today) {
+            if (key instanceof LocalDate day) return day.isBefore(today);
+            if (!(key instanceof String s)) return false;
+            int idx = s.indexOf(':');
+            if (idx < 0) return false;
+            try {
+                return LocalDate.parse(s.substring(idx + 1)).isBefore(today);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+    }
+
+    /** Rough retained-size estimate used by the memory-budget weigher. */
+    static int estimateBytes(Object value) {
+        if (value instanceof DashboardPayload p) {
+            int metrics = p.metrics() == null ? 0 : p.metrics().size();
+            int points = (p.dailySeries() == null ? 0 : p.dailySeries().size())
+                    + (p.hourlySeries() == null ? 0 : p.hourlySeries().size());
+            int stores = p.storeComparison() == null ? 0 : p.storeComparison().size();
+            return 512 + metrics * 1_024 + points * 160 + stores * 256;
+        }
+        return 1_024;
+    }
+
+    private static void logEviction(String cache, Object key, RemovalCause cause) {
+        if (cause.wasEvicted()) {
+            log.debug("Cache '{}' evicted key {} ({})", cache, key, cause);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+// src/main/java/com/vivacrm/crm/config/MetricsConfig.java
+package com.vivacrm.crm.config;
+
+import com.vivacrm.crm.schedule.CacheRefreshScheduler;
+import com.vivacrm.crm.schedule.RefreshJob;
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.SingleFlight;
+import com.vivacrm.crm.service.StoreKpiService;
+import com.vivacrm.crm.service.StoreKpiSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Application meters next to the ones Spring Boot binds on its own
+ * ({@code cache.*} for the Caffeine caches, {@code hikaricp.*} for both pools,
+ * {@code http.server.requests}). SP call timers live in {@code SqlServerGuard},
+ * JWT filter latency in {@code JwtAuthenticationFilter}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /** Duration, last success, runs/failures/retries per refresh job. */
+    @Bean
+    public MeterBinder refreshJobMetrics(CacheRefreshScheduler scheduler,
+                                         @Value("${app.timezone:UTC}") String zone) {
+        ZoneId zoneId = ZoneId.of(zone);
+        return registry -> {
+            for (RefreshJob job : scheduler.getJobs()) {
+                String name = job.getName();
+                Gauge.builder("cache.refresh.last.duration", job, j -> j.getLastDuration().toNanos() / 1e9)
+                        .tag("job", name).baseUnit("seconds")
+                        .register(registry);
+                Gauge.builder("cache.refresh.last.success", job, j -> epochSeconds(j.getLastSuccess(), zoneId))
+                        .tag("job", name).baseUnit("seconds")
+                        .description("Epoch seconds of the last successful refresh (0 = never)")
+                        .register(registry);
+                Gauge.builder("cache.refresh.running", job, j -> j.isRunning() ? 1 : 0)
+                        .tag("job", name)
+                        .register(registry);
+                FunctionCounter.builder("cache.refresh.runs", job, RefreshJob::getRuns)
+                        .tag("job", name).register(registry);
+                FunctionCounter.builder("cache.refresh.failures", job, RefreshJob::getFailures)
+                        .tag("job", name).register(registry);
+                FunctionCounter.builder("cache.refresh.retries", job, RefreshJob::getRetries)
+                        .tag("job", name).register(registry);
+            }
+        };
+    }
+
+    /** SP executions vs. callers that joined an in-flight execution. */
+    @Bean
+    public MeterBinder singleFlightMetrics(DashboardService dashboardService, StoreKpiService storeKpiService) {
+        return registry -> {
+            for (SingleFlight<?, ?> flight : List.of(dashboardService.getSpFlight(), storeKpiService.getSpFlight())) {
+                FunctionCounter.builder("sqlserver.sp.executions", flight, SingleFlight::getExecutions)
+                        .tag("procedure", flight.getName()).register(registry);
+                FunctionCounter.builder("sqlserver.sp.coalesced", flight, SingleFlight::getCoalesced)
+                        .tag("procedure", flight.getName()).register(registry);
+                Gauge.builder("sqlserver.sp.inflight", flight, SingleFlight::getInFlight)
+                        .tag("procedure", flight.getName()).register(registry);
+            }
+        };
+    }
+
+    /** The current store KPI generation lives outside the cache manager. */
+    @Bean
+    public MeterBinder storeKpiSnapshotMetrics(StoreKpiService storeKpiService,
+                                               @Value("${app.timezone:UTC}") String zone) {
+        ZoneId zoneId = ZoneId.of(zone);
+        return registry -> {
+            Gauge.builder("store.kpi.snapshot.stores", storeKpiService,
+                            s -> s.getCurrentSnapshot().size())
+                    .register(registry);
+            Gauge.builder("store.kpi.snapshot.age", storeKpiService,
+                            s -> ageSeconds(s.getCurrentSnapshot(), zoneId))
+                    .baseUnit("seconds")
+                    .register(registry);
+            Gauge.builder("store.kpi.snapshot.stale", storeKpiService,
+                            s -> s.getCurrentSnapshot().isStale() ? 1 : 0)
+                    .register(registry);
+        };
+    }
+
+    private static double epochSeconds(LocalDateTime time, ZoneId zoneId) {
+        return time == null ? 0 : time.atZone(zoneId).toEpochSecond();
+    }
+
+    private static double ageSeconds(StoreKpiSnapshot snapshot, ZoneId zoneId) {
+        if (!snapshot.isLoaded()) return Double.NaN;
+        return Duration.between(snapshot.asOf(), LocalDateTime.now(zoneId)).toMillis() / 1e3;
+    }
+}
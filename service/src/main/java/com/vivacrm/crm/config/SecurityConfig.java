@@ -1,5 +1,6 @@
 package com.vivacrm.crm.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -38,8 +39,13 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // Allow CORS preflight
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // Async (SSE /stream) and error dispatches: the original request was
+                        // already authorized, and the JWT filter does not run on them again
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         // Public endpoints (e.g., login, token issuance, registration)
                         .requestMatchers("/auth/**", "/login").permitAll()
+                        // Liveness/readiness probes; /actuator/prometheus and the rest need a token
+                        .requestMatchers("/actuator/health/**").permitAll()
                         // Everything else requires auth
                         .anyRequest().authenticated()
                 )
@@ -62,8 +68,8 @@ public class SecurityConfig {
                 // "https://your-frontend.example.com"
         ));
         cfg.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        cfg.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
-        cfg.setExposedHeaders(List.of("Location")); // if you need to read Location, etc.
+        cfg.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "If-None-Match"));
+        cfg.setExposedHeaders(List.of("Location", "ETag", "Last-Modified")); // ETag: conditional GETs from JS
         cfg.setAllowCredentials(true); // if using cookies; safe for token-based too
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
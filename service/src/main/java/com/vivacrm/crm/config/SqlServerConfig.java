@@ -3,6 +3,8 @@ package com.vivacrm.crm.config;
 
 import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.*;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -18,10 +20,23 @@ public class SqlServerConfig {
         return new HikariDataSource();
     }
 
+    /**
+     * Writable pool for the cluster lease/snapshot tables when they live in SQL
+     * Server ({@code app.cluster.store=sqlserver}); the reporting pool is read-only.
+     */
+    @Bean(name = "clusterDataSource")
+    @ConditionalOnProperty(name = "app.cluster.store", havingValue = "sqlserver")
+    @ConfigurationProperties("app.cluster.datasource")
+    public DataSource clusterDataSource() {
+        return new HikariDataSource();
+    }
+
     @Bean(name = "mssqlJdbcTemplate") // <-- renamed accordingly
-    public JdbcTemplate mssqlJdbcTemplate(@Qualifier("mssqlDataSource") DataSource ds) {
+    public JdbcTemplate mssqlJdbcTemplate(@Qualifier("mssqlDataSource") DataSource ds,
+                                          @Value("${sqlserver.query-timeout-seconds:60}") int queryTimeoutSeconds) {
         JdbcTemplate jt = new JdbcTemplate(ds);
         jt.setResultsMapCaseInsensitive(true);
+        jt.setQueryTimeout(queryTimeoutSeconds); // a hung SP must not pin a pooled connection
         return jt;
     }
 }
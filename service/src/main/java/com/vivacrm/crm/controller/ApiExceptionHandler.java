@@ -0,0 +1,47 @@
+// src/main/java/com/vivacrm/crm/controller/ApiExceptionHandler.java
+package com.vivacrm.crm.controller;
+
+import com.vivacrm.crm.service.SqlServerUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * SQL Server being down, slow or shed by the guard is an availability problem,
+ * not a bug: answer 503 with a Retry-After hint instead of a 500 stack trace.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiExceptionHandler.class);
+
+    private final long retryAfterSeconds;
+
+    public ApiExceptionHandler(@Value("${sqlserver.guard.open-duration:PT30S}") Duration retryAfter) {
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+    }
+
+    @ExceptionHandler({
+            SqlServerUnavailableException.class,
+            DataAccessResourceFailureException.class,
+            QueryTimeoutException.class,
+            TransientDataAccessException.class
+    })
+    public ResponseEntity<Map<String, String>> sqlServerUnavailable(RuntimeException e) {
+        log.warn("SQL Server unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", "SQL Server is temporarily unavailable"));
+    }
+}
@@ -5,25 +5,33 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.vivacrm.crm.security.CustomUserDetailsService;
 import com.vivacrm.crm.security.JwtService;
 import com.vivacrm.crm.user.DeviceTokenService;
+import com.vivacrm.crm.user.RefreshTokenService;
 import com.vivacrm.crm.user.User;
 import com.vivacrm.crm.user.UserRepository;
 import com.vivacrm.crm.user.UserService;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -37,13 +45,18 @@ public class AuthController {
     private final UserRepository userRepository;
     private final DeviceTokenService deviceTokenService;
     private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
+    private final CustomUserDetailsService userDetailsService;
 
-    public AuthController(AuthenticationManager authenticationManager, UserService userService, UserRepository userRepository, DeviceTokenService deviceTokenService, JwtService jwtService) {
+    public AuthController(AuthenticationManager authenticationManager, UserService userService, UserRepository userRepository, DeviceTokenService deviceTokenService, JwtService jwtService,
+                          RefreshTokenService refreshTokenService, CustomUserDetailsService userDetailsService) {
         this.authenticationManager = authenticationManager;
         this.userService = userService;
         this.userRepository = userRepository;
         this.deviceTokenService = deviceTokenService;
         this.jwtService = jwtService;
+        this.refreshTokenService = refreshTokenService;
+        this.userDetailsService = userDetailsService;
     }
 
     @PostMapping("/register")
@@ -83,11 +96,10 @@ public class AuthController {
         log.debug("Remember device: {}", rememberDevice);
 
         try {
-            authenticationManager.authenticate(
+            Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(username, password));
 
             User user = userRepository.findByUsername(username).orElseThrow();
-            String jwtToken = jwtService.generateToken(username);
 
             if (user.isTotpEnabled()) {
                 log.info("TOTP is enabled for user {}", username);
@@ -104,11 +116,7 @@ public class AuthController {
 
                     return ResponseEntity.ok()
                             .header(HttpHeaders.SET_COOKIE, cookie.toString())
-                            .body(Map.of(
-                                    "authenticated", true,
-                                    "deviceToken", deviceToken,
-                                    "token", jwtToken
-                            ));
+                            .body(tokens(user, authentication, Map.of("deviceToken", deviceToken)));
                 }
 
                 // ❌ OTP is required if no valid deviceToken
@@ -138,27 +146,17 @@ public class AuthController {
 
                     return ResponseEntity.ok()
                             .header(HttpHeaders.SET_COOKIE, cookie.toString())
-                            .body(Map.of(
-                                    "authenticated", true,
-                                    "deviceToken", newToken,
-                                    "token", jwtToken
-                            ));
+                            .body(tokens(user, authentication, Map.of("deviceToken", newToken)));
                 }
 
                 // ✅ OTP accepted but no token stored
                 log.debug("OTP accepted but device not remembered");
-                return ResponseEntity.ok(Map.of(
-                        "authenticated", true,
-                        "token", jwtToken
-                ));
+                return ResponseEntity.ok(tokens(user, authentication, Map.of()));
             }
 
 
             log.info("TOTP not enabled; login successful for user {}", username);
-            return ResponseEntity.ok(Map.of(
-                    "authenticated", true,
-                    "token", jwtToken
-            ));
+            return ResponseEntity.ok(tokens(user, authentication, Map.of()));
 
         } catch (AuthenticationException e) {
             log.warn("Authentication failed for user {}: {}", username, e.getMessage());
@@ -166,6 +164,35 @@ public class AuthController {
         }
     }
 
+    /**
+     * Exchanges a refresh token (claims mode) for a new access token and a new
+     * refresh token; the presented one is revoked.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> body) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(body.get("refreshToken")).orElse(null);
+        if (rotation == null) {
+            return ResponseEntity.status(401).build();
+        }
+        UserDetails userDetails;
+        try {
+            userDetails = userDetailsService.loadUserByUsername(rotation.user().getUsername());
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(Map.of(
+                "token", jwtService.generateToken(userDetails),
+                "refreshToken", rotation.refreshToken()
+        ));
+    }
+
+    /** Revokes a refresh token; access tokens already issued expire on their own. */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody Map<String, String> body) {
+        refreshTokenService.revoke(body.get("refreshToken"));
+        return ResponseEntity.noContent().build();
+    }
+
 
     @GetMapping("/totp-status")
     public ResponseEntity<?> totpStatus(@RequestParam String username) {
@@ -207,4 +234,32 @@ public class AuthController {
                 "totpEnabled", user.isTotpEnabled()
         ));
     }
+
+    /**
+     * Sets the stores a user may see (admins only); {@code storeScope} uses the
+     * {@code StoreScopeResolver} format, blank or missing = all stores. Claims-mode
+     * access tokens keep the old scope until they expire.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/user/{username}/store-scope")
+    public ResponseEntity<?> setStoreScope(@PathVariable String username, @RequestBody Map<String, String> body) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        userService.setStoreScope(user, body.get("storeScope"));
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Login response: access token, plus a refresh token in claims mode. */
+    private Map<String, Object> tokens(User user, Authentication authentication, Map<String, Object> extra) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("authenticated", true);
+        body.putAll(extra);
+        body.put("token", jwtService.generateToken((UserDetails) authentication.getPrincipal()));
+        if (jwtService.isClaimsMode()) {
+            body.put("refreshToken", refreshTokenService.issue(user));
+        }
+        return body;
+    }
 }
@@ -0,0 +1,109 @@
+// src/main/java/com/vivacrm/crm/controller/CubeController.java
+package com.vivacrm.crm.controller;
+
+import com.vivacrm.crm.security.StoreScopeResolver;
+import com.vivacrm.crm.service.JsonRenderCache;
+import com.vivacrm.crm.service.SalesCube;
+import com.vivacrm.crm.service.SalesCube.Dimension;
+import com.vivacrm.crm.service.dto.CubeSlice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ad-hoc slices of the in-memory sales cube, e.g. a weekday x hour heatmap or
+ * per-store totals of a date range, without an SP round-trip.
+ */
+@RestController
+@RequestMapping("/cube")
+public class CubeController {
+
+    private static final int MAX_DAYS = 800;
+
+    private final SalesCube cube;
+    private final JsonRenderCache renderCache;
+    private final StoreScopeResolver scopes;
+
+    public CubeController(SalesCube cube, JsonRenderCache renderCache, StoreScopeResolver scopes) {
+        this.cube = cube;
+        this.renderCache = renderCache;
+        this.scopes = scopes;
+    }
+
+    /**
+     * Revenue, transactions and basket of `from..to` (default: `to` only)
+     * grouped by `total|day|hour|weekday|weekday-hour|store`, over the
+     * caller's store scope.
+     */
+    @GetMapping("/slice")
+    public ResponseEntity<byte[]> slice(@RequestParam(name = "by", defaultValue = "total") String by,
+                                        @RequestParam(name = "from", required = false)
+                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(name = "to")
+                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        WebRequest request) {
+        Dimension dimension = Dimension.fromParam(by);
+        LocalDate start = from != null ? from : to;
+        if (dimension == null || start.isAfter(to) || ChronoUnit.DAYS.between(start, to) >= MAX_DAYS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SalesCube.Slice slice = cube.slice(dimension, scopes.current(), start, to);
+        CubeSlice body = new CubeSlice(by.trim().toLowerCase(Locale.ROOT), start, to,
+                slice.complete(), slice.asOf(), rows(slice));
+        return JsonResponses.conditional(renderCache.renderUncached(body, slice.asOf()), request);
+    }
+
+    private static List<CubeSlice.Row> rows(SalesCube.Slice slice) {
+        List<CubeSlice.Row> rows = new ArrayList<>(slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            String key;
+            String label;
+            switch (slice.by()) {
+                case DAY -> {
+                    LocalDate day = slice.from().plusDays(i);
+                    key = day.toString();
+                    label = weekday(day.getDayOfWeek());
+                }
+                case HOUR -> {
+                    key = String.valueOf(i);
+                    label = i + "h";
+                }
+                case WEEKDAY -> {
+                    key = String.valueOf(i + 1);
+                    label = weekday(DayOfWeek.of(i + 1));
+                }
+                case WEEKDAY_HOUR -> {
+                    key = (i / 24 + 1) + ":" + (i % 24);
+                    label = weekday(DayOfWeek.of(i / 24 + 1)) + " " + (i % 24) + "h";
+                }
+                case STORE -> {
+                    key = String.valueOf(slice.storeId(i));
+                    label = slice.storeName(i);
+                }
+                default -> {
+                    key = "total";
+                    label = "Total";
+                }
+            }
+            rows.add(new CubeSlice.Row(key, label, slice.revenue(i), slice.transactions(i), slice.basket(i)));
+        }
+        return rows;
+    }
+
+    private static String weekday(DayOfWeek day) {
+        return day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+    }
+}
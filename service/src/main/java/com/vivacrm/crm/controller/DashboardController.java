@@ -2,42 +2,116 @@
 package com.vivacrm.crm.controller;
 
 import com.vivacrm.crm.schedule.CacheRefreshScheduler;
+import com.vivacrm.crm.schedule.HistoryPrefetcher;
+import com.vivacrm.crm.security.StoreScopeResolver;
+import com.vivacrm.crm.service.DashboardRangeService;
 import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.JsonRenderCache;
+import com.vivacrm.crm.service.ScopedViews;
+import com.vivacrm.crm.service.StoreKpiService;
 import com.vivacrm.crm.service.dto.DashboardPayload;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/dashboard")
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final DashboardRangeService rangeService;
+    private final StoreKpiService storeKpiService;
     private final CacheRefreshScheduler refreshScheduler;
+    private final HistoryPrefetcher prefetcher;
+    private final JsonRenderCache renderCache;
+    private final ScopedViews scopedViews;
+    private final StoreScopeResolver scopes;
 
     public DashboardController(DashboardService dashboardService,
-                               CacheRefreshScheduler refreshScheduler) {
+                               DashboardRangeService rangeService,
+                               StoreKpiService storeKpiService,
+                               CacheRefreshScheduler refreshScheduler,
+                               HistoryPrefetcher prefetcher,
+                               JsonRenderCache renderCache,
+                               ScopedViews scopedViews,
+                               StoreScopeResolver scopes) {
         this.dashboardService = dashboardService;
+        this.rangeService = rangeService;
+        this.storeKpiService = storeKpiService;
         this.refreshScheduler = refreshScheduler;
+        this.prefetcher = prefetcher;
+        this.renderCache = renderCache;
+        this.scopedViews = scopedViews;
+        this.scopes = scopes;
     }
 
-    /** Returns cached metrics unless `refresh=true` is provided. */
+    /**
+     * Returns cached metrics unless `refresh=true` is provided. The payload is
+     * served as pre-rendered JSON with an ETag; `If-None-Match` gets a 304.
+     * Users with a store scope get the precomputed view for their stores.
+     * A historical `forDate` also prefetches the days the user is likely to open next.
+     */
     @GetMapping("/metrics")
-    public DashboardPayload metrics(
+    public ResponseEntity<byte[]> metrics(
             @RequestParam(name = "refresh", defaultValue = "false") boolean refresh,
             @RequestParam(name = "forDate", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime forDate) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime forDate,
+            WebRequest request) {
 
         refreshScheduler.refreshIfStale();
 
+        DashboardPayload payload;
         if (forDate != null) {
-            return dashboardService.getMetrics(forDate);
+            payload = dashboardService.getMetrics(forDate);
+            prefetcher.onRequested(forDate); // the previous days are likely next
+        } else {
+            payload = refresh ? dashboardService.refreshMetrics() : dashboardService.getMetrics();
         }
-        return refresh ? dashboardService.refreshMetrics() : dashboardService.getMetrics();
+        payload = scopedViews.dashboard(payload, scopes.current());
+        return JsonResponses.conditional(renderCache.render(payload, payload.asOf()), request);
     }
 
-    /** Manually evict cache (reset). */
+    /**
+     * Week/month/year-to-date dashboard ending at `to` (default today), e.g.
+     * `period=mtd`. Totals, daily buckets and store comparison are summed
+     * from the per-day payloads; store scopes apply as for `/metrics`.
+     */
+    @GetMapping("/range")
+    public ResponseEntity<byte[]> range(
+            @RequestParam(name = "period") String period,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request) {
+
+        Optional<DashboardRangeService.Period> parsed = DashboardRangeService.Period.parse(period);
+        if (parsed.isEmpty()) return ResponseEntity.badRequest().build();
+
+        DashboardPayload payload = rangeService.getRange(parsed.get(), to);
+        payload = scopedViews.dashboard(payload, scopes.current());
+        return JsonResponses.conditional(renderCache.render(payload, payload.asOf()), request);
+    }
+
+    /**
+     * Drops the cached and persisted data (dashboard, ranges covering it and
+     * store KPIs) of one closed day, e.g. after it was loaded while the ETL was
+     * still running. Admins only.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/days/{day}/reset")
+    public ResponseEntity<Void> resetDay(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        dashboardService.invalidateDay(day);
+        rangeService.invalidateDay(day);
+        storeKpiService.invalidateDay(day);
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Manually evict cache (reset). Admins only. */
+    @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/metrics/reset")
     public ResponseEntity<Void> reset() {
         dashboardService.resetMetrics();
@@ -0,0 +1,61 @@
+// src/main/java/com/vivacrm/crm/controller/JsonResponses.java
+package com.vivacrm.crm.controller;
+
+import com.vivacrm.crm.service.RenderedJson;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Writes pre-rendered JSON with validators: {@code ETag} + {@code Last-Modified}.
+ * Spring's {@code ResponseEntity} handling evaluates {@code If-None-Match} /
+ * {@code If-Modified-Since} against them and turns a match into
+ * {@code 304 Not Modified} without writing the body.
+ * Clients sending {@code Accept-Encoding: gzip} get the pre-compressed bytes.
+ */
+final class JsonResponses {
+
+    private JsonResponses() {}
+
+    static ResponseEntity<byte[]> conditional(RenderedJson rendered, WebRequest request) {
+        boolean gzip = rendered.hasGzip() && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .eTag(gzip ? rendered.gzipEtag() : rendered.etag())
+                .cacheControl(CacheControl.noCache()) // always revalidate; 304s are cheap
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (rendered.lastModified() >= 0) ok.lastModified(rendered.lastModified());
+        if (gzip) {
+            return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(rendered.gzip());
+        }
+        return ok.body(rendered.json());
+    }
+
+    /** True if the header lists {@code gzip} (or {@code *}) without {@code q=0}. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && isZero(param.substring(2))) refused = true;
+            }
+            if (!refused) return true;
+        }
+        return false;
+    }
+
+    private static boolean isZero(String q) {
+        try {
+            return Double.parseDouble(q) == 0d;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// src/main/java/com/vivacrm/crm/controller/LiveUpdateController.java
+package com.vivacrm.crm.controller;
+
+import com.vivacrm.crm.push.LiveUpdateHub;
+import com.vivacrm.crm.security.StoreScopeResolver;
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.ScopedViews;
+import com.vivacrm.crm.service.StoreKpiService;
+import com.vivacrm.crm.service.StoreKpiSnapshot;
+import com.vivacrm.crm.service.StoreScope;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Push channel replacing dashboard/KPI polling: subscribe once and receive
+ * {@code dashboard} and per-store {@code kpi} events right after each refresh.
+ */
+@RestController
+public class LiveUpdateController {
+
+    private final LiveUpdateHub hub;
+    private final DashboardService dashboardService;
+    private final StoreKpiService kpiService;
+    private final ScopedViews scopedViews;
+    private final StoreScopeResolver scopes;
+
+    public LiveUpdateController(LiveUpdateHub hub,
+                                DashboardService dashboardService,
+                                StoreKpiService kpiService,
+                                ScopedViews scopedViews,
+                                StoreScopeResolver scopes) {
+        this.hub = hub;
+        this.dashboardService = dashboardService;
+        this.kpiService = kpiService;
+        this.scopedViews = scopedViews;
+        this.scopes = scopes;
+    }
+
+    /**
+     * {@code topics}: any of {@code dashboard,kpi} (default both);
+     * {@code stores}: limit {@code kpi} events to these store ids (default all).
+     * The current state is sent first, then only changes, all within the
+     * caller's store scope.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @RequestParam(name = "topics", defaultValue = "dashboard,kpi") List<String> topics,
+            @RequestParam(name = "stores", required = false) List<Integer> stores) {
+        boolean dashboard = topics.contains(LiveUpdateHub.EVENT_DASHBOARD);
+        Set<Integer> storeIds = topics.contains(LiveUpdateHub.EVENT_KPI)
+                ? (stores == null ? Set.of() : Set.copyOf(stores))
+                : null;
+
+        StoreScope scope = scopes.current();
+        SseEmitter emitter = hub.subscribe(dashboard, storeIds, scope);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        hub.sendInitial(emitter, dashboard ? currentDashboard(scope) : null, currentKpis(storeIds, scope));
+        return ResponseEntity.ok(emitter);
+    }
+
+    private DashboardPayload currentDashboard(StoreScope scope) {
+        try {
+            return scopedViews.dashboard(dashboardService.getMetrics(), scope);
+        } catch (DataAccessException e) {
+            return null; // the next refresh event will deliver it
+        }
+    }
+
+    private List<StoreKpi> currentKpis(Set<Integer> storeIds, StoreScope scope) {
+        if (storeIds == null) return List.of();
+        StoreKpiSnapshot snapshot = scopedViews.storeKpis(kpiService.getCurrentSnapshot(), scope);
+        if (storeIds.isEmpty()) return snapshot.all();
+        List<StoreKpi> out = new ArrayList<>(storeIds.size());
+        for (int id : storeIds) {
+            StoreKpi kpi = snapshot.get(id);
+            if (kpi != null) out.add(kpi);
+        }
+        return out;
+    }
+}
@@ -1,8 +1,22 @@
 package com.vivacrm.crm.controller;
 
 import com.vivacrm.crm.schedule.CacheRefreshScheduler;
+import com.vivacrm.crm.schedule.HistoryPrefetcher;
+import com.vivacrm.crm.security.StoreScopeResolver;
+import com.vivacrm.crm.service.JsonRenderCache;
+import com.vivacrm.crm.service.LeaderboardService;
+import com.vivacrm.crm.service.RenderedJson;
+import com.vivacrm.crm.service.SalesCube;
+import com.vivacrm.crm.service.ScopedViews;
 import com.vivacrm.crm.service.StoreKpiService;
+import com.vivacrm.crm.service.StoreKpiSnapshot;
+import com.vivacrm.crm.service.StoreKpiSort;
+import com.vivacrm.crm.service.StoreLeaderboard;
+import com.vivacrm.crm.service.StoreScope;
+import com.vivacrm.crm.service.dto.Leaderboard;
 import com.vivacrm.crm.service.dto.StoreKpi;
+import com.vivacrm.crm.service.dto.StoreHourly;
+import com.vivacrm.crm.service.dto.StoreKpiBatch;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -11,33 +25,136 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/stores")
 public class StoreController {
 
     private final StoreKpiService kpiService;
+    private final LeaderboardService leaderboardService;
+    private final SalesCube salesCube;
     private final CacheRefreshScheduler refreshScheduler;
+    private final HistoryPrefetcher prefetcher;
+    private final JsonRenderCache renderCache;
+    private final ScopedViews scopedViews;
+    private final StoreScopeResolver scopes;
 
     public StoreController(StoreKpiService kpiService,
-                           CacheRefreshScheduler refreshScheduler) {
+                           LeaderboardService leaderboardService,
+                           SalesCube salesCube,
+                           CacheRefreshScheduler refreshScheduler,
+                           HistoryPrefetcher prefetcher,
+                           JsonRenderCache renderCache,
+                           ScopedViews scopedViews,
+                           StoreScopeResolver scopes) {
         this.kpiService = kpiService;
+        this.leaderboardService = leaderboardService;
+        this.salesCube = salesCube;
         this.refreshScheduler = refreshScheduler;
+        this.prefetcher = prefetcher;
+        this.renderCache = renderCache;
+        this.scopedViews = scopedViews;
+        this.scopes = scopes;
     }
 
+    /**
+     * One store's KPI as pre-rendered JSON with an ETag; `If-None-Match` gets a 304.
+     * Stores outside the caller's scope read as unknown.
+     */
     @GetMapping("/{storeId}/kpi")
-    public StoreKpi kpi(@PathVariable int storeId,
-                        @RequestParam(name = "refresh", defaultValue = "false") boolean refresh,
-                        @RequestParam(name = "forDate", required = false)
-                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime forDate) {
+    public ResponseEntity<byte[]> kpi(@PathVariable int storeId,
+                                      @RequestParam(name = "refresh", defaultValue = "false") boolean refresh,
+                                      @RequestParam(name = "forDate", required = false)
+                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime forDate,
+                                      WebRequest request) {
         refreshScheduler.refreshIfStale();
 
+        StoreKpiSnapshot snapshot;
         if (forDate != null) {
-            return kpiService.getStoreKpi(storeId, forDate);
+            snapshot = kpiService.getSnapshot(forDate);
+            prefetcher.onRequested(forDate);
+        } else {
+            snapshot = refresh ? kpiService.refreshAllStores() : kpiService.getSnapshot();
         }
-        return refresh ? kpiService.refreshStoreKpi(storeId) : kpiService.getStoreKpi(storeId);
+        snapshot = scopedViews.storeKpis(snapshot, scopes.current());
+        StoreKpi kpi = snapshot.get(storeId);
+        if (kpi == null) {
+            return ResponseEntity.ok().build();
+        }
+        return JsonResponses.conditional(renderCache.render(kpi, snapshot.asOf()), request);
+    }
+
+    /**
+     * Today's hourly revenue of one store next to the same date last year, up
+     * to the last completed hour. All stores are loaded together after each
+     * hourly refresh (by the cluster leader), so this never calls SQL Server;
+     * each store's curve is rendered once per load. Stores outside the
+     * caller's scope, or without data yet today, read as unknown.
+     */
+    @GetMapping("/{storeId}/hourly")
+    public ResponseEntity<byte[]> hourly(@PathVariable int storeId, WebRequest request) {
+        StoreHourly curve = scopes.current().contains(storeId) ? salesCube.storeHourly().get(storeId) : null;
+        if (curve == null) {
+            return ResponseEntity.ok().build();
+        }
+        return JsonResponses.conditional(renderCache.render(curve, curve.asOf()), request);
+    }
+
+    /**
+     * Batch KPIs in one round-trip: all stores, or only {@code ids}, optionally
+     * sorted by {@code revenue|tx|pct} (descending) and limited to {@code top};
+     * always within the caller's store scope.
+     */
+    @GetMapping("/kpi")
+    public ResponseEntity<byte[]> kpis(@RequestParam(name = "ids", required = false) List<Integer> ids,
+                                       @RequestParam(name = "sort", required = false) String sort,
+                                       @RequestParam(name = "top", required = false) Integer top,
+                                       @RequestParam(name = "forDate", required = false)
+                                       @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime forDate,
+                                       WebRequest request) {
+        StoreKpiSort order = StoreKpiSort.fromParam(sort);
+        if ((sort != null && order == null) || (top != null && top < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        refreshScheduler.refreshIfStale();
+
+        StoreKpiSnapshot snapshot = scopedViews.storeKpis(kpiService.getSnapshot(forDate), scopes.current());
+        prefetcher.onRequested(forDate);
+        StoreKpiBatch batch = kpiService.select(snapshot, ids, order, top);
+        boolean shared = (ids == null || ids.isEmpty()) && top == null; // one instance per snapshot and sort
+        RenderedJson rendered = shared
+                ? renderCache.render(batch, batch.asOf())
+                : renderCache.renderUncached(batch, batch.asOf());
+        return JsonResponses.conditional(rendered, request);
+    }
+
+    /**
+     * Stores ranked by {@code revenue} (default), {@code tx} or {@code pct}
+     * (YoY growth) with rank change since the previous hour and the gap to the
+     * neighbours; ranks are chain-wide, entries limited to the caller's scope.
+     */
+    @GetMapping("/leaderboard")
+    public ResponseEntity<byte[]> leaderboard(@RequestParam(name = "by", defaultValue = "revenue") String by,
+                                              @RequestParam(name = "top", required = false) Integer top,
+                                              WebRequest request) {
+        StoreKpiSort order = StoreKpiSort.fromParam(by);
+        if (order == null || (top != null && top < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        refreshScheduler.refreshIfStale();
+
+        StoreLeaderboard board = leaderboardService.getLeaderboard();
+        StoreScope scope = scopes.current();
+        if (scope.isAll() && top == null) {
+            Leaderboard full = board.full(order); // one instance per generation and order
+            return JsonResponses.conditional(renderCache.render(full, full.asOf()), request);
+        }
+        Leaderboard view = board.view(order, scope, top);
+        return JsonResponses.conditional(renderCache.renderUncached(view, view.asOf()), request);
     }
 
     /** Manually evict all cached KPI entries. */
@@ -0,0 +1,278 @@
+// src/main/java/com/vivacrm/crm/push/LiveUpdateHub.java
+package com.vivacrm.crm.push;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivacrm.crm.service.DashboardRefreshedEvent;
+import com.vivacrm.crm.service.ScopedViews;
+import com.vivacrm.crm.service.StoreKpiRefreshedEvent;
+import com.vivacrm.crm.service.StoreKpiSnapshot;
+import com.vivacrm.crm.service.StoreScope;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events fan-out of dashboard and store KPI refreshes.
+ * <p>
+ * Idle subscribers cost no thread (servlet async). When a refresh publishes,
+ * each update is serialized to JSON once and queued for every matching
+ * subscriber. Every subscriber has a bounded queue drained by at most one
+ * virtual thread at a time, so its events arrive in publish order and one
+ * slow client never delays the others or the refresh job; a client that
+ * falls {@code app.push.queue-capacity} batches behind is disconnected (its
+ * EventSource reconnects and starts from the current state). Per-store KPI
+ * events are sent only for stores whose numbers changed. Subscribers only
+ * receive their store scope: KPI events are filtered by it and dashboard
+ * events carry the scoped view.
+ */
+@Component
+public class LiveUpdateHub {
+
+    public static final String EVENT_DASHBOARD = "dashboard";
+    public static final String EVENT_KPI = "kpi";
+
+    private static final Logger log = LoggerFactory.getLogger(LiveUpdateHub.class);
+
+    private final ObjectMapper objectMapper;
+    private final ScopedViews scopedViews;
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+    private final int queueCapacity;
+
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger slots = new AtomicInteger(); // registered subscribers, for the cap
+    private final ExecutorService sendExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sse-send-", 0).factory());
+
+    public LiveUpdateHub(ObjectMapper objectMapper,
+                         ScopedViews scopedViews,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.push.timeout:PT30M}") Duration timeout,
+                         @Value("${app.push.max-subscribers:10000}") int maxSubscribers,
+                         @Value("${app.push.queue-capacity:32}") int queueCapacity) {
+        this.objectMapper = objectMapper;
+        this.scopedViews = scopedViews;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        Gauge.builder("push.subscribers", subscribers, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Registers a subscriber.
+     *
+     * @param dashboard receive {@value #EVENT_DASHBOARD} events
+     * @param storeIds  stores to receive {@value #EVENT_KPI} events for; null = none, empty = all
+     * @param scope     stores the subscriber may see at all
+     * @return the emitter, or null if the subscriber limit is reached
+     */
+    public SseEmitter subscribe(boolean dashboard, Set<Integer> storeIds, StoreScope scope) {
+        if (slots.incrementAndGet() > maxSubscribers) {
+            slots.decrementAndGet();
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber sub = new Subscriber(emitter, dashboard, storeIds, scope, queueCapacity);
+        subscribers.put(emitter, sub);
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onTimeout(() -> remove(sub));
+        emitter.onError(e -> remove(sub));
+        return emitter;
+    }
+
+    /** Sends the current state to one new subscriber so it does not start empty. */
+    public void sendInitial(SseEmitter emitter, Object dashboard, Collection<StoreKpi> kpis) {
+        Subscriber sub = subscribers.get(emitter);
+        if (sub == null) return;
+        List<SseEmitter.SseEventBuilder> batch = new ArrayList<>(kpis.size() + 1);
+        if (dashboard != null) batch.add(event(EVENT_DASHBOARD, null, toJson(dashboard)));
+        for (StoreKpi kpi : kpis) {
+            batch.add(event(EVENT_KPI, String.valueOf(kpi.storeId()), toJson(kpi)));
+        }
+        enqueue(sub, batch);
+    }
+
+    @EventListener
+    public void onDashboardRefreshed(DashboardRefreshedEvent event) {
+        if (subscribers.isEmpty()) return;
+        Map<StoreScope, List<Update>> byScope = new HashMap<>(); // serialized once per scope
+        for (Subscriber sub : subscribers.values()) {
+            if (!sub.dashboard) continue;
+            List<Update> updates = byScope.computeIfAbsent(sub.scope, scope -> dashboardUpdate(event, scope));
+            if (!updates.isEmpty()) send(sub, updates);
+        }
+    }
+
+    @EventListener
+    public void onStoreKpiRefreshed(StoreKpiRefreshedEvent event) {
+        if (subscribers.isEmpty()) return;
+        List<Update> updates = new ArrayList<>();
+        for (StoreKpi kpi : changedStores(event.previous(), event.current())) {
+            String json = toJson(kpi); // once per store, shared by all subscribers
+            if (json != null) updates.add(new Update(EVENT_KPI, kpi.storeId(), json));
+        }
+        if (updates.isEmpty()) return;
+        for (Subscriber sub : subscribers.values()) {
+            if (sub.storeIds != null) send(sub, updates);
+        }
+    }
+
+    /** Comment line every interval keeps idle connections open through proxies. */
+    @Scheduled(fixedDelayString = "${app.push.heartbeat:PT25S}")
+    public void heartbeat() {
+        for (Subscriber sub : subscribers.values()) {
+            enqueue(sub, List.of(SseEmitter.event().comment("ping")));
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber sub : subscribers.values()) sub.emitter.complete();
+        subscribers.clear();
+        slots.set(0);
+        sendExecutor.shutdownNow();
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    /** Queues the updates this subscriber wants as one batch. */
+    private void send(Subscriber sub, List<Update> updates) {
+        List<SseEmitter.SseEventBuilder> batch = new ArrayList<>(updates.size());
+        for (Update u : updates) {
+            boolean kpi = EVENT_KPI.equals(u.name());
+            if (kpi && !sub.wants(u.storeId())) continue;
+            batch.add(event(u.name(), kpi ? String.valueOf(u.storeId()) : null, u.json()));
+        }
+        if (!batch.isEmpty()) enqueue(sub, batch);
+    }
+
+    /** Adds a batch to the subscriber's queue and starts its writer if it is idle; drops the subscriber when full. */
+    private void enqueue(Subscriber sub, List<SseEmitter.SseEventBuilder> batch) {
+        if (!sub.queue.offer(batch)) {
+            drop(sub, new IllegalStateException("SSE subscriber fell " + queueCapacity + " batches behind"));
+            return;
+        }
+        if (sub.writing.compareAndSet(false, true)) {
+            try {
+                sendExecutor.execute(() -> drain(sub));
+            } catch (RejectedExecutionException e) {
+                sub.writing.set(false); // shutting down
+            }
+        }
+    }
+
+    /** Writes queued batches in order; the only thread writing to this subscriber until it returns. */
+    private void drain(Subscriber sub) {
+        do {
+            List<SseEmitter.SseEventBuilder> batch;
+            while ((batch = sub.queue.poll()) != null) {
+                try {
+                    for (SseEmitter.SseEventBuilder e : batch) sub.emitter.send(e);
+                } catch (IOException | IllegalStateException e) {
+                    drop(sub, e);
+                    sub.queue.clear();
+                    sub.writing.set(false);
+                    return;
+                }
+            }
+            sub.writing.set(false);
+            // a batch queued after the last poll but before the flag cleared found the writer busy
+        } while (!sub.queue.isEmpty() && sub.writing.compareAndSet(false, true));
+    }
+
+    private void drop(Subscriber sub, Exception e) {
+        if (remove(sub)) {
+            log.debug("Dropping SSE subscriber: {}", e.toString());
+            sub.emitter.completeWithError(e);
+        }
+    }
+
+    private boolean remove(Subscriber sub) {
+        if (!subscribers.remove(sub.emitter, sub)) return false;
+        slots.decrementAndGet();
+        return true;
+    }
+
+    private static SseEmitter.SseEventBuilder event(String name, String id, String json) {
+        SseEmitter.SseEventBuilder b = SseEmitter.event().name(name).data(json, MediaType.APPLICATION_JSON);
+        return id == null ? b : b.id(id);
+    }
+
+    private List<Update> dashboardUpdate(DashboardRefreshedEvent event, StoreScope scope) {
+        String json = toJson(scopedViews.dashboard(event.payload(), scope));
+        return json == null ? List.of() : List.of(new Update(EVENT_DASHBOARD, 0, json));
+    }
+
+    private static List<StoreKpi> changedStores(StoreKpiSnapshot previous, StoreKpiSnapshot current) {
+        List<StoreKpi> changed = new ArrayList<>();
+        for (StoreKpi kpi : current.all()) {
+            if (!kpi.equals(previous.get(kpi.storeId()))) changed.add(kpi);
+        }
+        return changed;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize {} for SSE: {}", value.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private record Update(String name, int storeId, String json) {}
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final boolean dashboard;
+        final Set<Integer> storeIds;
+        final StoreScope scope;
+        final BlockingQueue<List<SseEmitter.SseEventBuilder>> queue;
+        final AtomicBoolean writing = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, boolean dashboard, Set<Integer> storeIds, StoreScope scope, int capacity) {
+            this.emitter = emitter;
+            this.dashboard = dashboard;
+            this.storeIds = storeIds;
+            this.scope = scope;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        boolean wants(int storeId) {
+            return storeIds != null && scope.contains(storeId)
+                    && (storeIds.isEmpty() || storeIds.contains(storeId));
+        }
+    }
+}
@@ -1,72 +1,175 @@
 // src/main/java/com/vivacrm/crm/schedule/CacheRefreshScheduler.java
 package com.vivacrm.crm.schedule;
 
+import com.vivacrm.crm.cluster.ClusterCoordinator;
 import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.SqlServerGuard;
 import com.vivacrm.crm.service.StoreKpiService;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Refresh orchestrator for the dashboard and store KPI caches. Each cache is a
+ * {@link RefreshJob} with its own cron, interval, timeout and retry policy;
+ * jobs run concurrently on virtual threads.
+ * <p>
+ * In cluster mode only the elected leader runs the jobs; followers serve the
+ * snapshots the leader publishes (see {@code ClusterSnapshotSync}).
+ */
 @Component
 public class CacheRefreshScheduler {
 
-    private final DashboardService dashboardService;
-    private final StoreKpiService storeKpiService;
-    private final Duration refreshInterval;
-    private final ZoneId zoneId;
+    private static final Logger log = LoggerFactory.getLogger(CacheRefreshScheduler.class);
 
-    /** Tracks last time when caches were refreshed. */
-    private LocalDateTime lastRefresh = LocalDateTime.MIN;
+    private final boolean asyncRefresh;
+    private final ClusterCoordinator cluster;
+
+    /** Background executor for refresh jobs (one virtual thread per task). */
+    private final ExecutorService refreshExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-refresh-", 0).factory());
+
+    private final RefreshJob dashboardJob;
+    private final RefreshJob storeKpiJob;
+    private final List<RefreshJob> jobs;
 
     public CacheRefreshScheduler(DashboardService dashboardService,
                                  StoreKpiService storeKpiService,
-                                 @Value("${app.cache.refresh.interval:PT1H}") Duration refreshInterval,
+                                 ClusterCoordinator cluster,
+                                 SqlServerGuard guard,
+                                 @Value("${app.cache.refresh.mode:async}") String refreshMode,
+                                 @Value("${app.cache.refresh.dashboard.interval:${app.cache.refresh.interval:PT1H}}") Duration dashboardInterval,
+                                 @Value("${app.cache.refresh.dashboard.timeout:PT2M}") Duration dashboardTimeout,
+                                 @Value("${app.cache.refresh.store-kpi.interval:${app.cache.refresh.interval:PT1H}}") Duration storeKpiInterval,
+                                 @Value("${app.cache.refresh.store-kpi.timeout:PT2M}") Duration storeKpiTimeout,
+                                 @Value("${app.cache.refresh.retry.max-attempts:3}") int maxAttempts,
+                                 @Value("${app.cache.refresh.retry.backoff:PT2S}") Duration backoff,
                                  @Value("${app.timezone:UTC}") String zone) {
-        this.dashboardService = dashboardService;
-        this.storeKpiService = storeKpiService;
-        this.refreshInterval = refreshInterval;
-        this.zoneId = ZoneId.of(zone);
-    }
+        this.asyncRefresh = !"blocking".equalsIgnoreCase(refreshMode);
+        this.cluster = cluster;
+        ZoneId zoneId = ZoneId.of(zone);
 
-    /** Refresh caches for dashboard payload and store KPI entries. */
-    public synchronized void refreshAll() {
-        try {
-            dashboardService.refreshMetrics();
-        } catch (Exception ignore) { /* log if desired */ }
-
-        try {
-            storeKpiService.refreshAllStores();
-        } catch (Exception ignore) { /* log if desired */ }
+        // scheduled refreshes use the background SQL Server budget, never the permits of user requests
+        this.dashboardJob = new RefreshJob("dashboard", () -> guard.runInBackground(dashboardService::refreshMetrics),
+                dashboardInterval, dashboardTimeout, maxAttempts, backoff, refreshExecutor, zoneId);
+        this.storeKpiJob = new RefreshJob("storeKpi", () -> guard.runInBackground(storeKpiService::refreshAllStores),
+                storeKpiInterval, storeKpiTimeout, maxAttempts, backoff, refreshExecutor, zoneId);
+        this.jobs = List.of(dashboardJob, storeKpiJob);
+    }
 
-        lastRefresh = LocalDateTime.now(zoneId);
+    /**
+     * Refresh both caches concurrently and wait for them to finish.
+     *
+     * @return true if every job refreshed successfully
+     */
+    public boolean refreshAll() {
+        List<Future<Boolean>> running = new ArrayList<>(jobs.size());
+        for (RefreshJob job : jobs) {
+            running.add(refreshExecutor.submit(job::run));
+        }
+        boolean ok = true;
+        for (Future<Boolean> f : running) {
+            try {
+                ok &= f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                log.warn("Cache refresh job crashed", e.getCause());
+                ok = false;
+            }
+        }
+        return ok;
     }
 
     /** Warm caches at application startup so store KPIs and dashboard metrics
-     *  are immediately available and refreshed together. */
+     *  are immediately available. In async mode the warm-up runs in the
+     *  background and does not hold up startup. */
     @PostConstruct
     public void warmOnStartup() {
-        refreshAll();
+        if (!cluster.isLeader()) return; // followers pull the leader's snapshots
+        if (asyncRefresh) {
+            jobs.forEach(this::triggerAsyncRefresh);
+        } else {
+            if (!refreshAll()) log.warn("Startup cache warm-up incomplete; serving what loaded until the next refresh");
+        }
     }
 
     /**
      * Windows-friendly refresher invoked on incoming requests. Ensures caches
      * are updated once per configured interval even when scheduled jobs are
      * unavailable.
+     * <p>
+     * In {@code async} mode (default) this never blocks: the caller keeps
+     * serving the current cached value while a background refresh of each
+     * stale job replaces it. {@code blocking} mode keeps the old
+     * refresh-on-request behaviour.
      */
-    public synchronized void refreshIfStale() {
-        LocalDateTime now = LocalDateTime.now(zoneId);
-        if (Duration.between(lastRefresh, now).compareTo(refreshInterval) >= 0) {
-            refreshAll();
+    public void refreshIfStale() {
+        if (!cluster.isLeader()) return;
+        for (RefreshJob job : jobs) {
+            if (!job.isStale()) continue;
+
+            if (asyncRefresh) {
+                triggerAsyncRefresh(job);
+                continue;
+            }
+            synchronized (job) {
+                if (job.isStale()) job.run();
+            }
         }
     }
 
-    @Scheduled(cron = "${app.cache.refresh.cron:0 0 * * * *}", zone = "${app.timezone:UTC}")
-    public void scheduledRefresh() {
-        refreshAll();
+    /**
+     * Schedules a background run of the job unless it is already running.
+     *
+     * @return true if a refresh was scheduled by this call
+     */
+    public boolean triggerAsyncRefresh(RefreshJob job) {
+        if (job.isRunning()) return false;
+        try {
+            refreshExecutor.execute(job::run);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Background refresh of '{}' rejected: {}", job.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    public List<RefreshJob> getJobs() {
+        return jobs;
+    }
+
+    @Scheduled(cron = "${app.cache.refresh.dashboard.cron:${app.cache.refresh.cron:0 0 * * * *}}",
+               zone = "${app.timezone:UTC}")
+    public void scheduledDashboardRefresh() {
+        if (!cluster.isLeader()) return;
+        triggerAsyncRefresh(dashboardJob);
+    }
+
+    @Scheduled(cron = "${app.cache.refresh.store-kpi.cron:${app.cache.refresh.cron:0 0 * * * *}}",
+               zone = "${app.timezone:UTC}")
+    public void scheduledStoreKpiRefresh() {
+        if (!cluster.isLeader()) return;
+        triggerAsyncRefresh(storeKpiJob);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
     }
 }
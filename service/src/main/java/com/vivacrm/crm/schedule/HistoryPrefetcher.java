@@ -0,0 +1,166 @@
+// src/main/java/com/vivacrm/crm/schedule/HistoryPrefetcher.java
+package com.vivacrm.crm.schedule;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.SqlServerGuard;
+import com.vivacrm.crm.service.StoreKpiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads the days a user is likely to open next while they look at a
+ * historical day: by default the day before, the week before and the same
+ * weekday last year ({@code app.prefetch.offsets}, in days). Each prefetch
+ * fills the dashboard day cache and the all-stores KPI day snapshot through
+ * the regular services, so a later request is a cache hit.
+ * <p>
+ * Prefetching is best effort: it runs on virtual threads in the SQL Server
+ * guard's background lane, at most {@code app.prefetch.max-concurrent} days
+ * at a time, and a day is dropped rather than queued when that budget is
+ * used up or SQL Server is busy (breaker not closed, or no free permit in
+ * either lane). Requests for a prefetched day are counted as hits
+ * ({@code prefetch.requests}).
+ */
+@Component
+public class HistoryPrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryPrefetcher.class);
+
+    private final DashboardService dashboardService;
+    private final StoreKpiService storeKpiService;
+    private final SqlServerGuard guard;
+    private final boolean enabled;
+    private final int[] offsets;
+    private final ZoneId zoneId;
+
+    private final Semaphore budget;
+    private final Set<LocalDate> inFlight = ConcurrentHashMap.newKeySet();
+    private final Cache<LocalDate, Boolean> prefetched;
+    private final ExecutorService prefetchExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("history-prefetch-", 0).factory());
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter loaded;
+    private final Counter skipped;
+    private final Counter failed;
+
+    public HistoryPrefetcher(DashboardService dashboardService,
+                             StoreKpiService storeKpiService,
+                             SqlServerGuard guard,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.prefetch.enabled:true}") boolean enabled,
+                             @Value("${app.prefetch.offsets:1,7,364}") int[] offsets,
+                             @Value("${app.prefetch.max-concurrent:2}") int maxConcurrent,
+                             @Value("${app.cache.dashboard.historical-ttl:P7D}") Duration historicalTtl,
+                             @Value("${app.timezone:UTC}") String zone) {
+        this.dashboardService = dashboardService;
+        this.storeKpiService = storeKpiService;
+        this.guard = guard;
+        this.enabled = enabled;
+        this.offsets = offsets.clone();
+        this.zoneId = ZoneId.of(zone);
+        this.budget = new Semaphore(Math.max(1, maxConcurrent));
+        // remembers what was prefetched, for the hit rate; as long as the day caches keep it
+        this.prefetched = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(historicalTtl)
+                .build();
+
+        this.hits = Counter.builder("prefetch.requests").tag("result", "hit")
+                .description("Historical requests for a day that was prefetched").register(meterRegistry);
+        this.misses = Counter.builder("prefetch.requests").tag("result", "miss")
+                .description("Historical requests for a day that was not prefetched").register(meterRegistry);
+        this.loaded = Counter.builder("prefetch.days").tag("result", "loaded").register(meterRegistry);
+        this.skipped = Counter.builder("prefetch.days").tag("result", "skipped").register(meterRegistry);
+        this.failed = Counter.builder("prefetch.days").tag("result", "failed").register(meterRegistry);
+        Gauge.builder("prefetch.in_flight", inFlight, Set::size).register(meterRegistry);
+    }
+
+    /**
+     * Called after a request for {@code forDate}: records whether that day was
+     * prefetched and schedules its neighbours. No-op for today and the future.
+     */
+    public void onRequested(LocalDateTime forDate) {
+        if (!enabled || forDate == null) return;
+        LocalDate day = forDate.toLocalDate();
+        LocalDate today = LocalDate.now(zoneId);
+        if (!day.isBefore(today)) return;
+
+        if (prefetched.getIfPresent(day) != null) hits.increment();
+        else misses.increment();
+
+        for (int offset : offsets) {
+            LocalDate target = day.minusDays(offset);
+            if (target.isBefore(today)) schedule(target);
+        }
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private void schedule(LocalDate day) {
+        if (prefetched.getIfPresent(day) != null || !inFlight.add(day)) return;
+        if (!sqlServerIdle() || !budget.tryAcquire()) {
+            inFlight.remove(day);
+            skipped.increment(); // SQL Server or the prefetch budget busy; the user's own request will load it
+            return;
+        }
+        try {
+            prefetchExecutor.execute(() -> guard.runInBackground(() -> prefetch(day)));
+        } catch (RejectedExecutionException e) {
+            release(day); // shutting down
+        }
+    }
+
+    private void prefetch(LocalDate day) {
+        try {
+            if (!sqlServerIdle()) { // became busy while queued
+                skipped.increment();
+                return;
+            }
+            dashboardService.getMetrics(day.atStartOfDay());
+            storeKpiService.getSnapshot(day.atStartOfDay());
+            prefetched.put(day, Boolean.TRUE);
+            loaded.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.debug("Prefetch of {} failed: {}", day, e.toString());
+        } finally {
+            release(day);
+        }
+    }
+
+    /** Room in both lanes: prefetching must never compete with user requests. */
+    private boolean sqlServerIdle() {
+        return guard.hasBackgroundCapacity() && guard.getAvailablePermits() > 0;
+    }
+
+    private void release(LocalDate day) {
+        inFlight.remove(day);
+        budget.release();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,178 @@
+// src/main/java/com/vivacrm/crm/schedule/RefreshJob.java
+package com.vivacrm.crm.schedule;
+
+import com.vivacrm.crm.service.SqlServerUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One cache refresh (e.g. dashboard or store KPIs) with its own staleness
+ * interval, timeout and retry/backoff policy. Never runs concurrently with
+ * itself and keeps simple run statistics.
+ * <p>
+ * A timed-out attempt is not abandoned: interrupting a thread blocked in a
+ * JDBC call does not stop the statement, so the attempt stays tracked until
+ * its task really returns, and retries (or later runs) wait for that task
+ * instead of starting a second SP call next to it.
+ */
+public final class RefreshJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshJob.class);
+
+    private final String name;
+    private final Runnable task;
+    private final Duration interval;
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final ExecutorService executor;
+    private final ZoneId zoneId;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>();
+
+    private volatile Duration lastDuration = Duration.ZERO;
+    private volatile LocalDateTime lastAttempt = LocalDateTime.MIN;
+    private volatile LocalDateTime lastSuccess;
+    private volatile String lastError;
+
+    public RefreshJob(String name, Runnable task, Duration interval, Duration timeout,
+                      int maxAttempts, Duration backoff, ExecutorService executor, ZoneId zoneId) {
+        this.name = name;
+        this.task = task;
+        this.interval = interval;
+        this.timeout = timeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+        this.executor = executor;
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * Runs the refresh, retrying transient SQL Server failures with exponential
+     * backoff.
+     *
+     * @return true if the refresh succeeded; false if it failed, was interrupted,
+     *         or the job was already running (nothing is done then)
+     */
+    public boolean run() {
+        if (!running.compareAndSet(false, true)) return false;
+        long start = System.nanoTime();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    runOnce();
+                    lastSuccess = LocalDateTime.now(zoneId);
+                    lastError = null;
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.incrementAndGet();
+                    lastError = "interrupted";
+                    return false;
+                } catch (Exception e) {
+                    lastError = e.toString();
+                    if (attempt >= maxAttempts || !isRetryable(e)) {
+                        failures.incrementAndGet();
+                        log.warn("Refresh '{}' failed after {} attempt(s): {}", name, attempt, e.toString());
+                        return false;
+                    }
+                    long delayMs = backoff.toMillis() << (attempt - 1);
+                    retries.incrementAndGet();
+                    log.info("Refresh '{}' attempt {} failed ({}); retrying in {} ms",
+                            name, attempt, e.getClass().getSimpleName(), delayMs);
+                    try {
+                        Thread.sleep(delayMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        failures.incrementAndGet();
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            lastDuration = Duration.ofNanos(System.nanoTime() - start);
+            lastAttempt = LocalDateTime.now(zoneId);
+            runs.incrementAndGet();
+            running.set(false);
+            log.debug("Refresh '{}' finished in {} ms", name, lastDuration.toMillis());
+        }
+    }
+
+    /** True once {@link #interval} has elapsed since the last attempt. */
+    public boolean isStale() {
+        LocalDateTime now = LocalDateTime.now(zoneId);
+        return Duration.between(lastAttempt, now).compareTo(interval) >= 0;
+    }
+
+    public boolean isRunning() { return running.get(); }
+
+    public String getName() { return name; }
+    public long getRuns() { return runs.get(); }
+    public long getFailures() { return failures.get(); }
+    public long getRetries() { return retries.get(); }
+    public Duration getLastDuration() { return lastDuration; }
+    public LocalDateTime getLastSuccess() { return lastSuccess; }
+    public String getLastError() { return lastError; }
+
+    private void runOnce() throws Exception {
+        CompletableFuture<Void> attempt = inFlight.get();
+        if (attempt == null || attempt.isDone()) {
+            attempt = start();
+        } else {
+            log.info("Refresh '{}' waits for the previous, timed-out attempt instead of starting another", name);
+        }
+        try {
+            attempt.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+        // on TimeoutException the attempt stays in flight; the next one joins it
+    }
+
+    private CompletableFuture<Void> start() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.set(done);
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                    done.complete(null);
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) { // executor shut down
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof SqlServerUnavailableException) return false; // circuit open: wait for the next run
+        return e instanceof TimeoutException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+}
@@ -0,0 +1,127 @@
+// src/main/java/com/vivacrm/crm/schedule/SalesCubeScheduler.java
+package com.vivacrm.crm.schedule;
+
+import com.vivacrm.crm.cluster.ClusterCoordinator;
+import com.vivacrm.crm.service.DashboardRefreshedEvent;
+import com.vivacrm.crm.service.SalesCube;
+import com.vivacrm.crm.service.SqlServerGuard;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the {@link SalesCube} filled: today's new hours after every dashboard
+ * refresh, and the missing closed days of the window once after startup and
+ * nightly. Everything runs one task at a time on a virtual thread, so cube
+ * loads never compete with each other and never block a refresh.
+ * <p>
+ * Only the cluster leader loads today for the cube; followers adopt the
+ * leader's per-store curves of today (see ClusterSnapshotSync). Closed days
+ * (after startup, nightly and once yesterday is missing): a follower on the
+ * leader's host reads them from the day store the leader persists them to;
+ * one with {@code app.cluster.store=sqlserver} has its own day store and
+ * backfills it like the leader, from SQL Server through the background
+ * bulkhead and at most {@code app.cube.backfill.max-days} days per run.
+ * With {@code app.cube.enabled=false} the leader still loads those curves
+ * after every refresh, without the cube.
+ */
+@Component
+public class SalesCubeScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesCubeScheduler.class);
+
+    private final SalesCube cube;
+    private final SqlServerGuard guard;
+    private final ClusterCoordinator cluster;
+    private final boolean enabled;
+    private final ZoneId zoneId;
+
+    private final ExecutorService cubeExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("sales-cube").factory());
+    private final AtomicBoolean todayQueued = new AtomicBoolean(false);
+    private final AtomicBoolean backfillQueued = new AtomicBoolean(false);
+
+    public SalesCubeScheduler(SalesCube cube,
+                              SqlServerGuard guard,
+                              ClusterCoordinator cluster,
+                              @Value("${app.cube.enabled:true}") boolean enabled,
+                              @Value("${app.timezone:UTC}") String zone) {
+        this.cube = cube;
+        this.guard = guard;
+        this.cluster = cluster;
+        this.enabled = enabled;
+        this.zoneId = ZoneId.of(zone);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        triggerToday();
+        triggerBackfill();
+    }
+
+    @EventListener
+    public void onDashboardRefreshed(DashboardRefreshedEvent event) {
+        if (cluster.isLeader()) {
+            triggerToday();
+        } else if (!cube.isClosed(LocalDate.now(zoneId).minusDays(1))) {
+            triggerBackfill(); // the leader persists yesterday once it has closed it
+        }
+    }
+
+    @Scheduled(cron = "${app.cube.backfill.cron:0 45 2 * * *}", zone = "${app.timezone:UTC}")
+    public void scheduledBackfill() {
+        triggerBackfill();
+    }
+
+    /** Queues one catch-up of today (leader only); further triggers while it is queued are merged into it. */
+    public void triggerToday() {
+        if (!todayQueued.compareAndSet(false, true)) return;
+        cubeExecutor.execute(() -> {
+            todayQueued.set(false);
+            if (!cluster.isLeader()) return;
+            try {
+                guard.background(enabled ? cube::refreshToday : cube::refreshStoreHourly);
+            } catch (Exception e) {
+                log.warn("Sales cube refresh failed: {}", e.toString());
+            }
+        });
+    }
+
+    /**
+     * Day store, then SQL Server for what is still missing; a follower sharing
+     * the leader's day store reads only that.
+     */
+    public void triggerBackfill() {
+        if (!enabled || !backfillQueued.compareAndSet(false, true)) return;
+        cubeExecutor.execute(() -> {
+            backfillQueued.set(false);
+            try {
+                if (!cluster.isLeader() && cluster.sharesDayStore()) {
+                    int filled = cube.fillFromStore();
+                    if (filled > 0) log.info("Sales cube read {} closed day(s) from the day store", filled);
+                    return;
+                }
+                int loaded = guard.background(cube::backfill);
+                if (loaded > 0) log.info("Sales cube loaded {} closed day(s)", loaded);
+            } catch (Exception e) {
+                log.warn("Sales cube backfill stopped: {}", e.toString()); // retried next run
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cubeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,103 @@
+// src/main/java/com/vivacrm/crm/schedule/SnapshotBackfillScheduler.java
+package com.vivacrm.crm.schedule;
+
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.SqlServerGuard;
+import com.vivacrm.crm.service.StoreKpiService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists the last N closed days (dashboard payload + all-stores KPIs) into
+ * the local snapshot store so historical browsing does not hit SQL Server.
+ * Runs once after startup and nightly, one day at a time on a single
+ * low-priority thread; days already stored are skipped.
+ */
+@Component
+public class SnapshotBackfillScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotBackfillScheduler.class);
+
+    private final DashboardService dashboardService;
+    private final StoreKpiService storeKpiService;
+    private final SqlServerGuard guard;
+    private final boolean enabled;
+    private final int days;
+    private final ZoneId zoneId;
+
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "snapshot-backfill");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public SnapshotBackfillScheduler(DashboardService dashboardService,
+                                     StoreKpiService storeKpiService,
+                                     SqlServerGuard guard,
+                                     @Value("${app.snapshot.enabled:true}") boolean enabled,
+                                     @Value("${app.snapshot.backfill.days:30}") int days,
+                                     @Value("${app.timezone:UTC}") String zone) {
+        this.dashboardService = dashboardService;
+        this.storeKpiService = storeKpiService;
+        this.guard = guard;
+        this.enabled = enabled;
+        this.days = days;
+        this.zoneId = ZoneId.of(zone);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        triggerBackfill();
+    }
+
+    @Scheduled(cron = "${app.snapshot.backfill.cron:0 30 2 * * *}", zone = "${app.timezone:UTC}")
+    public void scheduledBackfill() {
+        triggerBackfill();
+    }
+
+    public void triggerBackfill() {
+        if (!enabled || days <= 0) return;
+        backfillExecutor.execute(() -> guard.runInBackground(this::backfill));
+    }
+
+    /** Newest day first; stops at the first SQL Server failure and retries next run. */
+    void backfill() {
+        if (!running.compareAndSet(false, true)) return;
+        try {
+            LocalDate today = LocalDate.now(zoneId);
+            int loaded = 0;
+            for (int i = 1; i <= days; i++) {
+                LocalDate day = today.minusDays(i);
+                try {
+                    if (dashboardService.backfillDay(day)) loaded++;
+                    if (storeKpiService.backfillDay(day)) loaded++;
+                } catch (Exception e) {
+                    log.warn("Snapshot backfill stopped at {}: {}", day, e.toString());
+                    break;
+                }
+            }
+            if (loaded > 0) log.info("Snapshot backfill stored {} day snapshot(s)", loaded);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+}
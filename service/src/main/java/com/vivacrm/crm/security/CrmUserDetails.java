@@ -0,0 +1,23 @@
+package com.vivacrm.crm.security;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/** Spring Security user carrying the account's store scope specification. */
+public class CrmUserDetails extends User {
+
+    private final String storeScope;
+
+    public CrmUserDetails(String username, String password,
+                          Collection<? extends GrantedAuthority> authorities, String storeScope) {
+        super(username, password, authorities);
+        this.storeScope = storeScope;
+    }
+
+    /** Raw scope specification; null = all stores. */
+    public String getStoreScope() {
+        return storeScope;
+    }
+}
@@ -2,7 +2,12 @@ package com.vivacrm.crm.security;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,29 +15,61 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import com.vivacrm.crm.config.CacheConfig;
 import com.vivacrm.crm.user.User;
 import com.vivacrm.crm.user.UserRepository;
 
+/**
+ * Loads users for login and for every JWT-authenticated request. Account data
+ * is cached briefly in {@link CacheConfig#USER_DETAILS} ({@code UserService}
+ * evicts an entry whenever the account changes); each call still returns a new
+ * {@link UserDetails}, because Spring Security erases the password of the
+ * instance it authenticated.
+ * <p>
+ * Every account has the {@code USER} authority; the usernames listed in
+ * {@code app.security.admins} also get {@code ROLE_ADMIN}, which guards the
+ * maintenance endpoints.
+ */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final Collection<? extends GrantedAuthority> AUTHORITIES =
+            Collections.singletonList(new SimpleGrantedAuthority("USER"));
+    private static final Collection<? extends GrantedAuthority> ADMIN_AUTHORITIES =
+            List.of(new SimpleGrantedAuthority("USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+
     private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+    private final Set<String> admins;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, CacheManager cacheManager,
+                                    @Value("${app.security.admins:}") Set<String> admins) {
         this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+        this.admins = Set.copyOf(admins);
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                getAuthorities());
+        Cache cache = cacheManager.getCache(CacheConfig.USER_DETAILS);
+        Account account = cache == null ? null : cache.get(username, Account.class);
+        if (account == null) {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            account = new Account(user.getUsername(), user.getPassword(), user.getStoreScope());
+            if (cache != null) cache.put(username, account); // unknown users are not cached
+        }
+        return new CrmUserDetails(
+                account.username(),
+                account.passwordHash(),
+                getAuthorities(account.username()),
+                account.storeScope());
     }
 
-    private Collection<? extends GrantedAuthority> getAuthorities() {
-        return Collections.singletonList(new SimpleGrantedAuthority("USER"));
+    private Collection<? extends GrantedAuthority> getAuthorities(String username) {
+        return admins.contains(username) ? ADMIN_AUTHORITIES : AUTHORITIES;
     }
+
+    /** Immutable cached part of a user row. */
+    record Account(String username, String passwordHash, String storeScope) {}
 }
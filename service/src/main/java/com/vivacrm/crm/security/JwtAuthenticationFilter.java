@@ -1,27 +1,36 @@
 package com.vivacrm.crm.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
 
-    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService,
+                                   MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -30,16 +39,42 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            if (jwtService.validateToken(token)) {
-                String username = jwtService.extractUsername(token);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken auth =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
+            // times token validation + user lookup only, not the rest of the chain
+            Timer.Sample sample = Timer.start(meterRegistry);
+            boolean authenticated = false;
+            try {
+                authenticated = authenticate(authHeader.substring(7), request);
+            } finally {
+                sample.stop(meterRegistry.timer("security.jwt.filter",
+                        "outcome", authenticated ? "authenticated" : "rejected"));
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    private boolean authenticate(String token, HttpServletRequest request) {
+        JwtService.VerifiedToken verified = jwtService.verify(token).orElse(null); // single parse
+        if (verified == null) return false;
+        UserDetails userDetails;
+        if (jwtService.isClaimsMode() && verified.authorities() != null) {
+            userDetails = fromClaims(verified); // no database access
+        } else {
+            try {
+                userDetails = userDetailsService.loadUserByUsername(verified.username());
+            } catch (UsernameNotFoundException e) {
+                return false; // valid signature, but the account no longer exists
+            }
+        }
+        UsernamePasswordAuthenticationToken auth =
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+        return true;
+    }
+
+    private static UserDetails fromClaims(JwtService.VerifiedToken verified) {
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>(verified.authorities().size());
+        for (String a : verified.authorities()) authorities.add(new SimpleGrantedAuthority(a));
+        return new CrmUserDetails(verified.username(), "", authorities, verified.storeScope());
+    }
 }
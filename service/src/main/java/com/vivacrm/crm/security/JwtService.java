@@ -1,25 +1,74 @@
 package com.vivacrm.crm.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.vivacrm.crm.util.Sha256;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 
+/**
+ * Issues and verifies HS256 tokens. The signing key and parser are built once;
+ * successfully verified tokens are remembered (by SHA-256 of the token, never
+ * the token itself) until they expire, so a repeated bearer token costs a hash
+ * instead of a signature check plus JSON parse. Invalid tokens are not cached.
+ * Expiry is the only invalidation: the signing secret is fixed for the life
+ * of the process, and a signed token stays valid until {@code exp} anyway.
+ * <p>
+ * With {@code jwt.claims-mode=true} tokens carry the user's authorities and store scope and
+ * live only {@code jwt.access-expiration-ms}; the filter then authenticates
+ * from the claims alone and clients renew through a refresh token.
+ */
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    static final String CLAIM_AUTHORITIES = "auth";
+    static final String CLAIM_STORE_SCOPE = "scope";
 
-    @Value("${jwt.expiration-ms:86400000}")
-    private long expirationMs;
+    /**
+     * Subject of a verified token and when it stops being valid.
+     * {@code authorities} is null for tokens issued without claims;
+     * {@code storeScope} is null for unrestricted users.
+     */
+    public record VerifiedToken(String username, List<String> authorities, String storeScope, long expiresAtMillis) {}
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final long expirationMs;
+    private final boolean claimsMode;
+    private final long accessExpirationMs;
+    private final Cache<String, VerifiedToken> verified;
+
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      @Value("${jwt.expiration-ms:86400000}") long expirationMs,
+                      @Value("${jwt.claims-mode:false}") boolean claimsMode,
+                      @Value("${jwt.access-expiration-ms:900000}") long accessExpirationMs,
+                      @Value("${jwt.cache.max-entries:10000}") long maxCachedTokens,
+                      MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build(); // thread-safe
+        this.expirationMs = expirationMs;
+        this.claimsMode = claimsMode;
+        this.accessExpirationMs = accessExpirationMs;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwtVerified");
     }
 
     public String generateToken(String username) {
@@ -28,25 +77,94 @@ public class JwtService {
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(new Date(now.getTime() + expirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Access token for a user. In claims mode the authorities and store scope
+     * are embedded and the token is short-lived; otherwise this is
+     * {@link #generateToken(String)}.
+     */
+    public String generateToken(UserDetails user) {
+        if (!claimsMode) return generateToken(user.getUsername());
+        Date now = new Date();
+        Collection<? extends GrantedAuthority> authorities = user.getAuthorities();
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getUsername())
+                .claim(CLAIM_AUTHORITIES, authorities.stream().map(GrantedAuthority::getAuthority).toList());
+        if (user instanceof CrmUserDetails crm && crm.getStoreScope() != null) {
+            builder.claim(CLAIM_STORE_SCOPE, crm.getStoreScope());
+        }
+        return builder
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + accessExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
     }
 
-    public boolean validateToken(String token) {
+    /** True if access tokens are self-contained and short-lived (refresh tokens in use). */
+    public boolean isClaimsMode() {
+        return claimsMode;
+    }
+
+    /**
+     * Verifies the token once and returns its subject, or empty if the token is
+     * malformed, badly signed or expired.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isEmpty()) return Optional.empty();
+        String key = Sha256.base64(token);
+        VerifiedToken hit = verified.getIfPresent(key);
+        if (hit != null) {
+            // the cache expires entries at token expiry; this guards the last tick
+            return hit.expiresAtMillis() > System.currentTimeMillis() ? Optional.of(hit) : Optional.empty();
+        }
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date exp = claims.getExpiration();
+            VerifiedToken result = new VerifiedToken(claims.getSubject(), authorities(claims),
+                    claims.get(CLAIM_STORE_SCOPE, String.class),
+                    exp != null ? exp.getTime() : System.currentTimeMillis() + expirationMs);
+            if (result.username() == null) return Optional.empty();
+            verified.put(key, result);
+            return Optional.of(result);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return Optional.empty();
+        }
+    }
+
+    public String extractUsername(String token) {
+        return verify(token).map(VerifiedToken::username)
+                .orElseThrow(() -> new MalformedJwtException("Invalid JWT"));
+    }
+
+    public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
+    private static List<String> authorities(Claims claims) {
+        Object raw = claims.get(CLAIM_AUTHORITIES);
+        if (!(raw instanceof Collection<?> values)) return null;
+        return values.stream().map(String::valueOf).toList();
+    }
+
+    /** Keeps each entry exactly until its token's {@code exp}. */
+    private static final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long millis = value.expiresAtMillis() - System.currentTimeMillis();
+            return Math.max(0, millis) * 1_000_000L;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,95 @@
+package com.vivacrm.crm.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.vivacrm.crm.service.StoreScope;
+
+/**
+ * Turns the caller's scope specification into a {@link StoreScope}.
+ * <ul>
+ *   <li>null / blank / {@code *}: all stores;</li>
+ *   <li>{@code stores:101,102}: those store ids (store managers);</li>
+ *   <li>{@code region:North}: the ids listed (comma-separated) under {@code app.scope.regions.North}.</li>
+ * </ul>
+ * Parts may be combined with {@code ;}. Unknown regions or malformed parts
+ * grant nothing. Parsed scopes are memoized per specification string.
+ */
+@Component
+public class StoreScopeResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreScopeResolver.class);
+
+    private final Map<String, String> regions; // region name -> comma-separated store ids
+    private final Map<String, StoreScope> parsed = new ConcurrentHashMap<>();
+
+    public StoreScopeResolver(Environment environment) {
+        Map<String, String> byName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        byName.putAll(Binder.get(environment)
+                .bind("app.scope.regions", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of()));
+        this.regions = byName;
+    }
+
+    /** Scope of the authenticated caller; all stores when unauthenticated or unscoped. */
+    public StoreScope current() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof CrmUserDetails user) {
+            return resolve(user.getStoreScope());
+        }
+        return StoreScope.ALL;
+    }
+
+    public StoreScope resolve(String spec) {
+        if (spec == null || spec.isBlank() || spec.trim().equals("*")) return StoreScope.ALL;
+        return parsed.computeIfAbsent(spec, this::parse);
+    }
+
+    private StoreScope parse(String spec) {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : spec.split(";")) {
+            String p = part.trim();
+            int colon = p.indexOf(':');
+            if (colon < 0) {
+                if (!p.isEmpty()) log.warn("Ignoring malformed store scope part '{}'", p);
+                continue;
+            }
+            String kind = p.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = p.substring(colon + 1).trim();
+            switch (kind) {
+                case "stores" -> addIds(ids, value, spec);
+                case "region" -> {
+                    String region = regions.get(value);
+                    if (region == null) log.warn("Unknown region '{}' in store scope '{}'", value, spec);
+                    else addIds(ids, region, spec);
+                }
+                default -> log.warn("Ignoring store scope part '{}'", p);
+            }
+        }
+        return StoreScope.of(ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void addIds(List<Integer> ids, String csv, String spec) {
+        for (String id : csv.split(",")) {
+            if (id.isBlank()) continue;
+            try {
+                ids.add(Integer.parseInt(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring store id '{}' in scope '{}'", id, spec);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// src/main/java/com/vivacrm/crm/service/DashboardRangeService.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardService.TopStoreStats;
+import com.vivacrm.crm.service.dto.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.*;
+
+import static com.vivacrm.crm.service.DashboardService.analyzeTopStore;
+import static com.vivacrm.crm.service.DashboardService.formatCompact;
+import static com.vivacrm.crm.service.DashboardService.pct;
+
+/**
+ * Week-, month- and year-to-date dashboards assembled from per-day payloads.
+ * <p>
+ * Closed days come from the {@code dashboard} cache, in one query from the
+ * local day store, or from the sales cube; today is the regular cached
+ * payload. A range makes at most one fresh SQL Server call: the newest
+ * missing closed day is loaded through
+ * {@link DashboardService#getMetrics(LocalDateTime)} (so it is cached and
+ * persisted) unless a cold today already took that call. Any other missing
+ * day is left out and the range is flagged stale (and not cached), so a cold
+ * month fills up over a few requests and the background backfills instead of
+ * fanning out to one SP call per day.
+ * Days are merged with plain sums, so the result does not depend on the
+ * order in which they arrive.
+ */
+@Service
+public class DashboardRangeService {
+
+    /** Range ending at a given day; each starts on the first day of its period. */
+    public enum Period {
+        WEEK("Shitjet e Javes"), MONTH("Shitjet e Muajit"), YEAR("Shitjet e Vitit");
+
+        /** Title of the sales group (the daily payload's "Shitjet Sod"). */
+        final String salesLabel;
+
+        Period(String salesLabel) {
+            this.salesLabel = salesLabel;
+        }
+
+        LocalDate start(LocalDate end) {
+            return switch (this) {
+                case WEEK -> end.minusDays(end.getDayOfWeek().getValue() - 1L);
+                case MONTH -> end.withDayOfMonth(1);
+                case YEAR -> end.withDayOfYear(1);
+            };
+        }
+
+        /** Last day of the period {@code day} falls in. */
+        LocalDate end(LocalDate day) {
+            return switch (this) {
+                case WEEK -> start(day).plusDays(6);
+                case MONTH -> day.withDayOfMonth(day.lengthOfMonth());
+                case YEAR -> day.withDayOfYear(day.lengthOfYear());
+            };
+        }
+
+        /** Accepts {@code week|wtd}, {@code month|mtd}, {@code year|ytd}; empty otherwise. */
+        public static Optional<Period> parse(String value) {
+            if (value == null) return Optional.empty();
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "week", "wtd" -> Optional.of(WEEK);
+                case "month", "mtd" -> Optional.of(MONTH);
+                case "year", "ytd" -> Optional.of(YEAR);
+                default -> Optional.empty();
+            };
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardRangeService.class);
+
+    private static final DateTimeFormatter DOW_FMT = DateTimeFormatter.ofPattern("EEE", Locale.ENGLISH);
+
+    private final DashboardService dashboardService;
+    private final DaySnapshotStore snapshotStore;
+    private final CacheManager cacheManager;
+    private final ZoneId zoneId;
+
+    public DashboardRangeService(DashboardService dashboardService,
+                                 DaySnapshotStore snapshotStore,
+                                 CacheManager cacheManager,
+                                 @Value("${app.timezone:UTC}") String zone) {
+        this.dashboardService = dashboardService;
+        this.snapshotStore = snapshotStore;
+        this.cacheManager = cacheManager;
+        this.zoneId = ZoneId.of(zone);
+    }
+
+    /**
+     * Dashboard for {@code period} up to and including {@code end} (today if
+     * null or in the future; see {@link #lastDay}, which also keys the cache).
+     * A range that ends before today never changes and is cached under the
+     * historical TTL; one ending today follows the hourly cut-off like the
+     * daily payload. Partial (stale) ranges are not cached.
+     */
+    @Cacheable(value = "dashboard", key = "'range-' + #period + ':' + #root.target.lastDay(#end)",
+            unless = "#result.stale()")
+    public DashboardPayload getRange(Period period, LocalDate end) {
+        LocalDate today = LocalDate.now(zoneId);
+        LocalDate last = lastDay(end);
+        LocalDate first = period.start(last);
+
+        List<LocalDate> days = first.datesUntil(last.plusDays(1)).toList();
+        List<DashboardPayload> payloads = loadDays(days, today);
+        return merge(period, days, payloads);
+    }
+
+    /** Last day a range ending at {@code end} covers: {@code end}, or today if null or in the future. */
+    public LocalDate lastDay(LocalDate end) {
+        LocalDate today = LocalDate.now(zoneId);
+        return end == null || end.isAfter(today) ? today : end;
+    }
+
+    /**
+     * Evicts every cached range covering {@code day}. Ranges are keyed by their
+     * last day, so these are the ones ending between {@code day} and the end of
+     * its week, month or year (today at the latest).
+     */
+    public void invalidateDay(LocalDate day) {
+        Cache cache = cacheManager.getCache("dashboard");
+        if (cache == null) return;
+        LocalDate today = LocalDate.now(zoneId);
+        for (Period period : Period.values()) {
+            LocalDate end = period.end(day);
+            if (end.isAfter(today)) end = today;
+            for (LocalDate last = day; !last.isAfter(end); last = last.plusDays(1)) {
+                cache.evict("range-" + period + ":" + last);
+            }
+        }
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    /** Payloads in {@code days} order; null for a day that was not loaded. */
+    private List<DashboardPayload> loadDays(List<LocalDate> days, LocalDate today) {
+        DashboardPayload[] out = new DashboardPayload[days.size()];
+        Cache cache = cacheManager.getCache("dashboard");
+        Map<LocalDate, DashboardPayload> stored = snapshotStore.findDashboards(days.get(0), today.minusDays(1));
+        boolean spCallLeft = true;
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < out.length; i++) {
+            LocalDate day = days.get(i);
+            if (day.isEqual(today)) {
+                DashboardPayload cached = cache == null ? null : cache.get("metrics", DashboardPayload.class);
+                spCallLeft = cached != null; // a cold today is this range's SQL Server call
+                out[i] = cached != null ? cached : loadToday();
+                continue;
+            }
+            DashboardPayload cached = cache == null ? null : cache.get("metrics:" + day, DashboardPayload.class);
+            if (cached == null) cached = stored.get(day);
+            out[i] = cached != null ? cached : dashboardService.fromCube(day).orElse(null);
+            if (out[i] == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return Arrays.asList(out);
+
+        // the newest day: it is the one a partial range should show
+        int newest = missing.get(missing.size() - 1);
+        if (spCallLeft) out[newest] = loadClosedDay(days.get(newest));
+        int left = out[newest] == null ? missing.size() : missing.size() - 1;
+        if (left > 0) {
+            log.info("Range {}..{}: {} day(s) not loaded yet; serving a partial range",
+                    days.get(0), days.get(days.size() - 1), left);
+        }
+        return Arrays.asList(out);
+    }
+
+    private DashboardPayload loadToday() {
+        try {
+            return dashboardService.getMetrics();
+        } catch (DataAccessException e) {
+            log.debug("Range without today: {}", e.getMessage()); // left out, range is stale
+            return null;
+        }
+    }
+
+    private DashboardPayload loadClosedDay(LocalDate day) {
+        try {
+            // through the proxy: cached and persisted on success
+            return dashboardService.getMetrics(day.atStartOfDay());
+        } catch (DataAccessException e) {
+            log.debug("Range day {} not loaded: {}", day, e.getMessage());
+            return null; // left out; the range is flagged stale
+        }
+    }
+
+    /**
+     * Sums day payloads (in {@code days} order) into one range payload; a null
+     * payload is a day that could not be loaded and makes the range stale.
+     */
+    static DashboardPayload merge(Period period, List<LocalDate> days, List<DashboardPayload> payloads) {
+        DayTotals totals = DayTotals.ZERO;
+        Map<String, StoreYoY> stores = new HashMap<>();
+        Map<String, BigDecimal> buckets = new LinkedHashMap<>();
+        LocalDateTime asOf = null;
+        boolean stale = false;
+
+        for (int i = 0; i < payloads.size(); i++) {
+            DashboardPayload p = payloads.get(i);
+            LocalDate day = days.get(i);
+            if (p == null) {
+                stale = true;
+                continue;
+            }
+            DayTotals t = p.totals() != null ? p.totals() : DayTotals.ZERO;
+            totals = totals.plus(t);
+            buckets.merge(bucketLabel(period, day), t.revenue(), BigDecimal::add);
+
+            for (StoreCompare s : p.storeComparison()) {
+                if (s.store() == null) continue;
+                String name = s.store().trim();
+                // by OE code: OE 3 and 33 share a name; rows persisted without one fall back to the name
+                String key = s.storeId() != 0 ? "#" + s.storeId() : name.toLowerCase(Locale.ROOT);
+                stores.merge(key, new StoreYoY(s.storeId(), name, s.lastYear(), s.thisYear()),
+                        (a, b) -> new StoreYoY(a.oe(), a.store(),
+                                a.lastYear().add(b.lastYear()), a.thisYear().add(b.thisYear())));
+            }
+            if (asOf == null || p.asOf().isAfter(asOf)) asOf = p.asOf();
+            stale |= p.stale();
+        }
+
+        List<StoreYoY> rows = new ArrayList<>(stores.values());
+        rows.sort(Comparator.comparing(StoreYoY::store, String.CASE_INSENSITIVE_ORDER).thenComparingInt(StoreYoY::oe));
+        StoreYoY top = null;
+        for (StoreYoY row : rows) {
+            if (top == null || row.thisYear().compareTo(top.thisYear()) > 0) top = row;
+        }
+        String topName = top == null ? "" : top.store();
+        int topOe = top == null ? 0 : top.oe();
+        BigDecimal topRevenue = top == null ? BigDecimal.ZERO : top.thisYear();
+        TopStoreStats topStats = analyzeTopStore(rows, topOe, topName, topRevenue, totals.revenue());
+
+        BigDecimal basket = avg(totals.revenue(), totals.transactions());
+        BigDecimal basketPy = avg(totals.revenuePY(), totals.transactionsPY());
+
+        List<Metric> metrics = List.of(
+                new Metric(period.salesLabel, formatCompact(totals.revenue()), List.of(
+                        new Metric("Vs Viti Kaluar", pct(totals.revenue(), totals.revenuePY()) + "%"),
+                        new Metric("Total Viti Kaluar", formatCompact(totals.revenuePY()))
+                )),
+                new Metric("Top Pika", topOe == 0 ? topName : String.valueOf(topOe), List.of(
+                        new Metric("Emri", topName),
+                        new Metric("Shitjet e Pikes", formatCompact(topRevenue)),
+                        new Metric("Kontributi %", topStats.contributionPct),
+                        new Metric("Vs Viti Kaluar", topStats.vsPyPct),
+                        new Metric("Renditja", topStats.rank > 0 ? String.valueOf(topStats.rank) : "n/a"),
+                        new Metric("Diferenca me #2", formatCompact(topStats.gapToSecond)),
+                        new Metric("Top 3 Pika", topStats.top3Summary)
+                )),
+                new Metric("Kuponat   Fiskal", formatCompact(totals.transactions()), List.of(
+                        new Metric("Vs Viti Kaluar", pct(totals.transactions(), totals.transactionsPY()) + "%"),
+                        new Metric("Viti Kaluar", formatCompact(totals.transactionsPY()))
+                )),
+                new Metric("Shporta Mesatare", formatCompact(basket), List.of(
+                        new Metric("Vs Viti Kaluar", pct(basket, basketPy) + "%"),
+                        new Metric("Viti Kaluar", formatCompact(basketPy))
+                ))
+        );
+
+        List<Point> daily = new ArrayList<>(buckets.size());
+        buckets.forEach((label, amount) -> daily.add(new Point(label, amount, formatCompact(amount))));
+
+        List<StoreCompare> storeComparison = DashboardService.mapStores(rows);
+        return new DashboardPayload(metrics, List.copyOf(daily), List.of(), List.copyOf(storeComparison),
+                totals, asOf, stale);
+    }
+
+    /** Weekday for a week, day of month for a month, month name for a year. */
+    private static String bucketLabel(Period period, LocalDate day) {
+        return switch (period) {
+            case WEEK -> DOW_FMT.format(day);
+            case MONTH -> String.valueOf(day.getDayOfMonth());
+            case YEAR -> day.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        };
+    }
+
+    private static BigDecimal avg(BigDecimal revenue, BigDecimal transactions) {
+        if (transactions.signum() <= 0) return BigDecimal.ZERO;
+        return revenue.divide(transactions, 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,7 @@
+// src/main/java/com/vivacrm/crm/service/DashboardRefreshedEvent.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.DashboardPayload;
+
+/** Published after a fresh "today" dashboard payload was loaded. */
+public record DashboardRefreshedEvent(DashboardPayload payload) {}
@@ -0,0 +1,117 @@
+// src/main/java/com/vivacrm/crm/service/DashboardResultSets.java
+package com.vivacrm.crm.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed rows of the four SP_GetDashboardData result sets (plus the
+ * SP_GetDashboardHourly delta) and the extractors that stream them straight
+ * into records (columns resolved once per set).
+ */
+final class DashboardResultSets {
+
+    private DashboardResultSets() {}
+
+    /** Result set 1: the single metrics row. */
+    record Summary(
+            BigDecimal totalRevenue,
+            BigDecimal revenueVsYesterdayPct,
+            BigDecimal revenueVsPYPct,
+            BigDecimal totalRevenuePY,
+            BigDecimal revenueYesterday,
+            BigDecimal transactions,
+            BigDecimal transactionsPY,
+            String peakHour,
+            BigDecimal avgBasketSize,
+            BigDecimal avgBasketSizePY,
+            String topStoreName,
+            String topStoreOE,
+            BigDecimal topStoreRevenue
+    ) {
+        static final Summary EMPTY = new Summary(
+                BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO, BigDecimal.ZERO, "", BigDecimal.ZERO, BigDecimal.ZERO,
+                "", "", BigDecimal.ZERO);
+    }
+
+    /** Result sets 2 and 3: daily (Label) and hourly (HourLabel) amounts. */
+    record LabeledAmount(String label, BigDecimal amount) {}
+
+    /**
+     * Result set 4: per-store this year vs last year. {@code oe} is the raw
+     * Sifra_Oe (SP_GetStoreKPI's StoreId); OE 3 and 33 share one display name.
+     */
+    record StoreYoY(int oe, String store, BigDecimal lastYear, BigDecimal thisYear) {}
+
+    /** All four result sets of one dashboard load. */
+    record Rows(Summary summary, List<LabeledAmount> daily, List<LabeledAmount> hourly, List<StoreYoY> stores) {}
+
+    /**
+     * SP_GetDashboardHourly row: one store and hour of today ({@code 'T'}),
+     * the same date last year ({@code 'P'}) or yesterday ({@code 'Y'}).
+     */
+    record HourlyDelta(char series, int oe, String store, int hour, BigDecimal amount, int tx) {}
+
+    static final ResultSetExtractor<List<Summary>> SUMMARY = rs -> {
+        ResultSetColumns c = ResultSetColumns.of(rs);
+        if (!rs.next()) return List.of();
+        return List.of(new Summary(
+                c.decimal(c.index("TotalRevenue")),
+                c.decimal(c.index("RevenueVsYesterdayPct")),
+                c.decimal(c.index("RevenueVsPYPct")),
+                c.decimal(c.index("TotalRevenuePY")),
+                c.decimal(c.index("RevenueYesterday")),
+                c.decimal(c.index("Transactions")),
+                c.decimal(c.index("TransactionsPY")),
+                c.text(c.index("PeakHour")),
+                c.decimal(c.index("AvgBasketSize")),
+                c.decimal(c.index("AvgBasketSizePY")),
+                c.text(c.index("TopStoreName")).trim(),
+                c.text(c.index("TopStoreOE")).trim(),
+                c.decimal(c.index("TopStoreRevenue"))
+        ));
+    };
+
+    static final ResultSetExtractor<List<LabeledAmount>> DAILY = labeledAmounts("Label", "Amount");
+    static final ResultSetExtractor<List<LabeledAmount>> HOURLY = labeledAmounts("HourLabel", "Amount");
+
+    static final ResultSetExtractor<List<StoreYoY>> STORES = rs -> {
+        ResultSetColumns c = ResultSetColumns.of(rs);
+        int oe = c.index("OE"), store = c.index("Store");
+        int lastYear = c.index("LastYear"), thisYear = c.index("ThisYear");
+        List<StoreYoY> out = new ArrayList<>(64);
+        while (rs.next()) {
+            out.add(new StoreYoY(c.integer(oe), c.text(store).trim(), c.decimal(lastYear), c.decimal(thisYear)));
+        }
+        return out;
+    };
+
+    static final ResultSetExtractor<List<HourlyDelta>> HOURLY_DELTA = rs -> {
+        ResultSetColumns c = ResultSetColumns.of(rs);
+        int series = c.index("Series"), oe = c.index("OE"), store = c.index("Store");
+        int hour = c.index("HourOfDay"), amount = c.index("Amount"), tx = c.index("TxCount");
+        List<HourlyDelta> out = new ArrayList<>(256);
+        while (rs.next()) {
+            String s = c.text(series);
+            out.add(new HourlyDelta(s.isEmpty() ? 'T' : s.charAt(0), c.integer(oe), c.text(store).trim(),
+                    c.integer(hour), c.decimal(amount), c.integer(tx)));
+        }
+        return out;
+    };
+
+    private static ResultSetExtractor<List<LabeledAmount>> labeledAmounts(String labelCol, String amountCol) {
+        return rs -> {
+            ResultSetColumns c = ResultSetColumns.of(rs);
+            int label = c.index(labelCol), amount = c.index(amountCol);
+            List<LabeledAmount> out = new ArrayList<>(32);
+            while (rs.next()) {
+                out.add(new LabeledAmount(c.text(label), c.decimal(amount)));
+            }
+            return out;
+        };
+    }
+}
@@ -1,15 +1,26 @@
 // src/main/java/com/vivacrm/crm/service/DashboardService.java
 package com.vivacrm.crm.service;
 
+import com.vivacrm.crm.cluster.ClusterCoordinator;
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.Rows;
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardResultSets.Summary;
 import com.vivacrm.crm.service.dto.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlReturnResultSet;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.stereotype.Service;
@@ -17,16 +28,21 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class DashboardService {
 
+    private static final Logger log = LoggerFactory.getLogger(DashboardService.class);
+
     private static final BigDecimal THOUSAND = new BigDecimal("1000");
     private static final BigDecimal MILLION  = new BigDecimal("1000000");
     private static final BigDecimal BILLION  = new BigDecimal("1000000000");
@@ -41,105 +57,327 @@ public class DashboardService {
             DateTimeFormatter.ofPattern("yyyyMMdd")
     };
 
-    private final JdbcTemplate sqlServerJdbc;
+    private static final String RS_SUMMARY = "#result-set-1";
+    private static final String RS_DAILY   = "#result-set-2";
+    private static final String RS_HOURLY  = "#result-set-3";
+    private static final String RS_STORES  = "#result-set-4";
+    private static final String RS_DELTA   = "#result-set-1";
+
     private final SimpleJdbcCall spResultSet; // result-set only (no OUT-param fallback)
+    private final SimpleJdbcCall spHourly;    // per-store/hour delta for the incremental "today" path
+    private final IntradayDashboard intraday; // null = always full loads
+    private final SingleFlight<String, Map<String, Object>> spFlight =
+            new SingleFlight<>("SP_GetDashboardData");
+    private final DaySnapshotStore snapshotStore;
+    private final SalesCube cube;             // null = closed days from SQL Server only
+    private final LeaderboardService leaderboards; // null = Top Pika ranked from the SP rows only
+    private final SqlServerGuard guard;
+    private final ApplicationEventPublisher events;
+    private final ClusterCoordinator cluster; // null = single node
     private final ZoneId zoneId;
 
+    /** Last successfully loaded current-day payload, served (flagged stale) during outages. */
+    private final AtomicReference<DashboardPayload> lastGood = new AtomicReference<>();
+
+    @Autowired
     public DashboardService(@Qualifier("mssqlJdbcTemplate") JdbcTemplate jdbcTemplate,
-                            @Value("${app.timezone:UTC}") String zone) {
-        jdbcTemplate.setResultsMapCaseInsensitive(true);
-        this.sqlServerJdbc = jdbcTemplate;
+                            DaySnapshotStore snapshotStore,
+                            SalesCube cube,
+                            LeaderboardService leaderboards,
+                            SqlServerGuard guard,
+                            ApplicationEventPublisher events,
+                            ClusterCoordinator cluster,
+                            @Value("${app.timezone:UTC}") String zone,
+                            @Value("${app.dashboard.incremental.enabled:true}") boolean incremental,
+                            @Value("${app.dashboard.incremental.rewind-hours:2}") int rewindHours,
+                            @Value("${app.dashboard.incremental.full-reload-interval:PT6H}") Duration fullReloadInterval) {
+        this(createCall(jdbcTemplate),
+                incremental ? createHourlyCall(jdbcTemplate) : null,
+                incremental ? new IntradayDashboard(rewindHours, fullReloadInterval) : null,
+                snapshotStore, cube, leaderboards, guard, events, cluster, zone);
+    }
+
+    /** Wires arbitrary SP calls; lets benchmarks run {@link #loadMetrics} against a stub. */
+    DashboardService(SimpleJdbcCall spResultSet,
+                     SimpleJdbcCall spHourly,
+                     IntradayDashboard intraday,
+                     DaySnapshotStore snapshotStore,
+                     SalesCube cube,
+                     LeaderboardService leaderboards,
+                     SqlServerGuard guard,
+                     ApplicationEventPublisher events,
+                     ClusterCoordinator cluster,
+                     String zone) {
+        this.spResultSet = spResultSet;
+        this.spHourly = spHourly;
+        this.intraday = spHourly == null ? null : intraday;
+        this.snapshotStore = snapshotStore;
+        this.cube = cube;
+        this.leaderboards = leaderboards;
+        this.guard = guard;
+        this.events = events;
+        this.cluster = cluster;
         this.zoneId = ZoneId.of(zone);
+    }
 
-        this.spResultSet = new SimpleJdbcCall(sqlServerJdbc)
+    private static SimpleJdbcCall createCall(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.setResultsMapCaseInsensitive(true);
+        return new SimpleJdbcCall(jdbcTemplate)
                 .withSchemaName("dbo")
                 .withProcedureName("SP_GetDashboardData")  // <-- wrapper
                 .withoutProcedureColumnMetaDataAccess()
                 .declareParameters(
                         new SqlParameter("ForDate", Types.DATE),
-                        new SqlParameter("AsOf",    Types.TIMESTAMP)
-                )
-                .returningResultSet("#result-set-1", new ColumnMapRowMapper())
-                .returningResultSet("#result-set-2", new ColumnMapRowMapper())
-                .returningResultSet("#result-set-3", new ColumnMapRowMapper())
-                .returningResultSet("#result-set-4", new ColumnMapRowMapper());
+                        new SqlParameter("AsOf",    Types.TIMESTAMP),
+                        // typed, index-based extraction: no per-row maps
+                        new SqlReturnResultSet(RS_SUMMARY, DashboardResultSets.SUMMARY),
+                        new SqlReturnResultSet(RS_DAILY,   DashboardResultSets.DAILY),
+                        new SqlReturnResultSet(RS_HOURLY,  DashboardResultSets.HOURLY),
+                        new SqlReturnResultSet(RS_STORES,  DashboardResultSets.STORES)
+                );
     }
 
 
-    /** Cached read: stays cached until explicitly refreshed/evicted. */
-    @Cacheable(value = "dashboard", key = "'metrics'")
+    /** SP_GetDashboardHourly: per-store/hour rows of a day; also used by {@link SalesCube}. */
+    static SimpleJdbcCall createHourlyCall(JdbcTemplate jdbcTemplate) {
+        return new SimpleJdbcCall(jdbcTemplate)
+                .withSchemaName("dbo")
+                .withProcedureName("SP_GetDashboardHourly")
+                .withoutProcedureColumnMetaDataAccess()
+                .declareParameters(
+                        new SqlParameter("ForDate",  Types.DATE),
+                        new SqlParameter("FromHour", Types.INTEGER),
+                        new SqlParameter("ToHour",   Types.INTEGER),
+                        new SqlReturnResultSet(RS_DELTA, DashboardResultSets.HOURLY_DELTA)
+                );
+    }
+
+    /**
+     * Cached read: expires at the next hourly cut-off unless refreshed/evicted first.
+     * If SQL Server is unavailable the last-known-good payload is returned
+     * flagged as stale (and not cached, so the next call tries again).
+     * A cluster follower never loads: it serves the leader's adopted payload.
+     */
+    @Cacheable(value = "dashboard", key = "'metrics'", unless = "#result.stale()")
     public DashboardPayload getMetrics() {
-        return loadMetrics(null);
+        if (isFollower()) return adopted();
+        try {
+            return remember(loadMetrics(null));
+        } catch (DataAccessException e) {
+            DashboardPayload last = lastGood.get();
+            if (last == null) throw e;
+            log.warn("Serving stale dashboard from {}: {}", last.asOf(), e.getMessage());
+            return last.asStale();
+        }
     }
 
     /**
      * Return metrics for a specific date/time.
      * Results are cached per day to avoid repeated stored procedure calls
-     * for the same historical date.
+     * for the same historical date; closed days live under the long
+     * historical TTL and are evicted by the cache memory budget. On a cache
+     * miss, closed days are served from the local snapshot store, then
+     * rebuilt from the sales cube when it holds every day they need, before
+     * falling back to SQL Server. Results that look incomplete (no stores,
+     * nothing sold) are neither cached nor persisted, so they are retried.
      */
-    @Cacheable(value = "dashboard", key = "'metrics:' + #forDate.toLocalDate()")
+    @Cacheable(value = "dashboard", key = "'metrics:' + #forDate.toLocalDate()",
+            unless = "!T(com.vivacrm.crm.service.DaySnapshotStore).isComplete(#result)")
     public DashboardPayload getMetrics(LocalDateTime forDate) {
-        return loadMetrics(forDate);
+        LocalDate day = forDate.toLocalDate();
+        Optional<DashboardPayload> persisted = snapshotStore.findDashboard(day);
+        if (persisted.isPresent()) return persisted.get();
+
+        // not persisted: the cube can rebuild it, and the SP's own result stays the reference
+        Optional<DashboardPayload> fromCube = fromCube(day);
+        if (fromCube.isPresent()) return fromCube.get();
+
+        DashboardPayload payload = loadMetrics(forDate);
+        snapshotStore.saveDashboard(day, payload); // closed days only
+        return payload;
     }
 
-    /** Force-refresh cache and return fresh payload. */
+    /** A closed day rebuilt from the sales cube without SQL Server; empty if the cube lacks a day it needs. */
+    public Optional<DashboardPayload> fromCube(LocalDate day) {
+        if (cube == null) return Optional.empty();
+        return cube.dashboardRows(day).map(rows -> assemble(rows, LocalDateTime.now(zoneId), false));
+    }
+
+    /** Loads and persists a closed day unless it is already stored locally. */
+    public boolean backfillDay(LocalDate day) {
+        if (!snapshotStore.isClosed(day) || snapshotStore.hasDashboard(day)) return false;
+        return snapshotStore.saveDashboard(day, loadMetrics(day.atStartOfDay()));
+    }
+
+    /**
+     * Forgets a day's cached and persisted payload (e.g. stored while the
+     * ETL was still loading it); the next request reloads it.
+     */
+    @CacheEvict(value = "dashboard", key = "'metrics:' + #day")
+    public void invalidateDay(LocalDate day) {
+        snapshotStore.invalidate(day);
+    }
+
+    /** Force-refresh cache and return fresh payload; a cluster follower returns the adopted one. */
     @CachePut(value = "dashboard", key = "'metrics'")
     public DashboardPayload refreshMetrics() {
-        return loadMetrics(null);
+        if (isFollower()) return adopted();
+        return remember(loadMetrics(null));
+    }
+
+    /**
+     * Installs a payload loaded by the cluster leader (see ClusterSnapshotSync):
+     * becomes the cached and last-known-good payload without an SP call.
+     */
+    @CachePut(value = "dashboard", key = "'metrics'")
+    public DashboardPayload adopt(DashboardPayload payload) {
+        return remember(payload);
     }
 
     /** Evict cached payload (manual reset). */
     @CacheEvict(value = "dashboard", key = "'metrics'")
     public void resetMetrics() { /* no-op */ }
 
+    /** Coalescing stats for SP_GetDashboardData calls. */
+    public SingleFlight<String, Map<String, Object>> getSpFlight() {
+        return spFlight;
+    }
+
+    private Map<String, Object> countRows(Map<String, Object> out) {
+        guard.recordRows("SP_GetDashboardData", "summary", getList(out, RS_SUMMARY).size());
+        guard.recordRows("SP_GetDashboardData", "daily",   getList(out, RS_DAILY).size());
+        guard.recordRows("SP_GetDashboardData", "hourly",  getList(out, RS_HOURLY).size());
+        guard.recordRows("SP_GetDashboardData", "stores",  getList(out, RS_STORES).size());
+        return out;
+    }
+
+    private boolean isFollower() {
+        return cluster != null && !cluster.isLeader();
+    }
+
+    /** The payload last adopted from the cluster leader, flagged as the leader flagged it. */
+    private DashboardPayload adopted() {
+        DashboardPayload last = lastGood.get();
+        if (last == null) throw new SqlServerUnavailableException("No dashboard from the cluster leader yet");
+        return last;
+    }
+
+    private DashboardPayload remember(DashboardPayload payload) {
+        lastGood.set(payload);
+        events.publishEvent(new DashboardRefreshedEvent(payload));
+        return payload;
+    }
+
     // ----------------- internal loader -----------------
     protected DashboardPayload loadMetrics(LocalDateTime dateTime) {
         final LocalDateTime now = LocalDateTime.now(zoneId);
         final LocalDate today = now.toLocalDate();
         final LocalDateTime queryTime = ((dateTime != null) ? dateTime : now)
                 .withMinute(0).withSecond(0).withNano(0);
+        final boolean isToday = dateTime == null || queryTime.toLocalDate().isEqual(today);
+        final int cutoffHour = queryTime.minusHours(1).getHour(); // same as the SP: HOUR(AsOf - 1h)
+        // only the live payload owns the incremental state; a forDate for today at an
+        // earlier hour is a one-off full load and must not rewind or reseed it
+        final boolean live = dateTime == null && intraday != null;
+
+        // Today: merge only the newly completed hour(s) into the running totals
+        if (live) {
+            Optional<Rows> incremental = intraday.advance(today, cutoffHour, now, this::fetchHourly);
+            if (incremental.isPresent()) return assemble(incremental.get(), now, true);
+        }
 
+        Rows rows = fetchFull(queryTime, isToday);
+        if (live && intraday.canSeed(today)) {
+            seedIntraday(today, cutoffHour, now, rows);
+        }
+        return assemble(rows, now, dateTime == null);
+    }
+
+    /** Full SP_GetDashboardData call: whole day (or today up to the last completed hour). */
+    private Rows fetchFull(LocalDateTime queryTime, boolean isToday) {
         MapSqlParameterSource in = new MapSqlParameterSource();
+        final String flightKey;
 
 // Wrapper logic: NULL => today (cut off to last completed hour inside SP)
 // Non-null & not today => historic full day
-        if (dateTime == null || queryTime.toLocalDate().isEqual(today)) {
+        if (isToday) {
             in.addValue("ForDate", null, Types.DATE);
             in.addValue("AsOf", java.sql.Timestamp.valueOf(queryTime), Types.TIMESTAMP);
+            flightKey = "AsOf=" + queryTime;
         } else {
             in.addValue("ForDate", java.sql.Date.valueOf(queryTime.toLocalDate()), Types.DATE);
             in.addValue("AsOf", null, Types.TIMESTAMP);
+            flightKey = "ForDate=" + queryTime.toLocalDate();
         }
 
-        List<Map<String, Object>> rs1 = Collections.emptyList();
-        List<Map<String, Object>> rs2 = Collections.emptyList();
-        List<Map<String, Object>> rs3 = Collections.emptyList();
-        List<Map<String, Object>> rs4 = Collections.emptyList();
-        Map<String, Object> metricsRow = Collections.emptyMap();
+        // Concurrent misses for the same ForDate/AsOf share a single SP execution
+        Map<String, Object> out = spFlight.execute(flightKey,
+                () -> guard.call("SP_GetDashboardData", () -> countRows(spResultSet.execute(in))));
+        List<Summary> rs1 = getList(out, RS_SUMMARY);
+        List<LabeledAmount> rs2 = getList(out, RS_DAILY);
+        List<LabeledAmount> rs3 = getList(out, RS_HOURLY);
+        List<StoreYoY> rs4 = getList(out, RS_STORES);
+        return new Rows(rs1.isEmpty() ? Summary.EMPTY : rs1.get(0), rs2, rs3, rs4);
+    }
 
-        Map<String, Object> out = spResultSet.execute(in);
-        rs1 = getList(out, "#result-set-1", "rs");
-        rs2 = getList(out, "#result-set-2", "daily");
-        rs3 = getList(out, "#result-set-3", "hourly");
-        rs4 = getList(out, "#result-set-4", "stores");
-        metricsRow = rs1.isEmpty() ? Collections.emptyMap() : rs1.get(0);
+    private List<HourlyDelta> fetchHourly(LocalDate day, int fromHour, int toHour) {
+        return fetchHourly(spHourly, guard, day, fromHour, toHour);
+    }
 
-        // ---- Top Pika analytics (rank, share, YoY, gap to #2, top-3 summary) ----
-        final String topStoreName = asString(metricsRow, "TopStoreName", "").trim();
-        final String topStoreOE   = asString(metricsRow, "TopStoreOE", "").trim();
-        final BigDecimal topStoreRevenue = toDecimal(metricsRow.get("TopStoreRevenue"));
-        final BigDecimal totalRevenue    = toDecimal(metricsRow.get("TotalRevenue"));
+    /** SP_GetDashboardHourly rows for hours {@code fromHour..toHour} of {@code day}, through the guard. */
+    static List<HourlyDelta> fetchHourly(SimpleJdbcCall spHourly, SqlServerGuard guard,
+                                         LocalDate day, int fromHour, int toHour) {
+        MapSqlParameterSource in = new MapSqlParameterSource()
+                .addValue("ForDate", java.sql.Date.valueOf(day), Types.DATE)
+                .addValue("FromHour", fromHour, Types.INTEGER)
+                .addValue("ToHour", toHour, Types.INTEGER);
+        List<HourlyDelta> rows = guard.call("SP_GetDashboardHourly",
+                () -> getList(spHourly.execute(in), RS_DELTA));
+        guard.recordRows("SP_GetDashboardHourly", "delta", rows.size());
+        return rows;
+    }
 
-        TopStoreStats topStats = analyzeTopStore(rs4, "Store", "LastYear", "ThisYear",
-                topStoreName, topStoreRevenue, totalRevenue);
+    /** Seeds the incremental state; a failure here never fails the full load. */
+    private void seedIntraday(LocalDate today, int cutoffHour, LocalDateTime now, Rows full) {
+        try {
+            if (!intraday.seed(today, cutoffHour, now, full, fetchHourly(today, 0, cutoffHour))) {
+                log.warn("SP_GetDashboardHourly totals differ from SP_GetDashboardData for {}; "
+                        + "incremental refresh disabled for the day", today);
+            }
+        } catch (DataAccessException e) {
+            intraday.invalidate();
+            log.warn("Could not seed incremental dashboard: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Formats typed rows into the payload the app renders; the live payload
+     * ranks its top store on the store leaderboard.
+     */
+    private DashboardPayload assemble(Rows rows, LocalDateTime now, boolean live) {
+        Summary metricsRow = rows.summary();
+        List<LabeledAmount> rs2 = rows.daily();
+        List<LabeledAmount> rs3 = rows.hourly();
+        List<StoreYoY> rs4 = rows.stores();
+
+        // ---- Top Pika analytics (rank, share, YoY, gap to #2, top-3 summary) ----
+        final String topStoreName = metricsRow.topStoreName();
+        final String topStoreOE   = metricsRow.topStoreOE();
+        final BigDecimal topStoreRevenue = metricsRow.topStoreRevenue();
+        final BigDecimal totalRevenue    = metricsRow.totalRevenue();
+
+        TopStoreStats topStats = analyzeTopStore(rs4, parseOe(topStoreOE), topStoreName, topStoreRevenue, totalRevenue);
+        if (live && leaderboards != null) {
+            topStats = rankOnLeaderboard(topStats, parseOe(topStoreOE), now);
+        }
 
         // ---- grouped metrics with sub-metrics ----
         List<Metric> metrics = List.of(
-                m("Shitjet Sod", compactFromMap(metricsRow, "TotalRevenue"), List.of(
-                        m("VS Dje", compactFromMap(metricsRow, "RevenueVsYesterdayPct") + "%"),
-                        m("Vs Viti Kaluar", compactFromMap(metricsRow, "RevenueVsPYPct") + "%"),
-                        m("Total Viti Kaluar", compactFromMap(metricsRow, "TotalRevenuePY")),
-                        m("Dje", compactFromMap(metricsRow, "RevenueYesterday"))
+                m("Shitjet Sod", formatCompact(metricsRow.totalRevenue()), List.of(
+                        m("VS Dje", formatCompact(metricsRow.revenueVsYesterdayPct()) + "%"),
+                        m("Vs Viti Kaluar", formatCompact(metricsRow.revenueVsPYPct()) + "%"),
+                        m("Total Viti Kaluar", formatCompact(metricsRow.totalRevenuePY())),
+                        m("Dje", formatCompact(metricsRow.revenueYesterday()))
                 )),
 
                 m("Top Pika", topStoreOE.isEmpty() ? topStoreName : topStoreOE, List.of(
@@ -151,28 +389,79 @@ public class DashboardService {
                         m("Diferenca me #2", formatCompact(topStats.gapToSecond)),
                         m("Top 3 Pika", topStats.top3Summary)
                 )),
-                m("Kuponat   Fiskal", compactFromMap(metricsRow, "Transactions"), List.of(
-                        m("Vs Viti Kaluar", pctFromMap(metricsRow, "Transactions", "TransactionsPY") + "%"),
-                        m("Viti Kaluar", compactFromMap(metricsRow, "TransactionsPY")),
-                        m("Ora Me Trafik", asString(metricsRow, "PeakHour", ""))
+                m("Kuponat   Fiskal", formatCompact(metricsRow.transactions()), List.of(
+                        m("Vs Viti Kaluar", pct(metricsRow.transactions(), metricsRow.transactionsPY()) + "%"),
+                        m("Viti Kaluar", formatCompact(metricsRow.transactionsPY())),
+                        m("Ora Me Trafik", metricsRow.peakHour())
                 )),
 
-                m("Shporta Mesatare", compactFromMap(metricsRow, "AvgBasketSize"), List.of(
-                        m("Vs Viti Kaluar", pctFromMap(metricsRow, "AvgBasketSize", "AvgBasketSizePY") + "%"),
-                        m("Viti Kaluar", compactFromMap(metricsRow, "AvgBasketSizePY"))
+                m("Shporta Mesatare", formatCompact(metricsRow.avgBasketSize()), List.of(
+                        m("Vs Viti Kaluar", pct(metricsRow.avgBasketSize(), metricsRow.avgBasketSizePY()) + "%"),
+                        m("Viti Kaluar", formatCompact(metricsRow.avgBasketSizePY()))
                 ))
         );
 
         // Series
-        List<Point> dailySeries  = mapDailyPointsWithDOW(rs2, "Label", "Amount");
-        List<Point> hourlySeries = mapHourlyCompressed(rs3, "HourLabel", "Amount");
-        List<StoreCompare> storeComparison = mapStores(rs4, "Store", "LastYear", "ThisYear");
+        List<Point> dailySeries  = mapDailyPointsWithDOW(rs2);
+        List<Point> hourlySeries = mapHourlyCompressed(rs3);
+        List<StoreCompare> storeComparison = mapStores(rs4);
+
+        DayTotals totals = new DayTotals(metricsRow.totalRevenue(), metricsRow.totalRevenuePY(),
+                metricsRow.transactions(), metricsRow.transactionsPY());
+
+        return new DashboardPayload(metrics, dailySeries, hourlySeries, storeComparison, totals, now, false);
+    }
+
+    /**
+     * View of a payload limited to the stores in {@code scope}, matched on the
+     * OE code (store names are not unique: OE 3 and 33 share one). Sales and
+     * the top-store group are recomputed over those stores; chain-wide figures
+     * that cannot be split per store (transactions, basket, daily/hourly
+     * series) are left out, as are rows persisted without an OE code.
+     */
+    static DashboardPayload restrict(DashboardPayload full, StoreScope scope) {
+        List<StoreCompare> stores = new ArrayList<>();
+        List<StoreYoY> rows = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        BigDecimal totalPy = BigDecimal.ZERO;
+        StoreYoY top = null;
+        for (StoreCompare s : full.storeComparison()) {
+            if (s.store() == null || s.storeId() == 0 || !scope.contains(s.storeId())) continue;
+            StoreYoY row = new StoreYoY(s.storeId(), s.store(), s.lastYear(), s.thisYear());
+            stores.add(s);
+            rows.add(row);
+            total = total.add(s.thisYear());
+            totalPy = totalPy.add(s.lastYear());
+            if (top == null || row.thisYear().compareTo(top.thisYear()) > 0) top = row;
+        }
 
-        return new DashboardPayload(metrics, dailySeries, hourlySeries, storeComparison);
+        String topName = top == null ? "" : top.store();
+        BigDecimal topRevenue = top == null ? BigDecimal.ZERO : top.thisYear();
+        int topOe = top == null ? 0 : top.oe();
+        TopStoreStats topStats = analyzeTopStore(rows, topOe, topName, topRevenue, total);
+
+        // keep the sales title of the source ("Shitjet Sod", or a range's period title)
+        String salesLabel = full.metrics().isEmpty() ? "Shitjet Sod" : full.metrics().get(0).getName();
+        List<Metric> metrics = List.of(
+                m(salesLabel, formatCompact(total), List.of(
+                        m("Vs Viti Kaluar", pct(total, totalPy) + "%"),
+                        m("Total Viti Kaluar", formatCompact(totalPy))
+                )),
+                m("Top Pika", topOe == 0 ? topName : String.valueOf(topOe), List.of(
+                        m("Emri", topName),
+                        m("Shitjet e Pikes", formatCompact(topRevenue)),
+                        m("Kontributi %", topStats.contributionPct),
+                        m("Vs Viti Kaluar", topStats.vsPyPct),
+                        m("Renditja", topStats.rank > 0 ? String.valueOf(topStats.rank) : "n/a"),
+                        m("Diferenca me #2", formatCompact(topStats.gapToSecond)),
+                        m("Top 3 Pika", topStats.top3Summary)
+                ))
+        );
+        return new DashboardPayload(metrics, List.of(), List.of(), List.copyOf(stores), null, full.asOf(), full.stale());
     }
 
     // ----------------- Top store analytics -----------------
-    private static final class TopStoreStats {
+    static final class TopStoreStats {
         final String contributionPct;      // top store revenue / total revenue
         final String vsPyPct;              // (thisYear - lastYear)/lastYear
         final int    rank;                 // 1-based rank among stores by ThisYear
@@ -188,66 +477,119 @@ public class DashboardService {
         }
     }
 
-    private static TopStoreStats analyzeTopStore(List<Map<String, Object>> rows,
-                                                 String storeCol, String lastYearCol, String thisYearCol,
+    /**
+     * Rank, share, YoY, gap to #2 and top-3 of the top store in one pass over
+     * {@code rows}, without copying or sorting them. Ranking is by ThisYear
+     * descending, ties in row order. The top store is found by {@code topStoreOe}
+     * (by {@code topStoreName} when that is 0); if it is not among the rows, the
+     * store with the closest ThisYear stands in for it.
+     */
+    static TopStoreStats analyzeTopStore(List<StoreYoY> rows,
+                                                 int topStoreOe,
                                                  String topStoreName,
                                                  BigDecimal topStoreRevenue,
                                                  BigDecimal totalRevenue) {
-        record Entry(String store, BigDecimal lastYear, BigDecimal thisYear) {}
-        List<Entry> list = new ArrayList<>();
-        if (rows != null) {
-            for (Map<String, Object> r : rows) {
-                String s = String.valueOf(r.getOrDefault(storeCol, "")).trim();
-                BigDecimal ly = toDecimal(r.get(lastYearCol));
-                BigDecimal ty = toDecimal(r.get(thisYearCol));
-                list.add(new Entry(s, ly, ty));
-            }
-        }
-        list.sort((a, b) -> b.thisYear.compareTo(a.thisYear));
+        List<StoreYoY> list = rows == null ? List.of() : rows;
 
-        int rank = -1;
+        int match = -1;       // best-ranked row of the top store
+        int nearest = -1;     // fallback: closest ThisYear to topStoreRevenue
+        BigDecimal nearestDiff = null;
+        int[] top3 = {-1, -1, -1};
         for (int i = 0; i < list.size(); i++) {
-            if (list.get(i).store.equalsIgnoreCase(topStoreName)) {
-                rank = i + 1;
-                break;
+            StoreYoY e = list.get(i);
+            boolean isTop = topStoreOe != 0 ? e.oe() == topStoreOe : e.store().equalsIgnoreCase(topStoreName);
+            if (isTop && (match < 0 || ranksBefore(list, i, match))) match = i;
+            BigDecimal diff = e.thisYear().subtract(topStoreRevenue).abs();
+            int c = nearestDiff == null ? -1 : diff.compareTo(nearestDiff);
+            if (c < 0 || (c == 0 && ranksBefore(list, i, nearest))) { nearest = i; nearestDiff = diff; }
+            for (int k = 0; k < 3; k++) {
+                if (top3[k] < 0 || ranksBefore(list, i, top3[k])) {
+                    System.arraycopy(top3, k, top3, k + 1, 2 - k);
+                    top3[k] = i;
+                    break;
+                }
             }
         }
-        if (rank < 0 && !list.isEmpty() && topStoreRevenue.signum() > 0) {
-            BigDecimal bestDiff = null; int bestIdx = -1;
-            for (int i = 0; i < list.size(); i++) {
-                BigDecimal diff = list.get(i).thisYear.subtract(topStoreRevenue).abs();
-                if (bestDiff == null || diff.compareTo(bestDiff) < 0) { bestDiff = diff; bestIdx = i; }
-            }
-            rank = bestIdx >= 0 ? bestIdx + 1 : -1;
+        int found = match >= 0 ? match : (topStoreRevenue.signum() > 0 ? nearest : -1);
+
+        int rank = -1;
+        if (found >= 0) {
+            rank = 1;
+            for (int i = 0; i < list.size(); i++) if (ranksBefore(list, i, found)) rank++;
         }
 
         BigDecimal gap2 = BigDecimal.ZERO;
-        if (!list.isEmpty() && rank == 1 && list.size() >= 2) {
-            gap2 = list.get(0).thisYear.subtract(list.get(1).thisYear);
+        if (rank == 1 && top3[1] >= 0) {
+            gap2 = list.get(top3[0]).thisYear().subtract(list.get(top3[1]).thisYear());
         }
 
         String vsPyPct = "n/a";
-        if (rank > 0) {
-            Entry e = list.get(rank - 1);
-            if (e.lastYear.signum() > 0) vsPyPct = fmtPct(e.thisYear.subtract(e.lastYear), e.lastYear);
-            else if (e.thisYear.signum() > 0) vsPyPct = "100%";
+        if (found >= 0) {
+            StoreYoY e = list.get(found);
+            if (e.lastYear().signum() > 0) vsPyPct = fmtPct(e.thisYear().subtract(e.lastYear()), e.lastYear());
+            else if (e.thisYear().signum() > 0) vsPyPct = "100%";
             else vsPyPct = "0%";
         }
         String contrib = fmtPct(topStoreRevenue, totalRevenue);
 
         StringBuilder sb = new StringBuilder();
-        int topN = Math.min(3, list.size());
-        for (int i = 0; i < topN; i++) {
-            Entry e = list.get(i);
-            if (i > 0) sb.append("; ");
-            sb.append(i + 1).append(") ").append(e.store).append(": ").append(formatCompact(e.thisYear));
+        for (int k = 0; k < 3 && top3[k] >= 0; k++) {
+            StoreYoY e = list.get(top3[k]);
+            if (k > 0) sb.append("; ");
+            sb.append(k + 1).append(") ").append(e.store()).append(": ").append(formatCompact(e.thisYear()));
+        }
+        String top3Summary = sb.toString();
+
+        return new TopStoreStats(contrib, vsPyPct, rank, gap2, top3Summary);
+    }
+
+    /**
+     * Rank, gap to #2 and top 3 of the top store taken from the store
+     * leaderboard by revenue, matched on the OE code (the KPI store id), when
+     * the board is of the same hour as the payload and holds the store;
+     * otherwise {@code own} as computed from the dashboard rows. Share and YoY
+     * always stay with the dashboard rows.
+     */
+    private TopStoreStats rankOnLeaderboard(TopStoreStats own, int topStoreOe, LocalDateTime now) {
+        StoreLeaderboard board = leaderboards.getCurrentLeaderboard();
+        if (topStoreOe == 0 || board.asOf() == null
+                || !board.asOf().truncatedTo(ChronoUnit.HOURS).equals(now.truncatedTo(ChronoUnit.HOURS))) {
+            return own;
+        }
+        int rank = board.rank(topStoreOe, StoreKpiSort.REVENUE);
+        if (rank < 0) return own;
+
+        BigDecimal gap2 = BigDecimal.ZERO;
+        StoreKpi first = board.atRank(1, StoreKpiSort.REVENUE);
+        StoreKpi second = board.atRank(2, StoreKpiSort.REVENUE);
+        if (rank == 1 && second != null) gap2 = first.revenueToday().subtract(second.revenueToday());
+
+        StringBuilder sb = new StringBuilder();
+        for (int k = 1; k <= 3 && k <= board.size(); k++) {
+            StoreKpi e = board.atRank(k, StoreKpiSort.REVENUE);
+            if (k > 1) sb.append("; ");
+            sb.append(k).append(") ").append(e.storeName()).append(": ").append(formatCompact(e.revenueToday()));
         }
-        String top3 = sb.toString();
+        return new TopStoreStats(own.contributionPct, own.vsPyPct, rank, gap2, sb.toString());
+    }
+
+    /** OE code as the SP prints it; 0 when blank or not a number. */
+    static int parseOe(String oe) {
+        if (oe == null || oe.isBlank()) return 0;
+        try {
+            return Integer.parseInt(oe.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-        return new TopStoreStats(contrib, vsPyPct, rank, gap2, top3);
+    /** True if row {@code a} ranks above row {@code b}: higher ThisYear, ties in row order. */
+    private static boolean ranksBefore(List<StoreYoY> rows, int a, int b) {
+        int c = rows.get(a).thisYear().compareTo(rows.get(b).thisYear());
+        return c > 0 || (c == 0 && a < b);
     }
 
-    // ----------------- helpers -----------------
+    // ----------------- helpers (package-private for src/jmh benchmarks) -----------------
     private static Metric m(String name, String value) {
         return new Metric(name, value);
     }
@@ -255,38 +597,32 @@ public class DashboardService {
         return new Metric(name, value, subs);
     }
 
+    /** Typed rows of one result set; a set the SP did not return reads as empty. */
     @SuppressWarnings("unchecked")
-    private static List<Map<String, Object>> getList(Map<String, Object> out, String primaryKey, String altKey) {
-        Object v = out.get(primaryKey);
-        if (v instanceof List<?> l && !l.isEmpty() && l.get(0) instanceof Map)
-            return (List<Map<String, Object>>) v;
-        v = out.get(altKey);
-        if (v instanceof List<?> l2 && !l2.isEmpty() && l2.get(0) instanceof Map)
-            return (List<Map<String, Object>>) v;
-        return Collections.emptyList();
+    private static <T> List<T> getList(Map<String, Object> out, String key) {
+        Object v = out.get(key);
+        return v instanceof List<?> l ? (List<T>) l : Collections.emptyList();
     }
 
-    private static List<Point> mapDailyPointsWithDOW(List<Map<String, Object>> rows, String dateCol, String amtCol) {
+    static List<Point> mapDailyPointsWithDOW(List<LabeledAmount> rows) {
         List<Point> out = new ArrayList<>(rows.size());
-        for (Map<String, Object> r : rows) {
-            String raw = String.valueOf(r.getOrDefault(dateCol, ""));
-            String dow = toDayOfWeek(raw);
-            BigDecimal amount = toDecimal(r.get(amtCol));
+        for (LabeledAmount r : rows) {
+            String dow = toDayOfWeek(r.label());
+            BigDecimal amount = r.amount();
             out.add(new Point(dow, amount, formatCompact(amount)));
         }
         return out;
     }
 
-    private static List<Point> mapHourlyCompressed(List<Map<String, Object>> rows, String labelCol, String amtCol) {
+    static List<Point> mapHourlyCompressed(List<LabeledAmount> rows) {
         if (rows == null || rows.isEmpty()) return List.of();
 
         List<HourBin> bins = new ArrayList<>();
-        for (Map<String, Object> r : rows) {
-            String lbl = String.valueOf(r.getOrDefault(labelCol, "")).trim();
+        for (LabeledAmount r : rows) {
+            String lbl = r.label().trim();
             int hour = parseHour(lbl);
             if (hour < 0) continue;
-            BigDecimal val = toDecimal(r.get(amtCol));
-            bins.add(new HourBin(hour, lbl, val));
+            bins.add(new HourBin(hour, lbl, r.amount()));
         }
         bins.sort(Comparator.comparingInt(b -> b.hour));
 
@@ -316,7 +652,7 @@ public class DashboardService {
         HourBin(int hour, String label, BigDecimal value) { this.hour = hour; this.label = label; this.value = value; }
     }
 
-    private static int parseHour(String label) {
+    static int parseHour(String label) {
         if (label == null) return -1;
         var m = java.util.regex.Pattern.compile("(\\d{1,2})").matcher(label);
         if (m.find()) {
@@ -326,23 +662,19 @@ public class DashboardService {
         return -1;
     }
 
-    private static List<StoreCompare> mapStores(List<Map<String, Object>> rows, String storeCol,
-                                                String lastYearCol, String thisYearCol) {
+    static List<StoreCompare> mapStores(List<StoreYoY> rows) {
         List<StoreCompare> out = new ArrayList<>(rows.size());
-        for (Map<String, Object> r : rows) {
-            String store = String.valueOf(r.getOrDefault(storeCol, "")).trim();
-            BigDecimal lastYear = toDecimal(r.get(lastYearCol));
-            BigDecimal thisYear = toDecimal(r.get(thisYearCol));
+        for (StoreYoY r : rows) {
             out.add(new StoreCompare(
-                    store,
-                    lastYear, thisYear,
-                    formatCompact(lastYear), formatCompact(thisYear)
+                    r.oe(), r.store(),
+                    r.lastYear(), r.thisYear(),
+                    formatCompact(r.lastYear()), formatCompact(r.thisYear())
             ));
         }
         return out;
     }
 
-    private static String toDayOfWeek(String dateText) {
+    static String toDayOfWeek(String dateText) {
         if (dateText == null || dateText.isBlank()) return "";
         for (DateTimeFormatter fmt : DATE_PARSERS) {
             try {
@@ -352,25 +684,7 @@ public class DashboardService {
         return dateText;
     }
 
-    private static BigDecimal toDecimal(Object v) {
-        if (v == null) return BigDecimal.ZERO;
-        if (v instanceof BigDecimal bd) return bd;
-        if (v instanceof Number n) return BigDecimal.valueOf(n.doubleValue());
-        try { return new BigDecimal(String.valueOf(v).trim()); }
-        catch (Exception e) { return BigDecimal.ZERO; }
-    }
-
-    private static String asString(Map<String, Object> map, String key, String def) {
-        if (map == null) return def;
-        Object v = map.get(key);
-        if (v == null) return def;
-        if (v instanceof BigDecimal bd) return bd.stripTrailingZeros().toPlainString();
-        return String.valueOf(v);
-    }
-
-    private static String pctFromMap(Map<String, Object> map, String curKey, String prevKey) {
-        BigDecimal current = toDecimal(map != null ? map.get(curKey) : null);
-        BigDecimal previous = toDecimal(map != null ? map.get(prevKey) : null);
+    static String pct(BigDecimal current, BigDecimal previous) {
         if (previous.compareTo(BigDecimal.ZERO) == 0) return "0";
         BigDecimal pct = current.subtract(previous)
                 .divide(previous, 4, RoundingMode.HALF_UP)
@@ -379,7 +693,7 @@ public class DashboardService {
         return pct.stripTrailingZeros().toPlainString();
     }
 
-    private static String fmtPct(BigDecimal part, BigDecimal whole) {
+    static String fmtPct(BigDecimal part, BigDecimal whole) {
         if (whole == null || whole.signum() == 0 || part == null) return "0%";
         BigDecimal pct = part.divide(whole, 6, RoundingMode.HALF_UP).multiply(new BigDecimal("100"));
         String s = pct.setScale(1, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
@@ -387,11 +701,7 @@ public class DashboardService {
         return s + "%";
     }
 
-    private static String compactFromMap(Map<String, Object> map, String key) {
-        return formatCompact(toDecimal(map != null ? map.get(key) : null));
-    }
-
-    private static String formatCompact(BigDecimal n) {
+    static String formatCompact(BigDecimal n) {
         boolean neg = n.signum() < 0;
         BigDecimal abs = n.abs();
         String suffix;
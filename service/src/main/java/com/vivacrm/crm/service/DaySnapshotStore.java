@@ -0,0 +1,274 @@
+// src/main/java/com/vivacrm/crm/service/DaySnapshotStore.java
+package com.vivacrm.crm.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.StoreCompare;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local persistence of closed-day results in the embedded SQLite database, so
+ * historical days survive restarts without re-running the SQL Server SPs.
+ * Rows are gzipped JSON keyed by (kind, day). Failures are logged and treated
+ * as a miss: this store is an optimization, never a source of errors.
+ * <p>
+ * A stored day is never refetched, so only complete-looking results are
+ * written: a payload with no stores, zero revenue and zero transactions (what
+ * a partial outage or an unfinished ETL load returns) is skipped, and such
+ * rows already on disk read as missing. {@link #invalidate} drops a day that
+ * was stored wrong anyway.
+ */
+@Component
+public class DaySnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DaySnapshotStore.class);
+
+    private static final String KIND_DASHBOARD = "dashboard";
+    private static final String KIND_STORE_KPI = "storeKpi";
+    private static final String KIND_STORE_HOURS = "storeHours";
+
+    private static final TypeReference<List<StoreKpi>> STORE_KPI_LIST = new TypeReference<>() {};
+    private static final TypeReference<List<HourlyDelta>> HOURLY_LIST = new TypeReference<>() {};
+
+    private final JdbcTemplate sqlite;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zoneId;
+    private final boolean enabled;
+
+    public DaySnapshotStore(@Qualifier("sqliteDataSource") DataSource dataSource,
+                            ObjectMapper objectMapper,
+                            @Value("${app.snapshot.enabled:true}") boolean enabled,
+                            @Value("${app.timezone:UTC}") String zone) {
+        this.sqlite = new JdbcTemplate(dataSource);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.zoneId = ZoneId.of(zone);
+    }
+
+    @PostConstruct
+    public void createTable() {
+        if (!enabled) return;
+        sqlite.execute("""
+                CREATE TABLE IF NOT EXISTS day_snapshot (
+                    kind       TEXT NOT NULL,
+                    day        TEXT NOT NULL,
+                    payload    BLOB NOT NULL,
+                    created_at TEXT NOT NULL,
+                    PRIMARY KEY (kind, day)
+                )""");
+    }
+
+    public Optional<DashboardPayload> findDashboard(LocalDate day) {
+        return read(KIND_DASHBOARD, day)
+                .map(bytes -> decode(bytes, DashboardPayload.class))
+                .filter(DaySnapshotStore::isComplete);
+    }
+
+    /** Complete stored payloads of the closed days in {@code from..to}, read with one query; other days are absent. */
+    public Map<LocalDate, DashboardPayload> findDashboards(LocalDate from, LocalDate to) {
+        if (!enabled || from.isAfter(to)) return Map.of();
+        Map<LocalDate, DashboardPayload> out = new HashMap<>();
+        try {
+            sqlite.query("SELECT day, payload FROM day_snapshot WHERE kind = ? AND day BETWEEN ? AND ?",
+                    (RowCallbackHandler) rs -> {
+                        LocalDate day = LocalDate.parse(rs.getString(1));
+                        DashboardPayload payload = decode(rs.getBytes(2), DashboardPayload.class);
+                        if (isClosed(day) && isComplete(payload)) out.put(day, payload);
+                    },
+                    KIND_DASHBOARD, from.toString(), to.toString());
+        } catch (RuntimeException e) {
+            log.warn("Snapshot read failed for {} {}..{}: {}", KIND_DASHBOARD, from, to, e.getMessage());
+        }
+        return out;
+    }
+
+    /** Persists a closed day's payload; returns false if it was not written (see {@link #isComplete}). */
+    public boolean saveDashboard(LocalDate day, DashboardPayload payload) {
+        if (!isComplete(payload)) {
+            log.warn("Not persisting dashboard for {}: result looks incomplete", day);
+            return false;
+        }
+        return write(KIND_DASHBOARD, day, payload);
+    }
+
+    public Optional<List<StoreKpi>> findStoreKpis(LocalDate day) {
+        return read(KIND_STORE_KPI, day)
+                .map(bytes -> decodeAs(bytes, STORE_KPI_LIST))
+                .filter(DaySnapshotStore::isComplete);
+    }
+
+    /** Persists a closed day's store KPIs; returns false if they were not written (see {@link #isComplete}). */
+    public boolean saveStoreKpis(LocalDate day, List<StoreKpi> kpis) {
+        if (!isComplete(kpis)) {
+            log.warn("Not persisting store KPIs for {}: result looks incomplete", day);
+            return false;
+        }
+        return write(KIND_STORE_KPI, day, kpis);
+    }
+
+    /**
+     * Stored per-store hourly rows (SP_GetDashboardHourly, whole day) of the
+     * closed days in {@code from..to}, read with one query; other days are absent.
+     */
+    Map<LocalDate, List<HourlyDelta>> findStoreHours(LocalDate from, LocalDate to) {
+        if (!enabled || from.isAfter(to)) return Map.of();
+        Map<LocalDate, List<HourlyDelta>> out = new HashMap<>();
+        try {
+            sqlite.query("SELECT day, payload FROM day_snapshot WHERE kind = ? AND day BETWEEN ? AND ?",
+                    (RowCallbackHandler) rs -> {
+                        LocalDate day = LocalDate.parse(rs.getString(1));
+                        List<HourlyDelta> rows = decodeAs(rs.getBytes(2), HOURLY_LIST);
+                        if (isClosed(day) && isCompleteHours(rows)) out.put(day, rows);
+                    },
+                    KIND_STORE_HOURS, from.toString(), to.toString());
+        } catch (RuntimeException e) {
+            log.warn("Snapshot read failed for {} {}..{}: {}", KIND_STORE_HOURS, from, to, e.getMessage());
+        }
+        return out;
+    }
+
+    /** Persists a closed day's hourly rows; returns false if they were not written (see {@link #isCompleteHours}). */
+    boolean saveStoreHours(LocalDate day, List<HourlyDelta> rows) {
+        if (!isCompleteHours(rows)) {
+            log.warn("Not persisting store hours for {}: result looks incomplete", day);
+            return false;
+        }
+        return write(KIND_STORE_HOURS, day, rows);
+    }
+
+    public boolean hasDashboard(LocalDate day) {
+        return findDashboard(day).isPresent();
+    }
+
+    public boolean hasStoreKpis(LocalDate day) {
+        return findStoreKpis(day).isPresent();
+    }
+
+    /** Drops every snapshot of {@code day}; the next request reloads it from SQL Server. */
+    public int invalidate(LocalDate day) {
+        if (!enabled || day == null) return 0;
+        try {
+            return sqlite.update("DELETE FROM day_snapshot WHERE day = ?", day.toString());
+        } catch (RuntimeException e) {
+            log.warn("Snapshot delete failed for {}: {}", day, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * A closed day worth keeping: fresh (not a stale fallback), with raw
+     * totals, at least one store (every row with its OE code) and some
+     * revenue or transactions.
+     */
+    public static boolean isComplete(DashboardPayload p) {
+        if (p == null || p.stale() || p.totals() == null) return false;
+        if (p.storeComparison() == null || p.storeComparison().isEmpty()) return false;
+        for (StoreCompare s : p.storeComparison()) {
+            if (s.storeId() == 0) return false; // persisted before rows carried it; reload once
+        }
+        return p.totals().revenue().signum() != 0 || p.totals().transactions().signum() != 0;
+    }
+
+    /** At least one store with revenue or transactions. */
+    public static boolean isComplete(List<StoreKpi> kpis) {
+        if (kpis == null) return false;
+        for (StoreKpi k : kpis) {
+            if (k == null) continue;
+            if (k.txToday() != 0 || (k.revenueToday() != null && k.revenueToday().signum() != 0)) return true;
+        }
+        return false;
+    }
+
+    /** At least one row of the day itself ('T') with revenue or transactions. */
+    static boolean isCompleteHours(List<HourlyDelta> rows) {
+        if (rows == null) return false;
+        for (HourlyDelta r : rows) {
+            if (r == null || r.series() != 'T') continue;
+            if (r.tx() != 0 || (r.amount() != null && r.amount().signum() != 0)) return true;
+        }
+        return false;
+    }
+
+    /** Only days before today are immutable and eligible for persistence. */
+    public boolean isClosed(LocalDate day) {
+        return enabled && day != null && day.isBefore(LocalDate.now(zoneId));
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private Optional<byte[]> read(String kind, LocalDate day) {
+        if (!isClosed(day)) return Optional.empty();
+        try {
+            List<byte[]> rows = sqlite.query(
+                    "SELECT payload FROM day_snapshot WHERE kind = ? AND day = ?",
+                    (rs, i) -> rs.getBytes(1), kind, day.toString());
+            return rows.isEmpty() ? Optional.empty() : Optional.ofNullable(rows.get(0));
+        } catch (RuntimeException e) {
+            log.warn("Snapshot read failed for {} {}: {}", kind, day, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean write(String kind, LocalDate day, Object value) {
+        if (!isClosed(day) || value == null) return false;
+        try {
+            sqlite.update(
+                    "INSERT OR REPLACE INTO day_snapshot (kind, day, payload, created_at) VALUES (?, ?, ?, ?)",
+                    kind, day.toString(), encode(value), LocalDateTime.now(zoneId).toString());
+            return true;
+        } catch (RuntimeException | IOException e) {
+            log.warn("Snapshot write failed for {} {}: {}", kind, day, e.getMessage());
+            return false;
+        }
+    }
+
+    private byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * 1024);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gz, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> T decode(byte[] bytes, Class<T> type) {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return objectMapper.readValue(gz, type);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable {} snapshot: {}", type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T decodeAs(byte[] bytes, TypeReference<T> type) {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return objectMapper.readValue(gz, type);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+// src/main/java/com/vivacrm/crm/service/IntradayDashboard.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.Rows;
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardResultSets.Summary;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Running per-hour totals of today's dashboard, so an hourly refresh only has
+ * to fetch the newly completed hour(s) from SP_GetDashboardHourly instead of
+ * re-running SP_GetDashboardData over the whole day.
+ * <p>
+ * The state is seeded next to a full load and then advanced window by window;
+ * each window re-reads the last {@code rewindHours} already merged hours to
+ * absorb late postings. It reports "no data" (caller falls back to a full load
+ * and reseeds) on a new day, a cut-off moving backwards, after
+ * {@code fullReloadInterval}, or when the oldest re-read hour changed - a sign
+ * that postings arrived later than the rewind window covers.
+ * <p>
+ * Results reproduce SP_GetDashboardData_Today's result sets, including its
+ * rounding (2 decimals) and ordering. All access is synchronized on the
+ * instance, so concurrent refreshes apply their windows one after another.
+ */
+final class IntradayDashboard {
+
+    /** Fetches delta rows for an inclusive hour range of a day. */
+    @FunctionalInterface
+    interface DeltaSource {
+        List<HourlyDelta> fetch(LocalDate day, int fromHour, int toHour);
+    }
+
+    private static final int HOURS = 24;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final int rewindHours;
+    private final Duration fullReloadInterval;
+
+    private LocalDate day;                 // null = not seeded / invalidated
+    private LocalDate rejectedDay;         // seed disagreed with the full load; full loads only
+    private int cutoff = -1;               // last merged hour (inclusive)
+    private LocalDateTime seededAt;
+    private List<LabeledAmount> priorDays = List.of(); // daily series without today
+
+    private final BigDecimal[] revToday = zeros();
+    private final long[] txToday = new long[HOURS];
+    private final boolean[] hasToday = new boolean[HOURS];
+    private final BigDecimal[] revPy = zeros();
+    private final long[] txPy = new long[HOURS];
+    private final BigDecimal[] revYesterday = zeros();
+    private final Map<Integer, StoreHours> stores = new HashMap<>();
+
+    IntradayDashboard(int rewindHours, Duration fullReloadInterval) {
+        this.rewindHours = Math.max(0, rewindHours);
+        this.fullReloadInterval = fullReloadInterval;
+    }
+
+    /**
+     * Brings the state up to {@code newCutoff} with one delta fetch.
+     *
+     * @return today's rows, or empty if a full load (and {@link #seed}) is needed
+     */
+    synchronized Optional<Rows> advance(LocalDate today, int newCutoff, LocalDateTime now, DeltaSource source) {
+        if (day == null || !day.equals(today) || newCutoff < cutoff
+                || Duration.between(seededAt, now).compareTo(fullReloadInterval) >= 0) {
+            return Optional.empty();
+        }
+        int from = Math.max(0, cutoff - rewindHours + 1);
+        BigDecimal checkRev = revToday[from];
+        long checkTx = txToday[from];
+        boolean checkable = from <= cutoff;
+
+        List<HourlyDelta> rows = source.fetch(today, from, newCutoff);
+        merge(from, newCutoff, rows);
+
+        if (checkable && (revToday[from].compareTo(checkRev) != 0 || txToday[from] != checkTx)) {
+            invalidate(); // older hours may have moved too
+            return Optional.empty();
+        }
+        cutoff = newCutoff;
+        return Optional.of(rows(today));
+    }
+
+    /**
+     * Starts a new day from a full load plus a delta over hours {@code 0..cutoff}.
+     * The seed is kept only if its totals agree with the full load.
+     */
+    synchronized boolean seed(LocalDate today, int newCutoff, LocalDateTime now, Rows full, List<HourlyDelta> rows) {
+        clear();
+        merge(0, newCutoff, rows);
+        String todayLabel = today.toString();
+        List<LabeledAmount> prior = new ArrayList<>(full.daily().size());
+        for (LabeledAmount d : full.daily()) {
+            if (!todayLabel.equals(d.label().trim())) prior.add(d);
+        }
+
+        if (sum(revToday, newCutoff).compareTo(full.summary().totalRevenue()) != 0) {
+            rejectedDay = today; // delta SP disagrees with the full SP; full loads for the rest of the day
+            return false;
+        }
+        this.day = today;
+        this.cutoff = newCutoff;
+        this.seededAt = now;
+        this.priorDays = List.copyOf(prior);
+        return true;
+    }
+
+    /**
+     * SP_GetDashboardData_Day's result sets of a whole closed day, from its
+     * 'T', 'Y' and 'P' rows over hours 0..23; {@code priorDays} is the daily
+     * series of the six days before it. Used by {@link SalesCube}.
+     */
+    static Rows closedDay(LocalDate day, List<LabeledAmount> priorDays, List<HourlyDelta> rows) {
+        IntradayDashboard state = new IntradayDashboard(0, Duration.ZERO);
+        state.merge(0, HOURS - 1, rows);
+        state.cutoff = HOURS - 1;
+        state.priorDays = List.copyOf(priorDays);
+        return state.rows(day);
+    }
+
+    synchronized void invalidate() {
+        day = null;
+        cutoff = -1;
+    }
+
+    /** False once a seed for {@code today} was rejected. */
+    synchronized boolean canSeed(LocalDate today) {
+        return !today.equals(rejectedDay);
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private void clear() {
+        invalidate();
+        Arrays.fill(revToday, BigDecimal.ZERO);
+        Arrays.fill(txToday, 0);
+        Arrays.fill(hasToday, false);
+        Arrays.fill(revPy, BigDecimal.ZERO);
+        Arrays.fill(txPy, 0);
+        Arrays.fill(revYesterday, BigDecimal.ZERO);
+        stores.clear();
+    }
+
+    /** Replaces hours {@code from..to} of every series with {@code rows}. */
+    private void merge(int from, int to, List<HourlyDelta> rows) {
+        for (int h = from; h <= to && h < HOURS; h++) {
+            revToday[h] = BigDecimal.ZERO;
+            txToday[h] = 0;
+            hasToday[h] = false;
+            revPy[h] = BigDecimal.ZERO;
+            txPy[h] = 0;
+            revYesterday[h] = BigDecimal.ZERO;
+            for (StoreHours s : stores.values()) {
+                s.today[h] = BigDecimal.ZERO;
+                s.py[h] = BigDecimal.ZERO;
+            }
+        }
+        for (HourlyDelta r : rows) {
+            int h = r.hour();
+            if (h < from || h > to || h < 0 || h >= HOURS) continue;
+            switch (r.series()) {
+                case 'T' -> {
+                    revToday[h] = revToday[h].add(r.amount());
+                    txToday[h] += r.tx();
+                    hasToday[h] = true;
+                    StoreHours s = store(r);
+                    s.today[h] = s.today[h].add(r.amount());
+                }
+                case 'P' -> {
+                    revPy[h] = revPy[h].add(r.amount());
+                    txPy[h] += r.tx();
+                    StoreHours s = store(r);
+                    s.py[h] = s.py[h].add(r.amount());
+                }
+                case 'Y' -> revYesterday[h] = revYesterday[h].add(r.amount());
+                default -> { }
+            }
+        }
+    }
+
+    private StoreHours store(HourlyDelta r) {
+        return stores.computeIfAbsent(r.oe(), oe -> new StoreHours(r.store()));
+    }
+
+    /** Rebuilds the four SP_GetDashboardData_Today result sets from the running totals. */
+    private Rows rows(LocalDate today) {
+        BigDecimal total = sum(revToday, cutoff);
+        long tx = sum(txToday, cutoff);
+        BigDecimal totalPy = sum(revPy, cutoff);
+        long txPyTotal = sum(txPy, cutoff);
+        BigDecimal yesterday = sum(revYesterday, cutoff);
+
+        // Hourly series + peak hour (highest amount, earliest hour on ties)
+        List<LabeledAmount> hourly = new ArrayList<>(cutoff + 1);
+        int peak = -1;
+        for (int h = 0; h <= cutoff; h++) {
+            hourly.add(new LabeledAmount(h + "h", revToday[h]));
+            if (hasToday[h] && (peak < 0 || revToday[h].compareTo(revToday[peak]) > 0)) peak = h;
+        }
+
+        // Stores ordered by name; top store = highest today, then name
+        List<StoreYoY> storeRows = new ArrayList<>(stores.size());
+        StoreYoY top = null;
+        int topOe = 0;
+        for (Map.Entry<Integer, StoreHours> e : stores.entrySet()) {
+            StoreHours s = e.getValue();
+            StoreYoY row = new StoreYoY(e.getKey(), s.name, sum(s.py, cutoff), sum(s.today, cutoff));
+            storeRows.add(row);
+            if (top == null || row.thisYear().compareTo(top.thisYear()) > 0
+                    || (row.thisYear().compareTo(top.thisYear()) == 0
+                        && row.store().compareToIgnoreCase(top.store()) < 0)) {
+                top = row;
+                topOe = e.getKey();
+            }
+        }
+        storeRows.sort((a, b) -> a.store().compareToIgnoreCase(b.store()));
+
+        List<LabeledAmount> daily = new ArrayList<>(priorDays.size() + 1);
+        daily.addAll(priorDays);
+        daily.add(new LabeledAmount(today.toString(), total));
+
+        Summary summary = new Summary(
+                total,
+                pct(total, yesterday),
+                pct(total, totalPy),
+                totalPy,
+                yesterday,
+                BigDecimal.valueOf(tx),
+                BigDecimal.valueOf(txPyTotal),
+                peak < 0 ? "" : String.valueOf(peak),
+                avg(total, tx),
+                avg(totalPy, txPyTotal),
+                top == null ? "" : top.store(),
+                top == null ? "" : String.valueOf(topOe),
+                top == null ? BigDecimal.ZERO : top.thisYear());
+        return new Rows(summary, daily, hourly, storeRows);
+    }
+
+    /** ROUND((a - b) * 100 / b, 2), or ZERO where the SP yields NULL. */
+    private static BigDecimal pct(BigDecimal current, BigDecimal base) {
+        if (base.signum() <= 0) return BigDecimal.ZERO;
+        return current.subtract(base).multiply(HUNDRED).divide(base, 2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal avg(BigDecimal revenue, long tx) {
+        if (tx <= 0) return BigDecimal.ZERO;
+        return revenue.divide(BigDecimal.valueOf(tx), 2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal sum(BigDecimal[] hours, int upTo) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int h = 0; h <= upTo && h < HOURS; h++) total = total.add(hours[h]);
+        return total;
+    }
+
+    private static long sum(long[] hours, int upTo) {
+        long total = 0;
+        for (int h = 0; h <= upTo && h < HOURS; h++) total += hours[h];
+        return total;
+    }
+
+    private static BigDecimal[] zeros() {
+        BigDecimal[] a = new BigDecimal[HOURS];
+        Arrays.fill(a, BigDecimal.ZERO);
+        return a;
+    }
+
+    private static final class StoreHours {
+        final String name;
+        final BigDecimal[] today = zeros();
+        final BigDecimal[] py = zeros();
+
+        StoreHours(String name) { this.name = name; }
+    }
+}
@@ -0,0 +1,78 @@
+// src/main/java/com/vivacrm/crm/service/JsonRenderCache.java
+package com.vivacrm.crm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Pre-serialized JSON for immutable payloads (dashboard payloads, store KPIs).
+ * Entries are keyed by object identity with weak keys: a payload is rendered
+ * once and its bytes live exactly as long as the payload is still cached
+ * somewhere, so unchanged responses skip Jackson entirely.
+ * <p>
+ * Fresh generations are rendered (and gzipped) on the refresh thread as soon as
+ * they are published, so request threads normally only copy bytes.
+ */
+@Component
+public class JsonRenderCache {
+
+    private final ObjectMapper objectMapper;
+    private final ZoneId zoneId;
+    private final Cache<Object, RenderedJson> rendered;
+
+    public JsonRenderCache(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.render.max-entries:5000}") long maxEntries,
+                           @Value("${app.timezone:UTC}") String zone) {
+        this.objectMapper = objectMapper;
+        this.zoneId = ZoneId.of(zone);
+        this.rendered = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rendered, "renderedJson");
+    }
+
+    /** Rendered form of an immutable value, serialized on first use only. */
+    public RenderedJson render(Object value, LocalDateTime loadedAt) {
+        return rendered.get(value, v -> renderUncached(v, loadedAt));
+    }
+
+    @EventListener
+    public void onDashboardRefreshed(DashboardRefreshedEvent event) {
+        DashboardPayload payload = event.payload();
+        render(payload, payload.asOf());
+    }
+
+    @EventListener
+    public void onStoreKpiRefreshed(StoreKpiRefreshedEvent event) {
+        StoreKpiSnapshot snapshot = event.current();
+        for (StoreKpi kpi : snapshot.all()) {
+            render(kpi, snapshot.asOf());
+        }
+        render(snapshot.fullBatch(null), snapshot.asOf());
+    }
+
+    /** For per-request values (e.g. filtered batches) that are not worth caching. */
+    public RenderedJson renderUncached(Object value, LocalDateTime loadedAt) {
+        try {
+            long lastModified = loadedAt == null ? -1 : loadedAt.atZone(zoneId).toInstant().toEpochMilli();
+            return new RenderedJson(objectMapper.writeValueAsBytes(value), lastModified);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
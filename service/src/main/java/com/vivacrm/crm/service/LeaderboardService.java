@@ -0,0 +1,58 @@
+// src/main/java/com/vivacrm/crm/service/LeaderboardService.java
+package com.vivacrm.crm.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes a {@link StoreLeaderboard} for every store KPI generation. Rank
+ * deltas are "since the previous hour": the baseline moves forward only when
+ * a generation of a later hour arrives, so manual refreshes within the same
+ * hour do not reset them.
+ */
+@Service
+public class LeaderboardService {
+
+    private final StoreKpiService storeKpiService;
+    private final AtomicReference<StoreLeaderboard> current = new AtomicReference<>(StoreLeaderboard.EMPTY);
+
+    public LeaderboardService(StoreKpiService storeKpiService) {
+        this.storeKpiService = storeKpiService;
+    }
+
+    /** Board of the current KPI generation; ranks it on first use before any refresh event. */
+    public StoreLeaderboard getLeaderboard() {
+        StoreLeaderboard board = current.get();
+        if (board.asOf() != null) return board;
+        StoreKpiSnapshot snapshot = storeKpiService.getSnapshot();
+        return install(snapshot);
+    }
+
+    /** Board as published, without ranking or loading anything ({@link StoreLeaderboard#EMPTY} before the first generation). */
+    public StoreLeaderboard getCurrentLeaderboard() {
+        return current.get();
+    }
+
+    @EventListener
+    public void onStoreKpiRefreshed(StoreKpiRefreshedEvent event) {
+        install(event.current());
+    }
+
+    private StoreLeaderboard install(StoreKpiSnapshot snapshot) {
+        if (!snapshot.isLoaded()) return current.get();
+        return current.updateAndGet(prev -> {
+            if (prev.asOf() != null && !snapshot.asOf().isAfter(prev.asOf())) return prev; // older generation
+            StoreLeaderboard baseline = prev.asOf() == null ? null
+                    : hour(prev.asOf()).isBefore(hour(snapshot.asOf())) ? prev : prev.baseline();
+            return StoreLeaderboard.of(snapshot, baseline);
+        });
+    }
+
+    private static LocalDateTime hour(LocalDateTime t) {
+        return t.truncatedTo(ChronoUnit.HOURS);
+    }
+}
@@ -0,0 +1,73 @@
+// src/main/java/com/vivacrm/crm/service/RenderedJson.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.util.Sha256;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A value serialized once to UTF-8 JSON, with a strong ETag derived from the
+ * bytes (equal content => equal ETag, across refreshes and restarts) and the
+ * time the underlying data was loaded.
+ * <p>
+ * Bodies of at least {@link #MIN_GZIP_BYTES} are also gzipped once up front, so
+ * compressed responses are a plain byte copy as well. The gzip variant has its
+ * own ETag ({@code "<hash>-gz"}), as a strong validator is per representation.
+ */
+public final class RenderedJson {
+
+    /** Below this size gzip saves less than its header and CPU cost. */
+    static final int MIN_GZIP_BYTES = 1024;
+
+    private final byte[] json;
+    private final byte[] gzip;       // null = not worth compressing
+    private final String etag;
+    private final String gzipEtag;
+    private final long lastModified; // epoch millis, -1 = unknown
+
+    RenderedJson(byte[] json, long lastModified) {
+        this.json = json;
+        this.gzip = json.length >= MIN_GZIP_BYTES ? gzipIfSmaller(json) : null;
+        String hash = hashOf(json);
+        this.etag = '"' + hash + '"';
+        this.gzipEtag = '"' + hash + "-gz\"";
+        this.lastModified = lastModified;
+    }
+
+    /** The JSON bytes; shared, never modify. */
+    public byte[] json() { return json; }
+
+    /** Gzipped JSON bytes, or null when the body is too small to benefit; shared, never modify. */
+    public byte[] gzip() { return gzip; }
+
+    public boolean hasGzip() { return gzip != null; }
+
+    /** Quoted strong ETag of the identity encoding, e.g. {@code "9f86d081884c7d65..."}. */
+    public String etag() { return etag; }
+
+    /** Quoted strong ETag of the gzip encoding. */
+    public String gzipEtag() { return gzipEtag; }
+
+    public long lastModified() { return lastModified; }
+
+    public int size() { return json.length; }
+
+    private static String hashOf(byte[] bytes) {
+        return HexFormat.of().formatHex(Arrays.copyOf(Sha256.digest(bytes), 16));
+    }
+
+    private static byte[] gzipIfSmaller(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory streams do not fail
+        }
+        return out.size() < bytes.length ? out.toByteArray() : null;
+    }
+}
@@ -0,0 +1,97 @@
+// src/main/java/com/vivacrm/crm/service/ResultSetColumns.java
+package com.vivacrm.crm.service;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column positions of one result set, resolved by label once from its
+ * metadata so every row is then read by index. Labels match
+ * case-insensitively; a missing column has index 0 and reads as the type's
+ * default ({@code ZERO}, {@code 0}, {@code ""}), like the old map lookups did.
+ */
+final class ResultSetColumns {
+
+    private final ResultSet rs;
+    private final Map<String, Integer> byLabel;
+    private final boolean[] numeric; // 1-based, numeric SQL type => read without parsing
+
+    private ResultSetColumns(ResultSet rs, Map<String, Integer> byLabel, boolean[] numeric) {
+        this.rs = rs;
+        this.byLabel = byLabel;
+        this.numeric = numeric;
+    }
+
+    static ResultSetColumns of(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        int count = md.getColumnCount();
+        Map<String, Integer> byLabel = new HashMap<>(count * 2);
+        boolean[] numeric = new boolean[count + 1];
+        for (int i = count; i >= 1; i--) { // first occurrence of a duplicate label wins
+            byLabel.put(JdbcUtils.lookupColumnName(md, i).toLowerCase(Locale.ROOT), i);
+            numeric[i] = isNumeric(md.getColumnType(i));
+        }
+        return new ResultSetColumns(rs, byLabel, numeric);
+    }
+
+    int index(String label) {
+        Integer idx = byLabel.get(label.toLowerCase(Locale.ROOT));
+        return idx == null ? 0 : idx;
+    }
+
+    /** Exact decimal value; NULL, missing or non-numeric text reads as ZERO. */
+    BigDecimal decimal(int col) throws SQLException {
+        if (col == 0) return BigDecimal.ZERO;
+        if (numeric[col]) {
+            BigDecimal v = rs.getBigDecimal(col);
+            return v == null ? BigDecimal.ZERO : v;
+        }
+        String s = rs.getString(col);
+        if (s == null || s.isBlank()) return BigDecimal.ZERO;
+        try {
+            return new BigDecimal(s.trim());
+        } catch (NumberFormatException e) {
+            return BigDecimal.ZERO;
+        }
+    }
+
+    /** Integer value; NULL or missing reads as 0. */
+    int integer(int col) throws SQLException {
+        if (col == 0) return 0;
+        if (numeric[col]) return rs.getInt(col);
+        String s = rs.getString(col);
+        if (s == null || s.isBlank()) return 0;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** String value; NULL or missing reads as "". Decimals are printed without trailing zeros. */
+    String text(int col) throws SQLException {
+        if (col == 0) return "";
+        if (numeric[col]) {
+            BigDecimal v = rs.getBigDecimal(col);
+            return v == null ? "" : v.stripTrailingZeros().toPlainString();
+        }
+        String s = rs.getString(col);
+        return s == null ? "" : s;
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                 Types.DECIMAL, Types.NUMERIC, Types.REAL, Types.FLOAT, Types.DOUBLE -> true;
+            default -> false;
+        };
+    }
+}
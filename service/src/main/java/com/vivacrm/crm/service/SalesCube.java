@@ -0,0 +1,683 @@
+// src/main/java/com/vivacrm/crm/service/SalesCube.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.Rows;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcCall;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar store x day x hour sales cube over a rolling window of days.
+ * <p>
+ * Revenue (fixed-point, in cents) and transaction counts live in two flat
+ * primitive arrays indexed {@code [day slot][store slot][hour]}; day slots
+ * form a ring keyed by epoch day, so the window rolls forward without
+ * copying. 400 days x 256 stores x 24 hours is ~30 MB. Days are filled from
+ * SP_GetDashboardHourly (one call per day, all stores): closed days once,
+ * today hour by hour re-reading the last {@code rewindHours} like the
+ * incremental dashboard. Basket size is derived (revenue / transactions).
+ * Today's load also keeps the SP's same-date-last-year rows and publishes a
+ * {@link StoreHourlySnapshot} of every store's curve ({@link #refreshStoreHourly}
+ * loads just those curves while the cube itself is disabled).
+ * <p>
+ * Closed days are persisted in the {@link DaySnapshotStore} as they are
+ * loaded and read back from it first, so a restart (or a cluster follower,
+ * see SalesCubeScheduler) refills the window without SQL Server; at most
+ * {@code app.cube.backfill.max-days} days per run come from the SP.
+ * <p>
+ * {@link #slice} aggregates any date range along one {@link Dimension},
+ * optionally limited to a {@link StoreScope} (a region rollup is a scope),
+ * in one pass over the arrays. The dashboard and store KPIs of a closed day
+ * are rebuilt from it as well ({@link #dashboardRows}, {@link #storeKpis}).
+ * Writers replace whole hours under a write lock; queries share a read lock.
+ */
+@Service
+public class SalesCube {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesCube.class);
+
+    static final int HOURS = 24;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /** Axis a {@link Slice} is grouped by. */
+    public enum Dimension {
+        TOTAL, DAY, HOUR, WEEKDAY, WEEKDAY_HOUR, STORE;
+
+        /** {@code total|day|hour|weekday|weekday-hour|store}; null if unknown. */
+        public static Dimension fromParam(String value) {
+            if (value == null) return null;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private final SimpleJdbcCall spHourly;
+    private final SqlServerGuard guard;
+    private final DaySnapshotStore snapshotStore;
+    private final ApplicationEventPublisher events;
+    private final ZoneId zoneId;
+    private final int days;
+    private final int maxStores;
+    private final int rewindHours;
+    private final int maxBackfillDays;
+
+    private final long[] revenueCents;
+    private final int[] transactions;
+    private final long[] slotDay;        // epoch day held by each slot, EMPTY if none
+    private final int[] slotThroughHour; // last loaded hour of the slot's day
+    private final boolean[] slotClosed;  // loaded completely after the day ended
+
+    private final int[] storeIds;
+    private final String[] storeNames;
+    private final Map<Integer, Integer> storeSlots = new HashMap<>();
+    private int storeCount;
+    private volatile LocalDateTime lastLoad;
+
+    // same-date-last-year hours ('P' rows) of the day being loaded hour by hour, [store slot][hour]
+    private final long[] pyCents;
+    private final int[] pyTransactions;
+    private long pyDay = EMPTY;
+    private volatile StoreHourlySnapshot storeHourly = StoreHourlySnapshot.EMPTY;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SalesCube(@Qualifier("mssqlJdbcTemplate") JdbcTemplate jdbc,
+                     SqlServerGuard guard,
+                     DaySnapshotStore snapshotStore,
+                     ApplicationEventPublisher events,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.timezone:UTC}") String zone,
+                     @Value("${app.cube.days:400}") int days,
+                     @Value("${app.cube.max-stores:256}") int maxStores,
+                     @Value("${app.dashboard.incremental.rewind-hours:2}") int rewindHours,
+                     @Value("${app.cube.backfill.max-days:31}") int maxBackfillDays) {
+        this.spHourly = DashboardService.createHourlyCall(jdbc);
+        this.guard = guard;
+        this.snapshotStore = snapshotStore;
+        this.events = events;
+        this.zoneId = ZoneId.of(zone);
+        this.days = Math.max(1, days);
+        this.maxStores = Math.max(1, maxStores);
+        this.rewindHours = Math.max(0, rewindHours);
+        this.maxBackfillDays = Math.max(0, maxBackfillDays);
+
+        int cells = this.days * this.maxStores * HOURS;
+        this.revenueCents = new long[cells];
+        this.transactions = new int[cells];
+        this.slotDay = new long[this.days];
+        this.slotThroughHour = new int[this.days];
+        this.slotClosed = new boolean[this.days];
+        Arrays.fill(slotDay, EMPTY);
+        Arrays.fill(slotThroughHour, -1);
+        this.storeIds = new int[this.maxStores];
+        this.storeNames = new String[this.maxStores];
+        this.pyCents = new long[this.maxStores * HOURS];
+        this.pyTransactions = new int[this.maxStores * HOURS];
+
+        Gauge.builder("cube.days.loaded", this, SalesCube::loadedDays)
+                .description("Days held in the sales cube")
+                .register(meterRegistry);
+        Gauge.builder("cube.stores", this, c -> c.storeCount)
+                .register(meterRegistry);
+    }
+
+    /* ---------------------- loading ---------------------- */
+
+    /**
+     * Brings the cube up to the last completed hour: re-reads today's recent
+     * hours, and finishes yesterday first if it was still partial.
+     *
+     * @return number of SP calls made
+     */
+    public int refreshToday() {
+        LocalDateTime cutoff = LocalDateTime.now(zoneId).truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        LocalDate day = cutoff.toLocalDate();
+        int calls = 0;
+        LocalDate yesterday = day.minusDays(1);
+        if (inWindow(yesterday) && !isClosed(yesterday)) {
+            loadDay(yesterday, 0, HOURS - 1, true);
+            calls++;
+        }
+        boolean closed = day.isBefore(LocalDate.now(zoneId)); // just past midnight: cut-off is 23h of yesterday
+        int through = throughHour(day);
+        int from = closed ? 0 : Math.max(0, through - rewindHours + 1);
+        if (!closed || !isClosed(day)) {
+            loadDay(day, from, cutoff.getHour(), closed);
+            calls++;
+        }
+        return calls;
+    }
+
+    /**
+     * Fills the closed days of the window that are missing from the day
+     * store (one local query, no SQL Server).
+     *
+     * @return number of days filled
+     */
+    public int fillFromStore() {
+        LocalDate today = LocalDate.now(zoneId);
+        Map<LocalDate, List<HourlyDelta>> stored =
+                snapshotStore.findStoreHours(today.minusDays(days - 1L), today.minusDays(1));
+        int filled = 0;
+        for (Map.Entry<LocalDate, List<HourlyDelta>> e : stored.entrySet()) {
+            if (isClosed(e.getKey())) continue;
+            apply(e.getKey(), 0, HOURS - 1, true, e.getValue());
+            filled++;
+        }
+        return filled;
+    }
+
+    /**
+     * Fills missing closed days from the day store, then loads (and persists)
+     * at most {@code app.cube.backfill.max-days} of the remaining ones from
+     * SQL Server, newest first; later runs continue where this one stopped.
+     * Stops at the first SQL Server failure (rethrown) or on interrupt.
+     *
+     * @return number of days loaded from SQL Server
+     */
+    public int backfill() {
+        fillFromStore();
+        LocalDate today = LocalDate.now(zoneId);
+        int loaded = 0;
+        for (int i = 1; i < days && loaded < maxBackfillDays && !Thread.currentThread().isInterrupted(); i++) {
+            LocalDate day = today.minusDays(i);
+            if (isClosed(day)) continue;
+            loadDay(day, 0, HOURS - 1, true);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces hours {@code fromHour..toHour} of {@code day} for every store
+     * with one SP call; a whole closed day is also persisted.
+     */
+    void loadDay(LocalDate day, int fromHour, int toHour, boolean closed) {
+        if (!inWindow(day) || toHour < fromHour) return;
+        List<HourlyDelta> rows = DashboardService.fetchHourly(spHourly, guard, day, fromHour, toHour);
+        apply(day, fromHour, toHour, closed, rows);
+        if (closed && fromHour == 0 && toHour == HOURS - 1) {
+            List<HourlyDelta> own = new ArrayList<>(rows.size());
+            for (HourlyDelta r : rows) if (r.series() == 'T') own.add(r); // 'P'/'Y' are other days' own rows
+            snapshotStore.saveStoreHours(day, own);
+        }
+    }
+
+    void apply(LocalDate day, int fromHour, int toHour, boolean closed, List<HourlyDelta> rows) {
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        StoreHourlySnapshot curves = null;
+        lock.writeLock().lock();
+        try {
+            if (slotDay[slot] != epochDay) {
+                if (slotDay[slot] != EMPTY && slotDay[slot] > epochDay) return; // a newer day owns the slot
+                clearSlot(slot);
+                slotDay[slot] = epochDay;
+            }
+            int base = slot * maxStores * HOURS;
+            for (int s = 0; s < storeCount; s++) {
+                int from = base + s * HOURS;
+                Arrays.fill(revenueCents, from + fromHour, from + toHour + 1, 0L);
+                Arrays.fill(transactions, from + fromHour, from + toHour + 1, 0);
+            }
+            boolean partial = !closed; // today: also keep last year's hours for the per-store curves
+            if (partial && pyDay != epochDay) {
+                Arrays.fill(pyCents, 0L);
+                Arrays.fill(pyTransactions, 0);
+                pyDay = epochDay;
+            }
+            if (partial) {
+                for (int s = 0; s < storeCount; s++) {
+                    Arrays.fill(pyCents, s * HOURS + fromHour, s * HOURS + toHour + 1, 0L);
+                    Arrays.fill(pyTransactions, s * HOURS + fromHour, s * HOURS + toHour + 1, 0);
+                }
+            }
+            for (HourlyDelta r : rows) {
+                if (r.hour() < fromHour || r.hour() > toHour) continue;
+                boolean py = r.series() == 'P';
+                if (r.series() != 'T' && !(py && partial)) continue;
+                int s = storeSlot(r.oe(), r.store());
+                if (s < 0) continue;
+                long cents = r.amount().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+                if (py) {
+                    pyCents[s * HOURS + r.hour()] += cents;
+                    pyTransactions[s * HOURS + r.hour()] += r.tx();
+                } else {
+                    revenueCents[base + s * HOURS + r.hour()] += cents;
+                    transactions[base + s * HOURS + r.hour()] += r.tx();
+                }
+            }
+            slotThroughHour[slot] = Math.max(slotThroughHour[slot], toHour);
+            slotClosed[slot] = closed;
+            lastLoad = LocalDateTime.now(zoneId);
+            if (partial) {
+                curves = StoreHourlySnapshot.of(day, lastLoad, slotThroughHour[slot], storeCount,
+                        storeIds, storeNames, revenueCents, transactions, base, pyCents, pyTransactions);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (curves != null) adoptStoreHourly(curves);
+    }
+
+    /**
+     * Today's per-store curves without the cube ({@code app.cube.enabled=false}):
+     * one SP_GetDashboardHourly call over hours 0..cut-off for all stores,
+     * published like the cube's own. Nothing to load in the first hour of a day.
+     *
+     * @return number of SP calls made
+     */
+    public int refreshStoreHourly() {
+        LocalDateTime now = LocalDateTime.now(zoneId);
+        LocalDateTime cutoff = now.truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        LocalDate day = now.toLocalDate();
+        if (cutoff.toLocalDate().isBefore(day)) return 0;
+        int through = cutoff.getHour();
+        List<HourlyDelta> rows = DashboardService.fetchHourly(spHourly, guard, day, 0, through);
+
+        Map<Integer, Integer> slots = new HashMap<>();
+        int[] ids = new int[rows.size()];
+        String[] names = new String[rows.size()];
+        long[] cents = new long[rows.size() * HOURS];
+        int[] tx = new int[rows.size() * HOURS];
+        long[] centsPy = new long[rows.size() * HOURS];
+        int[] txPy = new int[rows.size() * HOURS];
+        for (HourlyDelta r : rows) {
+            if ((r.series() != 'T' && r.series() != 'P') || r.hour() < 0 || r.hour() > through) continue;
+            int s = slots.computeIfAbsent(r.oe(), oe -> {
+                int n = slots.size();
+                ids[n] = oe;
+                names[n] = r.store();
+                return n;
+            });
+            long c = r.amount().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            if (r.series() == 'T') {
+                cents[s * HOURS + r.hour()] += c;
+                tx[s * HOURS + r.hour()] += r.tx();
+            } else {
+                centsPy[s * HOURS + r.hour()] += c;
+                txPy[s * HOURS + r.hour()] += r.tx();
+            }
+        }
+        adoptStoreHourly(StoreHourlySnapshot.of(day, now, through, slots.size(),
+                ids, names, cents, tx, 0, centsPy, txPy));
+        return 1;
+    }
+
+    /** Installs per-store curves (loaded here, or by the cluster leader) and announces them. */
+    public void adoptStoreHourly(StoreHourlySnapshot curves) {
+        storeHourly = curves;
+        events.publishEvent(new StoreHourlyRefreshedEvent(curves));
+    }
+
+    /* ---------------------- queries ---------------------- */
+
+    /**
+     * Revenue and transactions of {@code from..to} (inclusive) grouped by
+     * {@code by}, over the stores in {@code scope}. Days outside the window or
+     * not loaded yet are skipped and reported through {@link Slice#complete()}.
+     */
+    public Slice slice(Dimension by, StoreScope scope, LocalDate from, LocalDate to) {
+        int dayCount = (int) Math.max(0, ChronoUnit.DAYS.between(from, to) + 1);
+        lock.readLock().lock();
+        try {
+            int stores = storeCount;
+            boolean[] inScope = new boolean[stores];
+            for (int s = 0; s < stores; s++) inScope[s] = scope.contains(storeIds[s]);
+
+            int keys = switch (by) {
+                case TOTAL -> 1;
+                case DAY -> dayCount;
+                case HOUR -> HOURS;
+                case WEEKDAY -> 7;
+                case WEEKDAY_HOUR -> 7 * HOURS;
+                case STORE -> stores;
+            };
+            long[] rev = new long[keys];
+            long[] tx = new long[keys];
+            boolean complete = true;
+
+            for (int d = 0; d < dayCount; d++) {
+                LocalDate day = from.plusDays(d);
+                long epochDay = day.toEpochDay();
+                int slot = slot(epochDay);
+                if (!inWindow(day) || slotDay[slot] != epochDay) {
+                    complete = false;
+                    continue;
+                }
+                int weekday = day.getDayOfWeek().getValue() - 1;
+                int base = slot * maxStores * HOURS;
+                for (int s = 0; s < stores; s++) {
+                    if (!inScope[s]) continue;
+                    int cell = base + s * HOURS;
+                    switch (by) {
+                        case HOUR, WEEKDAY_HOUR -> {
+                            int key = by == Dimension.HOUR ? 0 : weekday * HOURS;
+                            for (int h = 0; h < HOURS; h++) {
+                                rev[key + h] += revenueCents[cell + h];
+                                tx[key + h] += transactions[cell + h];
+                            }
+                        }
+                        default -> {
+                            int key = switch (by) {
+                                case DAY -> d;
+                                case WEEKDAY -> weekday;
+                                case STORE -> s;
+                                default -> 0;
+                            };
+                            long r = 0, t = 0;
+                            for (int h = 0; h < HOURS; h++) {
+                                r += revenueCents[cell + h];
+                                t += transactions[cell + h];
+                            }
+                            rev[key] += r;
+                            tx[key] += t;
+                        }
+                    }
+                }
+            }
+
+            int[] keyIds = null;
+            String[] names = null;
+            if (by == Dimension.STORE) {
+                // only stores in scope, as store ids
+                int n = 0;
+                for (int s = 0; s < stores; s++) if (inScope[s]) n++;
+                keyIds = new int[n];
+                names = new String[n];
+                long[] r = new long[n], t = new long[n];
+                for (int s = 0, i = 0; s < stores; s++) {
+                    if (!inScope[s]) continue;
+                    keyIds[i] = storeIds[s];
+                    names[i] = storeNames[s];
+                    r[i] = rev[s];
+                    t[i] = tx[s];
+                    i++;
+                }
+                rev = r;
+                tx = t;
+            }
+            return new Slice(by, from, to, complete, lastLoad, keyIds, names, rev, tx);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** True if {@code day} is in the window and fully loaded after it ended. */
+    public boolean isClosed(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        lock.readLock().lock();
+        try {
+            return slotDay[slot] == epochDay && slotClosed[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * SP_GetDashboardData's result sets for a closed {@code day}, rebuilt
+     * without SQL Server; empty unless the day, the six days before it (daily
+     * series, yesterday) and the same date last year are all closed in the cube.
+     */
+    Optional<Rows> dashboardRows(LocalDate day) {
+        LocalDate py = day.minusYears(1);
+        lock.readLock().lock();
+        try {
+            if (!heldClosed(py)) return Optional.empty();
+            for (int i = 0; i < 7; i++) {
+                if (!heldClosed(day.minusDays(i))) return Optional.empty();
+            }
+            List<HourlyDelta> rows = new ArrayList<>(storeCount * HOURS);
+            addRows(rows, 'T', day);
+            addRows(rows, 'Y', day.minusDays(1));
+            addRows(rows, 'P', py);
+            List<LabeledAmount> prior = new ArrayList<>(6);
+            for (int i = 6; i >= 1; i--) {
+                LocalDate d = day.minusDays(i);
+                int base = slot(d.toEpochDay()) * maxStores * HOURS;
+                long cents = 0;
+                for (int c = base; c < base + storeCount * HOURS; c++) cents += revenueCents[c];
+                prior.add(new LabeledAmount(d.toString(), BigDecimal.valueOf(cents, 2)));
+            }
+            return Optional.of(IntradayDashboard.closedDay(day, prior, rows));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * SP_GetStoreKPI's rows for a closed {@code day} (needs the day and the
+     * same date last year in the cube), ordered by store name. The top article
+     * is not part of the cube and is left empty, as the SP reports a store
+     * without one.
+     */
+    public Optional<List<StoreKpi>> storeKpis(LocalDate day) {
+        LocalDate py = day.minusYears(1);
+        lock.readLock().lock();
+        try {
+            if (!heldClosed(day) || !heldClosed(py)) return Optional.empty();
+            int base = slot(day.toEpochDay()) * maxStores * HOURS;
+            int pyBase = slot(py.toEpochDay()) * maxStores * HOURS;
+            List<StoreKpi> out = new ArrayList<>(storeCount);
+            for (int s = 0; s < storeCount; s++) {
+                long rev = 0, revPy = 0;
+                int tx = 0, txPy = 0, peak = -1;
+                for (int h = 0; h < HOURS; h++) {
+                    int cell = base + s * HOURS + h;
+                    rev += revenueCents[cell];
+                    tx += transactions[cell];
+                    revPy += revenueCents[pyBase + s * HOURS + h];
+                    txPy += transactions[pyBase + s * HOURS + h];
+                    boolean sold = revenueCents[cell] != 0 || transactions[cell] != 0;
+                    if (sold && (peak < 0 || revenueCents[cell] > revenueCents[base + s * HOURS + peak])) peak = h;
+                }
+                if (rev == 0 && tx == 0 && revPy == 0 && txPy == 0) continue; // not open on either day
+                out.add(storeKpi(storeIds[s], storeNames[s], rev, tx, revPy, txPy, peak,
+                        peak < 0 ? 0 : revenueCents[base + s * HOURS + peak]));
+            }
+            out.sort((a, b) -> a.storeName().compareToIgnoreCase(b.storeName()));
+            return Optional.of(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Today's per-store hourly revenue next to the same date last year, as of
+     * the last hourly load; {@link StoreHourlySnapshot#EMPTY} before it, and
+     * again from midnight until today's first hour is loaded.
+     */
+    public StoreHourlySnapshot storeHourly() {
+        StoreHourlySnapshot curves = storeHourly;
+        return LocalDate.now(zoneId).equals(curves.day()) ? curves : StoreHourlySnapshot.EMPTY;
+    }
+
+    /** When the cube last received data; null before the first load. */
+    public LocalDateTime lastLoad() {
+        return lastLoad;
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private boolean inWindow(LocalDate day) {
+        LocalDate today = LocalDate.now(zoneId);
+        return !day.isAfter(today) && day.isAfter(today.minusDays(days));
+    }
+
+    /** {@link #isClosed} with the lock already held. */
+    private boolean heldClosed(LocalDate day) {
+        if (!inWindow(day)) return false;
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        return slotDay[slot] == epochDay && slotClosed[slot];
+    }
+
+    /** Appends {@code day}'s non-empty store hours as {@code series} rows. Lock held. */
+    private void addRows(List<HourlyDelta> rows, char series, LocalDate day) {
+        int base = slot(day.toEpochDay()) * maxStores * HOURS;
+        for (int s = 0; s < storeCount; s++) {
+            for (int h = 0; h < HOURS; h++) {
+                int cell = base + s * HOURS + h;
+                if (revenueCents[cell] == 0 && transactions[cell] == 0) continue;
+                rows.add(new HourlyDelta(series, storeIds[s], storeNames[s], h,
+                        BigDecimal.valueOf(revenueCents[cell], 2), transactions[cell]));
+            }
+        }
+    }
+
+    /** One SP_GetStoreKPI row from cube totals; NULLs of the SP read as zero/empty like its row mapper. */
+    private static StoreKpi storeKpi(int storeId, String name, long cents, int tx, long centsPy, int txPy,
+                                     int peakHour, long peakCents) {
+        BigDecimal revenue = BigDecimal.valueOf(cents, 2);
+        BigDecimal revenuePy = BigDecimal.valueOf(centsPy, 2);
+        BigDecimal basket = tx == 0 ? null : revenue.divide(BigDecimal.valueOf(tx), 2, RoundingMode.HALF_UP);
+        BigDecimal basketPy = txPy == 0 ? null : revenuePy.divide(BigDecimal.valueOf(txPy), 2, RoundingMode.HALF_UP);
+        BigDecimal revenuePct = centsPy == 0 ? BigDecimal.ZERO
+                : revenue.subtract(revenuePy).multiply(HUNDRED).divide(revenuePy, 2, RoundingMode.HALF_UP);
+        BigDecimal txPct = txPy == 0 ? BigDecimal.ZERO
+                : BigDecimal.valueOf((long) tx - txPy).multiply(HUNDRED).divide(BigDecimal.valueOf(txPy), 2, RoundingMode.HALF_UP);
+        BigDecimal basketDiff = basket == null || basketPy == null ? BigDecimal.ZERO : basket.subtract(basketPy);
+        return new StoreKpi(storeId, name, revenue, revenuePy, tx, txPy,
+                basket == null ? BigDecimal.ZERO : basket,
+                basketPy == null ? BigDecimal.ZERO : basketPy,
+                revenue.subtract(revenuePy), revenuePct, tx - txPy, txPct, basketDiff,
+                Math.max(peakHour, 0), peakHour < 0 ? "" : peakHour + "h",
+                BigDecimal.valueOf(peakCents, 2),
+                "", BigDecimal.ZERO, "");
+    }
+
+    private int throughHour(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        lock.readLock().lock();
+        try {
+            return slotDay[slot] == epochDay ? slotThroughHour[slot] : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) days);
+    }
+
+    private void clearSlot(int slot) {
+        int base = slot * maxStores * HOURS;
+        Arrays.fill(revenueCents, base, base + maxStores * HOURS, 0L);
+        Arrays.fill(transactions, base, base + maxStores * HOURS, 0);
+        slotDay[slot] = EMPTY;
+        slotThroughHour[slot] = -1;
+        slotClosed[slot] = false;
+    }
+
+    /** Slot of a store, assigned on first sight; -1 once {@code maxStores} is reached. Write lock held. */
+    private int storeSlot(int storeId, String name) {
+        Integer slot = storeSlots.get(storeId);
+        if (slot != null) {
+            if (name != null && !name.isEmpty()) storeNames[slot] = name;
+            return slot;
+        }
+        if (storeCount >= maxStores) {
+            log.warn("Sales cube is full ({} stores); ignoring store {}", maxStores, storeId);
+            return -1;
+        }
+        int s = storeCount++;
+        storeIds[s] = storeId;
+        storeNames[s] = name;
+        storeSlots.put(storeId, s);
+        return s;
+    }
+
+    private int loadedDays() {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (long d : slotDay) if (d != EMPTY) n++;
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Result of {@link #slice}: parallel arrays indexed by key. Keys are the
+     * day offset from {@code from} (DAY), the hour (HOUR), Monday=0 (WEEKDAY),
+     * weekday * 24 + hour (WEEKDAY_HOUR) or the i-th store in scope (STORE).
+     */
+    public static final class Slice {
+        private final Dimension by;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final boolean complete;
+        private final LocalDateTime asOf;
+        private final int[] storeIds;
+        private final String[] storeNames;
+        private final long[] revenueCents;
+        private final long[] transactions;
+
+        Slice(Dimension by, LocalDate from, LocalDate to, boolean complete, LocalDateTime asOf,
+              int[] storeIds, String[] storeNames, long[] revenueCents, long[] transactions) {
+            this.by = by;
+            this.from = from;
+            this.to = to;
+            this.complete = complete;
+            this.asOf = asOf;
+            this.storeIds = storeIds;
+            this.storeNames = storeNames;
+            this.revenueCents = revenueCents;
+            this.transactions = transactions;
+        }
+
+        public Dimension by() { return by; }
+        public LocalDate from() { return from; }
+        public LocalDate to() { return to; }
+        /** False if some day of the range is not (yet) in the cube. */
+        public boolean complete() { return complete; }
+        public LocalDateTime asOf() { return asOf; }
+        public int size() { return revenueCents.length; }
+
+        /** Store id of a STORE key. */
+        public int storeId(int i) { return storeIds[i]; }
+        public String storeName(int i) { return storeNames[i]; }
+
+        public long revenueCents(int i) { return revenueCents[i]; }
+        public BigDecimal revenue(int i) { return BigDecimal.valueOf(revenueCents[i], 2); }
+        public long transactions(int i) { return transactions[i]; }
+
+        public BigDecimal basket(int i) {
+            if (transactions[i] <= 0) return BigDecimal.ZERO;
+            return BigDecimal.valueOf(revenueCents[i], 2)
+                    .divide(BigDecimal.valueOf(transactions[i]), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
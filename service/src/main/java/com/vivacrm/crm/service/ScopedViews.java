@@ -0,0 +1,97 @@
+// src/main/java/com/vivacrm/crm/service/ScopedViews.java
+package com.vivacrm.crm.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-scope views of the dashboard payload and the store KPI snapshot.
+ * <p>
+ * A view is built once per (source object, scope) and memoized next to the
+ * source with weak keys, so it lives exactly as long as the full payload or
+ * snapshot it was cut from. Scopes seen in requests are remembered, and after
+ * every refresh their views are built (and rendered) on the refresh thread;
+ * a scoped request is then a map lookup, not a filter over all stores.
+ */
+@Component
+public class ScopedViews {
+
+    private final JsonRenderCache renderCache;
+    private final int maxScopes;
+
+    private final Cache<Object, ConcurrentMap<StoreScope, Object>> views;
+    private final Set<StoreScope> knownScopes = ConcurrentHashMap.newKeySet();
+
+    public ScopedViews(JsonRenderCache renderCache,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.scope.max-precomputed:500}") int maxScopes) {
+        this.renderCache = renderCache;
+        this.maxScopes = maxScopes;
+        this.views = Caffeine.newBuilder().weakKeys().build();
+        Gauge.builder("scope.views.scopes", knownScopes, Set::size)
+                .description("Distinct store scopes with precomputed views")
+                .register(meterRegistry);
+    }
+
+    /** Dashboard limited to the scope's stores; the payload itself for {@link StoreScope#ALL}. */
+    public DashboardPayload dashboard(DashboardPayload full, StoreScope scope) {
+        if (scope.isAll() || full == null) return full;
+        remember(scope);
+        return view(full, scope, DashboardPayload.class,
+                () -> DashboardService.restrict(full, scope));
+    }
+
+    /** KPI snapshot limited to the scope's stores; the snapshot itself for {@link StoreScope#ALL}. */
+    public StoreKpiSnapshot storeKpis(StoreKpiSnapshot full, StoreScope scope) {
+        if (scope.isAll()) return full;
+        remember(scope);
+        return view(full, scope, StoreKpiSnapshot.class, () -> full.restrictTo(scope));
+    }
+
+    @EventListener
+    public void onDashboardRefreshed(DashboardRefreshedEvent event) {
+        DashboardPayload payload = event.payload();
+        for (StoreScope scope : knownScopes) {
+            DashboardPayload view = dashboard(payload, scope);
+            renderCache.render(view, view.asOf());
+        }
+    }
+
+    @EventListener
+    public void onStoreKpiRefreshed(StoreKpiRefreshedEvent event) {
+        StoreKpiSnapshot snapshot = event.current();
+        for (StoreScope scope : knownScopes) {
+            StoreKpiSnapshot view = storeKpis(snapshot, scope);
+            renderCache.render(view.fullBatch(null), view.asOf());
+        }
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private <T> T view(Object source, StoreScope scope, Class<T> type, Supplier<T> build) {
+        ConcurrentMap<StoreScope, Object> perScope = views.get(source, s -> new ConcurrentHashMap<>());
+        Object view = perScope.get(scope);
+        if (view == null) {
+            // built outside the map so a slow build never blocks other scopes
+            Object built = build.get();
+            view = perScope.putIfAbsent(scope, built);
+            if (view == null) view = built;
+        }
+        return type.cast(view);
+    }
+
+    private void remember(StoreScope scope) {
+        if (knownScopes.size() < maxScopes) knownScopes.add(scope);
+    }
+}
@@ -0,0 +1,213 @@
+// src/main/java/com/vivacrm/crm/service/SqlServerGuard.java
+package com.vivacrm.crm.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Resilience wrapper for every stored-procedure call on {@code mssqlJdbcTemplate}:
+ * <ul>
+ *   <li>bulkheads - at most {@code max-concurrent} request-driven SP calls and
+ *       {@code background.max-concurrent} background calls (refresh jobs,
+ *       backfill, prefetch and cube loads; see {@link #background})
+ *       hold connections at once, so background work can never take the
+ *       permits user requests need;</li>
+ *   <li>circuit breaker - after {@code failure-threshold} consecutive failures calls
+ *       fail fast for {@code open-duration}, then a single trial call decides
+ *       whether to close again.</li>
+ * </ul>
+ * Statement timeouts are applied by the JdbcTemplate itself (see {@code SqlServerConfig}).
+ * Every call is timed as {@code sqlserver.sp.calls} tagged by procedure and outcome.
+ */
+@Component
+public class SqlServerGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger log = LoggerFactory.getLogger(SqlServerGuard.class);
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Duration maxWait;
+    private final Duration backgroundMaxWait;
+    private final Semaphore bulkhead;           // request-driven calls
+    private final Semaphore backgroundBulkhead; // calls made inside background(...)
+
+    /** Marks the calling thread's SP calls as background work for the duration of a {@link #background} block. */
+    private static final ThreadLocal<Boolean> BACKGROUND = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long openedAtNanos;
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlServerGuard(@Value("${sqlserver.guard.failure-threshold:5}") int failureThreshold,
+                          @Value("${sqlserver.guard.open-duration:PT30S}") Duration openDuration,
+                          @Value("${sqlserver.guard.max-concurrent:4}") int maxConcurrent,
+                          @Value("${sqlserver.guard.max-wait:PT2S}") Duration maxWait,
+                          @Value("${sqlserver.guard.background.max-concurrent:2}") int backgroundMaxConcurrent,
+                          @Value("${sqlserver.guard.background.max-wait:PT30S}") Duration backgroundMaxWait,
+                          MeterRegistry meterRegistry) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.maxWait = maxWait;
+        this.backgroundMaxWait = backgroundMaxWait;
+        this.bulkhead = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.backgroundBulkhead = new Semaphore(Math.max(1, backgroundMaxConcurrent), true);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("sqlserver.circuit.state", state, s -> s.get().ordinal())
+                .description("SQL Server circuit state: 0=closed, 1=open, 2=half-open")
+                .register(meterRegistry);
+        Gauge.builder("sqlserver.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Free SP call slots")
+                .tag("lane", "user")
+                .register(meterRegistry);
+        Gauge.builder("sqlserver.bulkhead.available", backgroundBulkhead, Semaphore::availablePermits)
+                .description("Free SP call slots")
+                .tag("lane", "background")
+                .register(meterRegistry);
+        FunctionCounter.builder("sqlserver.rejected", rejected, LongAdder::sum)
+                .description("SP calls refused by the open circuit or a full bulkhead")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code work} with every SP call it makes on the calling thread
+     * counted against the background bulkhead, which waits longer for a slot
+     * but never shares permits with request-driven calls.
+     */
+    public <T> T background(Supplier<T> work) {
+        if (BACKGROUND.get()) return work.get();
+        BACKGROUND.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            BACKGROUND.remove();
+        }
+    }
+
+    /** {@link #background(Supplier)} for work without a result. */
+    public void runInBackground(Runnable work) {
+        background(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /** True if a background call could start right now; lets optional work (prefetch) back off. */
+    public boolean hasBackgroundCapacity() {
+        return state.get() == State.CLOSED && backgroundBulkhead.availablePermits() > 0;
+    }
+
+    public <T> T call(String procedure, Supplier<T> call) {
+        Semaphore lane = BACKGROUND.get() ? backgroundBulkhead : bulkhead;
+        boolean trial;
+        State s = state.get();
+        if (s == State.CLOSED) {
+            trial = false;
+        } else if (s == State.OPEN
+                && System.nanoTime() - openedAtNanos >= openDuration.toNanos()
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            trial = true; // exactly one caller probes the server
+        } else {
+            rejected.increment();
+            throw new SqlServerUnavailableException(procedure + ": SQL Server circuit is open");
+        }
+
+        if (!acquire(lane)) {
+            rejected.increment();
+            if (trial) state.set(State.OPEN); // give the probe back; openedAt unchanged
+            throw new SqlServerUnavailableException(procedure + ": too many concurrent SQL Server calls");
+        }
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            T result = call.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Errors count as failures too: a half-open trial must never leave the circuit stuck
+            outcome = "error";
+            if (isProgrammingError(e)) onSuccess(); // server answered; not an availability problem
+            else onFailure(procedure, e);
+            throw e;
+        } finally {
+            lane.release();
+            Timer.builder("sqlserver.sp.calls")
+                    .tag("procedure", procedure)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Records how many rows one result set of a procedure returned. */
+    public void recordRows(String procedure, String resultSet, int rows) {
+        DistributionSummary.builder("sqlserver.sp.rows")
+                .tag("procedure", procedure)
+                .tag("resultSet", resultSet)
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    public State getState() { return state.get(); }
+
+    /** Calls refused by the open circuit or a full bulkhead. */
+    public long getRejected() { return rejected.sum(); }
+
+    public int getAvailablePermits() { return bulkhead.availablePermits(); }
+
+    public int getAvailableBackgroundPermits() { return backgroundBulkhead.availablePermits(); }
+
+    private boolean acquire(Semaphore lane) {
+        Duration wait = lane == backgroundBulkhead ? backgroundMaxWait : maxWait;
+        try {
+            return lane.tryAcquire(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            log.info("SQL Server circuit closed");
+        }
+    }
+
+    private void onFailure(String procedure, Throwable e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAtNanos = System.nanoTime();
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                log.warn("SQL Server circuit opened after {} failure(s); last from {}: {}",
+                        failures, procedure, e.toString());
+            }
+        }
+    }
+
+    private static boolean isProgrammingError(Throwable e) {
+        return e instanceof BadSqlGrammarException || e instanceof InvalidDataAccessApiUsageException;
+    }
+}
@@ -0,0 +1,12 @@
+// src/main/java/com/vivacrm/crm/service/SqlServerUnavailableException.java
+package com.vivacrm.crm.service;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/** Thrown without touching SQL Server when the circuit is open or the bulkhead is full. */
+public class SqlServerUnavailableException extends DataAccessResourceFailureException {
+
+    public SqlServerUnavailableException(String msg) {
+        super(msg);
+    }
+}
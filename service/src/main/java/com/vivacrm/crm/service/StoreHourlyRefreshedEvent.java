@@ -0,0 +1,5 @@
+// src/main/java/com/vivacrm/crm/service/StoreHourlyRefreshedEvent.java
+package com.vivacrm.crm.service;
+
+/** Published after new per-store hourly curves of today were loaded or adopted. */
+public record StoreHourlyRefreshedEvent(StoreHourlySnapshot snapshot) {}
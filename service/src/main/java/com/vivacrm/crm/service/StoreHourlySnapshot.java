@@ -0,0 +1,141 @@
+// src/main/java/com/vivacrm/crm/service/StoreHourlySnapshot.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.StoreHourly;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.vivacrm.crm.service.DashboardService.formatCompact;
+
+/**
+ * Immutable per-store hourly curves of one day (today and the same date last
+ * year), copied out of the {@link SalesCube} after each hourly load. All
+ * stores share four flat primitive arrays ({@code [store][hour]}, revenue in
+ * cents) behind an ascending store id index, so a lookup is a binary search
+ * and the curve of any store costs no SP call. A store's curve is built on
+ * first use and shared, so its rendered JSON is cached next to it.
+ */
+public final class StoreHourlySnapshot {
+
+    private static final int HOURS = SalesCube.HOURS;
+
+    public static final StoreHourlySnapshot EMPTY = new StoreHourlySnapshot(
+            null, null, -1, new int[0], new String[0], new long[0], new int[0], new long[0], new int[0]);
+
+    /** Plain form replicated to cluster followers; the arrays are shared, not copied. */
+    public record Wire(LocalDate day, LocalDateTime asOf, int throughHour, int[] ids, String[] names,
+                       long[] todayCents, int[] todayTx, long[] pyCents, int[] pyTx) {}
+
+    private final LocalDate day;
+    private final LocalDateTime asOf;
+    private final int throughHour;     // last completed hour included
+    private final int[] ids;           // ascending store ids
+    private final String[] names;      // parallel to ids
+    private final long[] todayCents;   // [index * 24 + hour]
+    private final int[] todayTx;
+    private final long[] pyCents;
+    private final int[] pyTx;
+    private final AtomicReferenceArray<StoreHourly> curves; // parallel to ids
+
+    private StoreHourlySnapshot(LocalDate day, LocalDateTime asOf, int throughHour, int[] ids, String[] names,
+                                long[] todayCents, int[] todayTx, long[] pyCents, int[] pyTx) {
+        this.day = day;
+        this.asOf = asOf;
+        this.throughHour = throughHour;
+        this.ids = ids;
+        this.names = names;
+        this.todayCents = todayCents;
+        this.todayTx = todayTx;
+        this.pyCents = pyCents;
+        this.pyTx = pyTx;
+        this.curves = new AtomicReferenceArray<>(ids.length);
+    }
+
+    /**
+     * Copies the first {@code storeCount} store slots of the cube's arrays
+     * (today's cells start at {@code todayBase}), re-ordered by store id.
+     * Stores without any sale today are left out.
+     */
+    static StoreHourlySnapshot of(LocalDate day, LocalDateTime asOf, int throughHour, int storeCount,
+                                  int[] storeIds, String[] storeNames,
+                                  long[] revenueCents, int[] transactions, int todayBase,
+                                  long[] pyCents, int[] pyTransactions) {
+        long[] order = new long[storeCount]; // store id in the high bits, slot in the low bits
+        int count = 0;
+        for (int s = 0; s < storeCount; s++) {
+            if (soldToday(revenueCents, transactions, todayBase + s * HOURS)) {
+                order[count++] = ((long) storeIds[s] << 32) | s;
+            }
+        }
+        Arrays.sort(order, 0, count);
+
+        int[] ids = new int[count];
+        String[] names = new String[count];
+        long[] today = new long[count * HOURS];
+        int[] tx = new int[count * HOURS];
+        long[] py = new long[count * HOURS];
+        int[] pyTx = new int[count * HOURS];
+        for (int i = 0; i < count; i++) {
+            int s = (int) order[i];
+            ids[i] = storeIds[s];
+            names[i] = storeNames[s];
+            System.arraycopy(revenueCents, todayBase + s * HOURS, today, i * HOURS, HOURS);
+            System.arraycopy(transactions, todayBase + s * HOURS, tx, i * HOURS, HOURS);
+            System.arraycopy(pyCents, s * HOURS, py, i * HOURS, HOURS);
+            System.arraycopy(pyTransactions, s * HOURS, pyTx, i * HOURS, HOURS);
+        }
+        return new StoreHourlySnapshot(day, asOf, throughHour, ids, names, today, tx, py, pyTx);
+    }
+
+    private static boolean soldToday(long[] revenueCents, int[] transactions, int base) {
+        for (int h = 0; h < HOURS; h++) {
+            if (transactions[base + h] != 0 || revenueCents[base + h] != 0) return true;
+        }
+        return false;
+    }
+
+    /** The store's curve for hours {@code 0..throughHour}, or null if the store sold nothing today. */
+    public StoreHourly get(int storeId) {
+        int idx = Arrays.binarySearch(ids, storeId);
+        if (idx < 0) return null;
+        StoreHourly curve = curves.get(idx);
+        if (curve == null) {
+            curve = curve(idx);
+            if (!curves.compareAndSet(idx, null, curve)) curve = curves.get(idx);
+        }
+        return curve;
+    }
+
+    public LocalDate day() { return day; }
+
+    public LocalDateTime asOf() { return asOf; }
+
+    public boolean isLoaded() { return asOf != null; }
+
+    public Wire toWire() {
+        return new Wire(day, asOf, throughHour, ids, names, todayCents, todayTx, pyCents, pyTx);
+    }
+
+    public static StoreHourlySnapshot fromWire(Wire w) {
+        return new StoreHourlySnapshot(w.day(), w.asOf(), w.throughHour(), w.ids(), w.names(),
+                w.todayCents(), w.todayTx(), w.pyCents(), w.pyTx());
+    }
+
+    private StoreHourly curve(int idx) {
+        List<StoreHourly.Hour> hours = new ArrayList<>(throughHour + 1);
+        for (int h = 0; h <= throughHour; h++) {
+            int cell = idx * HOURS + h;
+            BigDecimal today = BigDecimal.valueOf(todayCents[cell], 2);
+            BigDecimal lastYear = BigDecimal.valueOf(pyCents[cell], 2);
+            hours.add(new StoreHourly.Hour(h + "h", today, lastYear, todayTx[cell], pyTx[cell],
+                    formatCompact(today), formatCompact(lastYear)));
+        }
+        return new StoreHourly(ids[idx], names[idx], day, asOf, List.copyOf(hours));
+    }
+}
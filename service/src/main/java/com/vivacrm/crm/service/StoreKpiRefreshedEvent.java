@@ -0,0 +1,5 @@
+// src/main/java/com/vivacrm/crm/service/StoreKpiRefreshedEvent.java
+package com.vivacrm.crm.service;
+
+/** Published after a newer store KPI generation replaced {@code previous}. */
+public record StoreKpiRefreshedEvent(StoreKpiSnapshot previous, StoreKpiSnapshot current) {}
@@ -0,0 +1,59 @@
+// src/main/java/com/vivacrm/crm/service/StoreKpiResultSet.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.StoreKpi;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Streams the SP_GetStoreKPI result set straight into {@link StoreKpi} records. */
+final class StoreKpiResultSet implements ResultSetExtractor<List<StoreKpi>> {
+
+    static final StoreKpiResultSet INSTANCE = new StoreKpiResultSet();
+
+    private StoreKpiResultSet() {}
+
+    @Override
+    public List<StoreKpi> extractData(ResultSet rs) throws SQLException {
+        ResultSetColumns c = ResultSetColumns.of(rs);
+        int storeId = c.index("StoreId"), storeName = c.index("StoreName");
+        int revenueToday = c.index("RevenueToday"), revenuePY = c.index("RevenuePY");
+        int txToday = c.index("TxToday"), txPY = c.index("TxPY");
+        int avgBasketToday = c.index("AvgBasketToday"), avgBasketPY = c.index("AvgBasketPY");
+        int revenueDiff = c.index("RevenueDiff"), revenuePct = c.index("RevenuePct");
+        int txDiff = c.index("TxDiff"), txPct = c.index("TxPct"), avgBasketDiff = c.index("AvgBasketDiff");
+        int peakHour = c.index("PeakHour"), peakHourLabel = c.index("PeakHourLabel");
+        int peakHourRevenue = c.index("PeakHourRevenue");
+        int topArtCode = c.index("TopArtCode"), topArtRevenue = c.index("TopArtRevenue");
+        int topArtName = c.index("TopArtName");
+
+        List<StoreKpi> out = new ArrayList<>(128);
+        while (rs.next()) {
+            out.add(new StoreKpi(
+                    c.integer(storeId),
+                    c.text(storeName),
+                    c.decimal(revenueToday),
+                    c.decimal(revenuePY),
+                    c.integer(txToday),
+                    c.integer(txPY),
+                    c.decimal(avgBasketToday),
+                    c.decimal(avgBasketPY),
+                    c.decimal(revenueDiff),
+                    c.decimal(revenuePct),
+                    c.integer(txDiff),
+                    c.decimal(txPct),
+                    c.decimal(avgBasketDiff),
+                    c.integer(peakHour),
+                    c.text(peakHourLabel),
+                    c.decimal(peakHourRevenue),
+                    c.text(topArtCode),
+                    c.decimal(topArtRevenue),
+                    c.text(topArtName)
+            ));
+        }
+        return out;
+    }
+}
@@ -1,46 +1,66 @@
 // src/main/java/com/vivacrm/crm/service/StoreKpiService.java
 package com.vivacrm.crm.service;
 
+import com.vivacrm.crm.cluster.ClusterCoordinator;
+import com.vivacrm.crm.config.CacheConfig;
 import com.vivacrm.crm.service.dto.StoreKpi;
+import com.vivacrm.crm.service.dto.StoreKpiBatch;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlReturnResultSet;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class StoreKpiService {
 
-    private static final String CACHE_NAME = "storeKpi";
-
     private final JdbcTemplate jdbc;
     private final CacheManager cacheManager;
-    private final AtomicBoolean cacheWarmed = new AtomicBoolean(false);
+    private final DaySnapshotStore snapshotStore;
+    private final SalesCube cube;
+    private final SqlServerGuard guard;
+    private final ApplicationEventPublisher events;
+    private final ClusterCoordinator cluster;
     private final SimpleJdbcCall spGetStoreKpi;
+    private final SingleFlight<String, List<StoreKpi>> spFlight =
+            new SingleFlight<>("SP_GetStoreKPI");
     private final ZoneId zoneId;
 
+    /** Current generation; replaced wholesale by {@link #refreshAllStores()}. */
+    private final AtomicReference<StoreKpiSnapshot> current =
+            new AtomicReference<>(StoreKpiSnapshot.EMPTY);
+
     public StoreKpiService(@Qualifier("mssqlJdbcTemplate") JdbcTemplate jdbc,
                            CacheManager cacheManager,
+                           DaySnapshotStore snapshotStore,
+                           SalesCube cube,
+                           SqlServerGuard guard,
+                           ApplicationEventPublisher events,
+                           ClusterCoordinator cluster,
                            @Value("${app.timezone:UTC}") String zone) {
         jdbc.setResultsMapCaseInsensitive(true);
         this.jdbc = jdbc;
         this.cacheManager = cacheManager;
+        this.snapshotStore = snapshotStore;
+        this.cube = cube;
+        this.guard = guard;
+        this.events = events;
+        this.cluster = cluster;
         this.zoneId = ZoneId.of(zone);
 
         this.spGetStoreKpi = new SimpleJdbcCall(jdbc)
@@ -49,167 +69,234 @@ public class StoreKpiService {
                 .withoutProcedureColumnMetaDataAccess()
                 .declareParameters(
                         new SqlParameter("ForDate", Types.DATE),
-                        new SqlParameter("AsOf", Types.TIMESTAMP)
-                )
-                .returningResultSet("rs", new ColumnMapRowMapper());
+                        new SqlParameter("AsOf", Types.TIMESTAMP),
+                        new SqlReturnResultSet("rs", StoreKpiResultSet.INSTANCE)
+                );
     }
 
     public StoreKpi getStoreKpi(int storeId) {
-        warmCacheIfNeeded();
-
-        StoreKpi fromCache = cacheGet(storeId);
-        if (fromCache != null) return fromCache;
+        return getSnapshot().get(storeId);
+    }
 
-        // Fallback: fetch and cache only the requested store
-        List<Map<String, Object>> rows = fetchRows(null);
-        Map<String, Object> row = rows.stream()
-                .filter(r -> Objects.toString(r.get("StoreId"), "").equals(String.valueOf(storeId)))
-                .findFirst()
-                .orElse(Collections.emptyMap());
+    /**
+     * Current snapshot. Only the very first call (before warm-up finished)
+     * loads synchronously; afterwards readers never wait for a refresh.
+     * A cluster follower never loads; before the leader's first snapshot
+     * arrives it fails with {@link SqlServerUnavailableException} (503).
+     */
+    public StoreKpiSnapshot getSnapshot() {
+        StoreKpiSnapshot snapshot = current.get();
+        return snapshot.isLoaded() ? snapshot : refreshAllStores();
+    }
 
-        StoreKpi kpi = mapRow(row);
-        int id = toInt(row.get("StoreId"));
-        if (kpi != null && id != 0) cachePut(id, kpi);
-        return kpi;
+    /** Current snapshot as published, without triggering a load ({@link StoreKpiSnapshot#EMPTY} before warm-up). */
+    public StoreKpiSnapshot getCurrentSnapshot() {
+        return current.get();
     }
 
-    /** Fetch KPI for a specific date/time (bypasses cache). */
+    /** Fetch KPI for a specific date/time from that day's snapshot. */
     public StoreKpi getStoreKpi(int storeId, LocalDateTime forDate) {
-        List<Map<String, Object>> rows = fetchRows(forDate);
-        Map<String, Object> row = rows.stream()
-                .filter(r -> Objects.toString(r.get("StoreId"), "").equals(String.valueOf(storeId)))
-                .findFirst()
-                .orElse(Collections.emptyMap());
-        return mapRow(row);
+        return getSnapshot(forDate).get(storeId);
     }
 
-    /** Force-refresh cache for a single store and return fresh KPI. */
-    @CachePut(cacheNames = CACHE_NAME, key = "#storeId")
-    public StoreKpi refreshStoreKpi(int storeId) {
-        List<Map<String, Object>> rows = fetchRows(null);
-        Map<String, Object> row = rows.stream()
-                .filter(r -> Objects.toString(r.get("StoreId"), "").equals(String.valueOf(storeId)))
-                .findFirst()
-                .orElse(Collections.emptyMap());
+    /**
+     * Snapshot for a specific date/time: the current snapshot for today,
+     * otherwise the cached all-stores snapshot of that closed day.
+     */
+    public StoreKpiSnapshot getSnapshot(LocalDateTime forDate) {
+        if (forDate == null || forDate.toLocalDate().isEqual(LocalDate.now(zoneId))) {
+            return getSnapshot();
+        }
+        return getDaySnapshot(forDate.toLocalDate());
+    }
 
-        return mapRow(row);
+    /**
+     * Closed days never change, so the first request for a day materializes
+     * and indexes every store with one SP call; later lookups for any store
+     * of that day are served from the {@code storeKpiDays} cache, backed by
+     * the local snapshot store across restarts.
+     * <p>
+     * If SQL Server fails, a day the sales cube holds is rebuilt from it
+     * instead: every KPI except the top article (not in the cube), flagged
+     * stale and neither cached nor persisted, so the SP is asked again next time.
+     */
+    private StoreKpiSnapshot getDaySnapshot(LocalDate day) {
+        Cache cache = cacheManager.getCache(CacheConfig.STORE_KPI_DAYS);
+        StoreKpiSnapshot cached = cache == null ? null : cache.get(day, StoreKpiSnapshot.class);
+        if (cached != null) return cached;
+
+        StoreKpiSnapshot loaded = snapshotStore.findStoreKpis(day)
+                .map(kpis -> StoreKpiSnapshot.of(kpis, LocalDateTime.now(zoneId)))
+                .orElse(null);
+        if (loaded == null) {
+            try {
+                loaded = loadDay(day);
+            } catch (DataAccessException e) {
+                Optional<List<StoreKpi>> fromCube = cube.storeKpis(day);
+                if (fromCube.isEmpty()) throw e;
+                return StoreKpiSnapshot.of(fromCube.get(), LocalDateTime.now(zoneId)).asStale();
+            }
+            snapshotStore.saveStoreKpis(day, loaded.all()); // closed, complete days only
+        }
+        // an incomplete day (outage, ETL still loading) is served but not kept
+        if (cache != null && DaySnapshotStore.isComplete(loaded.all())) cache.put(day, loaded);
+        return loaded;
     }
 
-    public void scheduledRefreshAllStores() {
-        refreshAllStores();
+    /** Loads and persists a closed day unless it is already stored locally. */
+    public boolean backfillDay(LocalDate day) {
+        if (!snapshotStore.isClosed(day) || snapshotStore.hasStoreKpis(day)) return false;
+        return snapshotStore.saveStoreKpis(day, loadDay(day).all());
     }
 
-    public void refreshAllStores() {
-        Cache cache = getCache();
-        if (cache == null) return;
+    /** Forgets a day's cached and persisted KPIs; the next request reloads them. */
+    public void invalidateDay(LocalDate day) {
+        Cache cache = cacheManager.getCache(CacheConfig.STORE_KPI_DAYS);
+        if (cache != null) cache.evict(day);
+        snapshotStore.invalidate(day);
+    }
 
-        List<Map<String, Object>> rows = fetchRows(null);
-        cache.clear();
-        for (Map<String, Object> r : rows) {
-            StoreKpi kpi = mapRow(r);
-            int id = toInt(r.get("StoreId"));
-            if (kpi != null && id != 0) cache.put(id, kpi);
-        }
-        cacheWarmed.set(true);
+    private StoreKpiSnapshot loadDay(LocalDate day) {
+        return StoreKpiSnapshot.of(fetchRows(day.atStartOfDay()), LocalDateTime.now(zoneId));
     }
 
-    @CacheEvict(cacheNames = CACHE_NAME, key = "#storeId")
-    public void evictStoreKpi(int storeId) {}
+    /**
+     * Several stores from one snapshot: all stores or only {@code storeIds},
+     * optionally sorted (descending) and cut to the first {@code top} entries.
+     */
+    public StoreKpiBatch getStoreKpis(Collection<Integer> storeIds, StoreKpiSort sort,
+                                      Integer top, LocalDateTime forDate) {
+        return select(getSnapshot(forDate), storeIds, sort, top);
+    }
 
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
-    public void evictAllStoreKpi() { cacheWarmed.set(false); }
+    /** {@link #getStoreKpis} over a given (e.g. scope-restricted) snapshot. */
+    public StoreKpiBatch select(StoreKpiSnapshot snapshot, Collection<Integer> storeIds,
+                                StoreKpiSort sort, Integer top) {
+        if ((storeIds == null || storeIds.isEmpty()) && top == null) {
+            return snapshot.fullBatch(sort); // shared instance, pre-rendered after refreshes
+        }
 
-    /* ---------------------- internals ---------------------- */
+        List<StoreKpi> stores;
+        if (storeIds == null || storeIds.isEmpty()) {
+            stores = new ArrayList<>(snapshot.all());
+        } else {
+            stores = new ArrayList<>(storeIds.size());
+            for (Integer id : storeIds) {
+                StoreKpi kpi = id == null ? null : snapshot.get(id);
+                if (kpi != null) stores.add(kpi);
+            }
+        }
+        if (sort != null) stores.sort(sort.comparator());
+        if (top != null && top >= 0 && top < stores.size()) {
+            stores = stores.subList(0, top);
+        }
+        return new StoreKpiBatch(snapshot.asOf(), snapshot.isStale(), List.copyOf(stores));
+    }
+
+    /** Force-refresh the snapshot and return the store's fresh KPI. */
+    public StoreKpi refreshStoreKpi(int storeId) {
+        return refreshAllStores().get(storeId);
+    }
+
+    public void scheduledRefreshAllStores() {
+        refreshAllStores();
+    }
 
-    private void warmCacheIfNeeded() {
-        if (cacheWarmed.get()) return;
-        if (cacheWarmed.compareAndSet(false, true)) {
-            List<Map<String, Object>> rows = fetchRows(null);
-            Cache cache = getCache();
-            if (cache == null) return;
-
-            for (Map<String, Object> r : rows) {
-                StoreKpi kpi = mapRow(r);
-                int id = toInt(r.get("StoreId"));
-                if (kpi != null && id != 0) cache.put(id, kpi);
+    /**
+     * Loads all stores into a new snapshot built off to the side and publishes
+     * it with a single reference swap: readers see either the complete old or
+     * the complete new generation, never a partially filled cache.
+     * If SQL Server fails the previous generation keeps being served, flagged
+     * as stale (announced like a refresh, so followers learn it too), and the
+     * error is rethrown to the caller. A cluster follower returns the adopted
+     * generation instead of loading.
+     */
+    public StoreKpiSnapshot refreshAllStores() {
+        if (cluster != null && !cluster.isLeader()) {
+            StoreKpiSnapshot adopted = current.get();
+            if (!adopted.isLoaded()) {
+                throw new SqlServerUnavailableException("No store KPI snapshot from the cluster leader yet");
             }
+            return adopted;
+        }
+        LocalDateTime asOf = LocalDateTime.now(zoneId);
+        StoreKpiSnapshot next;
+        try {
+            next = StoreKpiSnapshot.of(fetchRows(null), asOf);
+        } catch (DataAccessException e) {
+            StoreKpiSnapshot last = current.get();
+            if (last.isLoaded()) install(last.asStale());
+            throw e;
         }
+
+        return install(next);
     }
 
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> fetchRows(LocalDateTime dateTime) {
+    /**
+     * Installs a generation loaded by the cluster leader (see ClusterSnapshotSync)
+     * without an SP call, keeping the leader's stale flag; ignored if the
+     * current one is newer.
+     */
+    public StoreKpiSnapshot adopt(Collection<StoreKpi> kpis, LocalDateTime asOf, boolean stale) {
+        StoreKpiSnapshot next = StoreKpiSnapshot.of(kpis, asOf);
+        return install(stale ? next.asStale() : next);
+    }
+
+    private StoreKpiSnapshot install(StoreKpiSnapshot next) {
+        // Never let a slow, older refresh overwrite a newer generation; the
+        // same generation may only change its stale flag
+        StoreKpiSnapshot prev = current.getAndAccumulate(next, (p, n) -> replaces(n, p) ? n : p);
+        if (!replaces(next, prev)) return prev;
+
+        events.publishEvent(new StoreKpiRefreshedEvent(prev, next));
+        return next;
+    }
+
+    private static boolean replaces(StoreKpiSnapshot next, StoreKpiSnapshot prev) {
+        return next.isNewerThan(prev) || (next.isSameGeneration(prev) && next.isStale() != prev.isStale());
+    }
+
+    /** Drop the current snapshot; the next read reloads it. */
+    public void evictAllStoreKpi() {
+        current.set(StoreKpiSnapshot.EMPTY);
+    }
+
+    /** Coalescing stats for SP_GetStoreKPI calls. */
+    public SingleFlight<String, List<StoreKpi>> getSpFlight() {
+        return spFlight;
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    private List<StoreKpi> fetchRows(LocalDateTime dateTime) {
         LocalDateTime now = LocalDateTime.now(zoneId);
         LocalDate today = now.toLocalDate();
         LocalDateTime queryTime = (dateTime != null ? dateTime : now)
                 .withMinute(0).withSecond(0).withNano(0);
 
         MapSqlParameterSource in = new MapSqlParameterSource();
+        String flightKey;
 
         if (dateTime == null || queryTime.toLocalDate().isEqual(today)) {
             in.addValue("ForDate", null, Types.DATE);
             in.addValue("AsOf", Timestamp.valueOf(queryTime), Types.TIMESTAMP);
+            flightKey = "AsOf=" + queryTime;
         } else {
             in.addValue("ForDate", java.sql.Date.valueOf(queryTime.toLocalDate()), Types.DATE);
             in.addValue("AsOf", null, Types.TIMESTAMP);
+            flightKey = "ForDate=" + queryTime.toLocalDate();
         }
 
+        // One all-stores SP execution per key, shared by every concurrent miss
+        return spFlight.execute(flightKey, () -> guard.call("SP_GetStoreKPI", () -> executeSp(in)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StoreKpi> executeSp(MapSqlParameterSource in) {
         Map<String, Object> out = spGetStoreKpi.execute(in);
-        List<Map<String, Object>> rows = (List<Map<String, Object>>) out.get("rs");
-        return rows == null ? Collections.emptyList() : rows;
-    }
-
-    private Cache getCache() { return cacheManager.getCache(CACHE_NAME); }
-
-    private StoreKpi cacheGet(int storeId) {
-        Cache.ValueWrapper w = getCache() == null ? null : getCache().get(storeId);
-        return w == null ? null : (StoreKpi) w.get();
-    }
-
-    private void cachePut(int storeId, StoreKpi kpi) {
-        Cache cache = getCache();
-        if (cache != null) cache.put(storeId, kpi);
-    }
-
-    private StoreKpi mapRow(Map<String, Object> r) {
-        if (r == null || r.isEmpty()) return null;
-        return new StoreKpi(
-                toInt(r.get("StoreId")),
-                asString(r.get("StoreName")),
-                toDecimal(r.get("RevenueToday")),
-                toDecimal(r.get("RevenuePY")),
-                toInt(r.get("TxToday")),
-                toInt(r.get("TxPY")),
-                toDecimal(r.get("AvgBasketToday")),
-                toDecimal(r.get("AvgBasketPY")),
-                toDecimal(r.get("RevenueDiff")),
-                toDecimal(r.get("RevenuePct")),
-                toInt(r.get("TxDiff")),
-                toDecimal(r.get("TxPct")),
-                toDecimal(r.get("AvgBasketDiff")),
-                toInt(r.get("PeakHour")),
-                asString(r.get("PeakHourLabel")),
-                toDecimal(r.get("PeakHourRevenue")),
-                asString(r.get("TopArtCode")),
-                toDecimal(r.get("TopArtRevenue")),
-                asString(r.get("TopArtName"))
-        );
-    }
-
-    private static BigDecimal toDecimal(Object v) {
-        if (v == null) return BigDecimal.ZERO;
-        if (v instanceof BigDecimal bd) return bd;
-        if (v instanceof Number n) return BigDecimal.valueOf(n.doubleValue());
-        try { return new BigDecimal(String.valueOf(v).trim()); }
-        catch (Exception e) { return BigDecimal.ZERO; }
-    }
-
-    private static int toInt(Object v) {
-        if (v instanceof Number n) return n.intValue();
-        try { return Integer.parseInt(String.valueOf(v).trim()); }
-        catch (Exception e) { return 0; }
-    }
-
-    private static String asString(Object v) {
-        return v == null ? "" : String.valueOf(v);
+        List<StoreKpi> rows = (List<StoreKpi>) out.get("rs");
+        if (rows == null) rows = Collections.emptyList();
+        guard.recordRows("SP_GetStoreKPI", "rs", rows.size());
+        return rows;
     }
 }
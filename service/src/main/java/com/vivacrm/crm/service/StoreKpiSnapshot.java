@@ -0,0 +1,149 @@
+// src/main/java/com/vivacrm/crm/service/StoreKpiSnapshot.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.StoreKpi;
+import com.vivacrm.crm.service.dto.StoreKpiBatch;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable generation of store KPIs produced by one SP_GetStoreKPI refresh.
+ * Lookups by store id are a binary search over a primitive {@code int[]}
+ * index, so no boxing or hashing on the read path.
+ */
+public final class StoreKpiSnapshot {
+
+    /** Placeholder before the first load; {@link #isLoaded()} is false. */
+    public static final StoreKpiSnapshot EMPTY =
+            new StoreKpiSnapshot(new int[0], new StoreKpi[0], List.of(), null, false);
+
+    private final int[] ids;          // ascending store ids
+    private final StoreKpi[] byId;    // parallel to ids
+    private final List<StoreKpi> all; // SP order (by store name)
+    private final LocalDateTime asOf;
+    private final boolean stale;      // last refresh failed; still the newest data we have
+
+    /** All-stores batches per sort order (slot 0 = SP order), built on first use. */
+    private final AtomicReferenceArray<StoreKpiBatch> fullBatches =
+            new AtomicReferenceArray<>(StoreKpiSort.values().length + 1);
+
+    private StoreKpiSnapshot(int[] ids, StoreKpi[] byId, List<StoreKpi> all,
+                             LocalDateTime asOf, boolean stale) {
+        this.ids = ids;
+        this.byId = byId;
+        this.all = all;
+        this.asOf = asOf;
+        this.stale = stale;
+    }
+
+    /** Builds a snapshot; rows without a store id are dropped, duplicates keep the first row. */
+    public static StoreKpiSnapshot of(Collection<StoreKpi> kpis, LocalDateTime asOf) {
+        List<StoreKpi> ordered = new ArrayList<>(kpis.size());
+        for (StoreKpi k : kpis) {
+            if (k != null && k.storeId() != 0) ordered.add(k);
+        }
+
+        StoreKpi[] sorted = ordered.toArray(new StoreKpi[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(StoreKpi::storeId)); // stable
+
+        int[] ids = new int[sorted.length];
+        StoreKpi[] byId = new StoreKpi[sorted.length];
+        int n = 0;
+        for (StoreKpi k : sorted) {
+            if (n > 0 && ids[n - 1] == k.storeId()) continue;
+            ids[n] = k.storeId();
+            byId[n] = k;
+            n++;
+        }
+        return new StoreKpiSnapshot(Arrays.copyOf(ids, n), Arrays.copyOf(byId, n),
+                Collections.unmodifiableList(ordered), asOf, false);
+    }
+
+    /** KPI for the store, or null if the store is not part of this generation. */
+    public StoreKpi get(int storeId) {
+        int idx = Arrays.binarySearch(ids, storeId);
+        return idx >= 0 ? byId[idx] : null;
+    }
+
+    public boolean contains(int storeId) {
+        return Arrays.binarySearch(ids, storeId) >= 0;
+    }
+
+    /** All stores in SP order. */
+    public List<StoreKpi> all() { return all; }
+
+    public int size() { return ids.length; }
+
+    /**
+     * The same generation restricted to {@code scope} (same {@code asOf} and
+     * stale flag); {@link StoreScope#ALL} returns this snapshot.
+     */
+    public StoreKpiSnapshot restrictTo(StoreScope scope) {
+        if (scope.isAll()) return this;
+        int[] keptIds = new int[Math.min(ids.length, scope.size())];
+        StoreKpi[] keptById = new StoreKpi[keptIds.length];
+        int n = 0;
+        for (int i = 0; i < ids.length && n < keptIds.length; i++) {
+            if (!scope.contains(ids[i])) continue;
+            keptIds[n] = ids[i];
+            keptById[n] = byId[i];
+            n++;
+        }
+        List<StoreKpi> keptAll = new ArrayList<>(n);
+        for (StoreKpi k : all) {
+            if (scope.contains(k.storeId())) keptAll.add(k);
+        }
+        return new StoreKpiSnapshot(Arrays.copyOf(keptIds, n), Arrays.copyOf(keptById, n),
+                Collections.unmodifiableList(keptAll), asOf, stale);
+    }
+
+    /**
+     * Every store as one batch, in SP order or sorted by {@code sort}. The
+     * instance is shared per generation and sort, so its rendered JSON can be
+     * cached alongside it.
+     */
+    public StoreKpiBatch fullBatch(StoreKpiSort sort) {
+        int slot = sort == null ? 0 : sort.ordinal() + 1;
+        StoreKpiBatch batch = fullBatches.get(slot);
+        if (batch == null) {
+            List<StoreKpi> stores = all;
+            if (sort != null) {
+                stores = new ArrayList<>(all);
+                stores.sort(sort.comparator());
+            }
+            batch = new StoreKpiBatch(asOf, stale, List.copyOf(stores));
+            if (!fullBatches.compareAndSet(slot, null, batch)) batch = fullBatches.get(slot);
+        }
+        return batch;
+    }
+
+    /** When this generation was loaded; null for {@link #EMPTY}. */
+    public LocalDateTime asOf() { return asOf; }
+
+    public boolean isLoaded() { return asOf != null; }
+
+    /** True once a refresh after this generation has failed. */
+    public boolean isStale() { return stale; }
+
+    /** Same data flagged as stale; {@link #EMPTY} and stale snapshots are returned as-is. */
+    public StoreKpiSnapshot asStale() {
+        return stale || !isLoaded() ? this : new StoreKpiSnapshot(ids, byId, all, asOf, true);
+    }
+
+    /** True if this generation was loaded after {@code other}. */
+    boolean isNewerThan(StoreKpiSnapshot other) {
+        return other.asOf == null || (asOf != null && asOf.isAfter(other.asOf));
+    }
+
+    /** Same load (same {@code asOf}), possibly with a different stale flag. */
+    boolean isSameGeneration(StoreKpiSnapshot other) {
+        return asOf != null && asOf.equals(other.asOf);
+    }
+}
@@ -0,0 +1,43 @@
+// src/main/java/com/vivacrm/crm/service/StoreKpiSort.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.StoreKpi;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.Function;
+
+/** Sort orders supported by the batch store KPI endpoint and the leaderboard (all descending). */
+public enum StoreKpiSort {
+    REVENUE(StoreKpi::revenueToday),
+    TX(k -> BigDecimal.valueOf(k.txToday())),
+    PCT(StoreKpi::revenuePct);
+
+    private final Function<StoreKpi, BigDecimal> value;
+    private final Comparator<StoreKpi> descending;
+
+    StoreKpiSort(Function<StoreKpi, BigDecimal> value) {
+        this.value = value;
+        this.descending = Comparator.comparing(value).reversed().thenComparingInt(StoreKpi::storeId);
+    }
+
+    public Comparator<StoreKpi> comparator() {
+        return descending;
+    }
+
+    /** The figure this order ranks by. */
+    public BigDecimal value(StoreKpi kpi) {
+        return value.apply(kpi);
+    }
+
+    /** Parses {@code revenue|tx|pct} (case-insensitive); null for unknown values. */
+    public static StoreKpiSort fromParam(String value) {
+        if (value == null) return null;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+// src/main/java/com/vivacrm/crm/service/StoreLeaderboard.java
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.Leaderboard;
+import com.vivacrm.crm.service.dto.LeaderboardEntry;
+import com.vivacrm.crm.service.dto.StoreKpi;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Store ranks of one KPI generation for every {@link StoreKpiSort}, ranked
+ * once when the generation is published. Per order it keeps the stores in
+ * rank order and, parallel to the ascending store id index, each store's
+ * rank: a rank lookup is a binary search plus an array read, and a page of
+ * the board is a copy of a range.
+ * <p>
+ * Rank deltas compare against a baseline board (the last generation of the
+ * previous hour), resolved per store through the baseline's own index.
+ */
+public final class StoreLeaderboard {
+
+    private static final StoreKpiSort[] ORDERS = StoreKpiSort.values();
+
+    /** Placeholder before the first KPI generation. */
+    public static final StoreLeaderboard EMPTY = of(StoreKpiSnapshot.EMPTY, null);
+
+    private final int[] ids;            // ascending store ids
+    private final StoreKpi[] byId;      // parallel to ids
+    private final int[][] ranked;       // [order][rank - 1] -> index into ids
+    private final int[][] rankOf;       // [order][index into ids] -> rank (1-based)
+    private final StoreLeaderboard baseline;
+    private final LocalDateTime asOf;
+    private final boolean stale;
+
+    /** Full boards per order, built on first use and shared (rendered JSON is cached next to them). */
+    private final AtomicReferenceArray<Leaderboard> fullViews = new AtomicReferenceArray<>(ORDERS.length);
+
+    private StoreLeaderboard(int[] ids, StoreKpi[] byId, int[][] ranked, int[][] rankOf,
+                             StoreLeaderboard baseline, LocalDateTime asOf, boolean stale) {
+        this.ids = ids;
+        this.byId = byId;
+        this.ranked = ranked;
+        this.rankOf = rankOf;
+        this.baseline = baseline;
+        this.asOf = asOf;
+        this.stale = stale;
+    }
+
+    /** Ranks every store of {@code snapshot}; deltas are taken against {@code baseline} (may be null). */
+    public static StoreLeaderboard of(StoreKpiSnapshot snapshot, StoreLeaderboard baseline) {
+        List<StoreKpi> stores = snapshot.all();
+        StoreKpi[] byId = stores.toArray(new StoreKpi[0]);
+        Arrays.sort(byId, (a, b) -> Integer.compare(a.storeId(), b.storeId()));
+        int[] ids = new int[byId.length];
+        for (int i = 0; i < byId.length; i++) ids[i] = byId[i].storeId();
+
+        int[][] ranked = new int[ORDERS.length][];
+        int[][] rankOf = new int[ORDERS.length][];
+        for (StoreKpiSort order : ORDERS) {
+            Integer[] idx = new Integer[byId.length];
+            for (int i = 0; i < idx.length; i++) idx[i] = i;
+            Arrays.sort(idx, (a, b) -> order.comparator().compare(byId[a], byId[b]));
+
+            int[] r = new int[idx.length];
+            int[] of = new int[idx.length];
+            for (int pos = 0; pos < idx.length; pos++) {
+                r[pos] = idx[pos];
+                of[idx[pos]] = pos + 1;
+            }
+            ranked[order.ordinal()] = r;
+            rankOf[order.ordinal()] = of;
+        }
+        // only the direct predecessor is kept, so boards never chain
+        StoreLeaderboard base = baseline == null ? null : baseline.withoutBaseline();
+        return new StoreLeaderboard(ids, byId, ranked, rankOf, base, snapshot.asOf(), snapshot.isStale());
+    }
+
+    /** 1-based rank of the store by {@code order}, or -1 if it is not on the board. */
+    public int rank(int storeId, StoreKpiSort order) {
+        int idx = Arrays.binarySearch(ids, storeId);
+        return idx >= 0 ? rankOf[order.ordinal()][idx] : -1;
+    }
+
+    /** Store at {@code rank} (1-based) by {@code order}, or null. */
+    public StoreKpi atRank(int rank, StoreKpiSort order) {
+        if (rank < 1 || rank > ids.length) return null;
+        return byId[ranked[order.ordinal()][rank - 1]];
+    }
+
+    public int size() { return ids.length; }
+
+    public LocalDateTime asOf() { return asOf; }
+
+    /** Baseline the deltas are taken against; null if there is none. */
+    public StoreLeaderboard baseline() { return baseline; }
+
+    /** The whole board by {@code order}; shared instance per generation and order. */
+    public Leaderboard full(StoreKpiSort order) {
+        Leaderboard view = fullViews.get(order.ordinal());
+        if (view == null) {
+            view = view(order, StoreScope.ALL, null);
+            if (!fullViews.compareAndSet(order.ordinal(), null, view)) view = fullViews.get(order.ordinal());
+        }
+        return view;
+    }
+
+    /**
+     * Stores of {@code scope} in rank order, cut to {@code top} entries if
+     * given. Ranks stay chain-wide, so a scoped user sees where their stores
+     * stand among all stores; gaps are to the neighbouring stores of the
+     * scope, so no figure of a store outside it is disclosed.
+     */
+    public Leaderboard view(StoreKpiSort order, StoreScope scope, Integer top) {
+        int[] r = ranked[order.ordinal()];
+        int[] inScope = new int[scope.isAll() ? r.length : Math.min(r.length, scope.size())];
+        int n = 0;
+        for (int pos = 0; pos < r.length && n < inScope.length; pos++) {
+            if (scope.contains(byId[r[pos]].storeId())) inScope[n++] = pos;
+        }
+        int limit = top == null ? n : Math.max(0, Math.min(top, n));
+        List<LeaderboardEntry> entries = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            entries.add(entry(order, inScope[i], i > 0 ? inScope[i - 1] : -1, i + 1 < n ? inScope[i + 1] : -1));
+        }
+        return new Leaderboard(asOf, stale, order.name().toLowerCase(Locale.ROOT), List.copyOf(entries));
+    }
+
+    /* ---------------------- internals ---------------------- */
+
+    /** Entry at rank position {@code pos}; gaps to the stores at {@code above}/{@code below} (-1 = none). */
+    private LeaderboardEntry entry(StoreKpiSort order, int pos, int above, int below) {
+        int[] r = ranked[order.ordinal()];
+        StoreKpi kpi = byId[r[pos]];
+        BigDecimal value = order.value(kpi);
+        BigDecimal gapUp = above >= 0 ? order.value(byId[r[above]]).subtract(value) : null;
+        BigDecimal gapDown = below >= 0 ? value.subtract(order.value(byId[r[below]])) : null;
+
+        Integer delta = null;
+        if (baseline != null) {
+            int before = baseline.rank(kpi.storeId(), order);
+            if (before > 0) delta = before - (pos + 1);
+        }
+        return new LeaderboardEntry(pos + 1, delta, kpi.storeId(), kpi.storeName(), value, gapUp, gapDown);
+    }
+
+    private StoreLeaderboard withoutBaseline() {
+        return baseline == null ? this : new StoreLeaderboard(ids, byId, ranked, rankOf, null, asOf, stale);
+    }
+}
@@ -0,0 +1,55 @@
+// src/main/java/com/vivacrm/crm/service/StoreScope.java
+package com.vivacrm.crm.service;
+
+import java.util.Arrays;
+
+/**
+ * The stores a user may see: every store, or a fixed set of store ids (a store
+ * manager's own stores or a region's stores). Immutable; equal scopes share
+ * precomputed views in {@link ScopedViews}.
+ */
+public final class StoreScope {
+
+    /** Unrestricted; views for this scope are the full payloads. */
+    public static final StoreScope ALL = new StoreScope(null);
+
+    private final int[] storeIds; // ascending, distinct; null = all stores
+
+    private StoreScope(int[] storeIds) {
+        this.storeIds = storeIds;
+    }
+
+    /** Scope limited to {@code storeIds}; an empty array means no stores at all. */
+    public static StoreScope of(int... storeIds) {
+        int[] ids = Arrays.stream(storeIds).distinct().sorted().toArray();
+        return new StoreScope(ids);
+    }
+
+    public boolean isAll() {
+        return storeIds == null;
+    }
+
+    public boolean contains(int storeId) {
+        return storeIds == null || Arrays.binarySearch(storeIds, storeId) >= 0;
+    }
+
+    /** Number of stores in scope, or -1 for {@link #ALL}. */
+    public int size() {
+        return storeIds == null ? -1 : storeIds.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof StoreScope s && Arrays.equals(storeIds, s.storeIds));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(storeIds);
+    }
+
+    @Override
+    public String toString() {
+        return storeIds == null ? "*" : Arrays.toString(storeIds);
+    }
+}
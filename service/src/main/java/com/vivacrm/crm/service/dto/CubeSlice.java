@@ -0,0 +1,23 @@
+// src/main/java/com/vivacrm/crm/service/dto/CubeSlice.java
+package com.vivacrm.crm.service.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One aggregation over the sales cube; {@code complete} is false if some day
+ * of the range was not loaded yet, {@code asOf} is the cube's last load.
+ */
+public record CubeSlice(
+        String by,
+        LocalDate from,
+        LocalDate to,
+        boolean complete,
+        LocalDateTime asOf,
+        List<Row> rows
+) {
+    /** {@code key} identifies the group (date, hour, weekday, store id); {@code label} is for display. */
+    public record Row(String key, String label, BigDecimal revenue, long transactions, BigDecimal basket) {}
+}
@@ -1,11 +1,25 @@
 // src/main/java/com/vivacrm/crm/service/dto/DashboardPayload.java
 package com.vivacrm.crm.service.dto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Dashboard snapshot; {@code asOf} is when it was loaded from SQL Server and
+ * {@code stale} marks a last-known-good payload served while SQL Server is
+ * unavailable. {@code totals} holds the raw figures for range aggregation
+ * (null in store-scoped views and in snapshots persisted before it existed).
+ */
 public record DashboardPayload(
         List<Metric> metrics,
         List<Point>  dailySeries,
         List<Point>  hourlySeries,
-        List<StoreCompare> storeComparison
-) {}
+        List<StoreCompare> storeComparison,
+        DayTotals totals,
+        LocalDateTime asOf,
+        boolean stale
+) {
+    public DashboardPayload asStale() {
+        return stale ? this : new DashboardPayload(metrics, dailySeries, hourlySeries, storeComparison, totals, asOf, true);
+    }
+}
@@ -0,0 +1,26 @@
+// src/main/java/com/vivacrm/crm/service/dto/DayTotals.java
+package com.vivacrm.crm.service.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Raw additive totals behind a payload's formatted metrics, so the payloads
+ * of several days can be summed into week/month/year figures.
+ */
+public record DayTotals(
+        BigDecimal revenue,
+        BigDecimal revenuePY,
+        BigDecimal transactions,
+        BigDecimal transactionsPY
+) {
+    public static final DayTotals ZERO =
+            new DayTotals(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+
+    public DayTotals plus(DayTotals other) {
+        return new DayTotals(
+                revenue.add(other.revenue),
+                revenuePY.add(other.revenuePY),
+                transactions.add(other.transactions),
+                transactionsPY.add(other.transactionsPY));
+    }
+}
@@ -0,0 +1,13 @@
+// src/main/java/com/vivacrm/crm/service/dto/Leaderboard.java
+package com.vivacrm.crm.service.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Stores ranked by {@code by} ({@code revenue|tx|pct}) in one KPI generation. */
+public record Leaderboard(
+        LocalDateTime asOf,
+        boolean stale,
+        String by,
+        List<LeaderboardEntry> stores
+) {}
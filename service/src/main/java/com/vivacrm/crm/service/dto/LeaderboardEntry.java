@@ -0,0 +1,20 @@
+// src/main/java/com/vivacrm/crm/service/dto/LeaderboardEntry.java
+package com.vivacrm.crm.service.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One store's place on the leaderboard. {@code rankDelta} is the number of
+ * places gained since the previous hour (negative = lost; null if the store
+ * was not ranked then); gaps are to the next stores above and below within
+ * the caller's scope (null at either end).
+ */
+public record LeaderboardEntry(
+        int rank,
+        Integer rankDelta,
+        int storeId,
+        String storeName,
+        BigDecimal value,
+        BigDecimal gapToPrevious,
+        BigDecimal gapToNext
+) {}
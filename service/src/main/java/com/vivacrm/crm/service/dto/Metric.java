@@ -1,7 +1,9 @@
 // src/main/java/com/vivacrm/crm/service/dto/Metric.java
 package com.vivacrm.crm.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
 
@@ -15,7 +17,10 @@ public final class Metric {
         this(name, value, null);
     }
 
-    public Metric(String name, String value, List<Metric> subMetrics) {
+    @JsonCreator
+    public Metric(@JsonProperty("name") String name,
+                  @JsonProperty("value") String value,
+                  @JsonProperty("subMetrics") List<Metric> subMetrics) {
         this.name = name;
         this.value = value;
         this.subMetrics = subMetrics;
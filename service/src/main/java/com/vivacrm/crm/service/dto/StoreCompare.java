@@ -3,8 +3,13 @@ package com.vivacrm.crm.service.dto;
 
 import java.math.BigDecimal;
 
-/** Store comparison row with raw numerics and preformatted display strings. */
+/**
+ * Store comparison row with raw numerics and preformatted display strings.
+ * {@code storeId} is the OE code, the same id as {@link StoreKpi#storeId()}
+ * (0 in payloads persisted before it was added).
+ */
 public record StoreCompare(
+        int storeId,
         String store,
         BigDecimal lastYear,
         BigDecimal thisYear,
@@ -0,0 +1,30 @@
+// src/main/java/com/vivacrm/crm/service/dto/StoreHourly.java
+package com.vivacrm.crm.service.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One store's revenue per hour of {@code day} up to the last completed hour,
+ * next to the same date last year; {@code asOf} is when it was loaded.
+ */
+public record StoreHourly(
+        int storeId,
+        String storeName,
+        LocalDate day,
+        LocalDateTime asOf,
+        List<Hour> hours
+) {
+    /** Raw numerics with preformatted display strings, like {@link StoreCompare}. */
+    public record Hour(
+            String label,
+            BigDecimal today,
+            BigDecimal lastYear,
+            int txToday,
+            int txLastYear,
+            String todayDisplay,
+            String lastYearDisplay
+    ) {}
+}
@@ -0,0 +1,15 @@
+// src/main/java/com/vivacrm/crm/service/dto/StoreKpiBatch.java
+package com.vivacrm.crm.service.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Many store KPIs from one snapshot; {@code asOf} is when the snapshot was
+ * loaded and {@code stale} is true if the latest refresh of it failed.
+ */
+public record StoreKpiBatch(
+        LocalDateTime asOf,
+        boolean stale,
+        List<StoreKpi> stores
+) {}
@@ -0,0 +1,20 @@
+package com.vivacrm.crm.user;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+    List<RefreshToken> findAllByUserAndRevokedAtIsNull(User user);
+    void deleteAllByExpiresAtBefore(LocalDateTime cutoff);
+
+    /** Revokes the token unless it already is; 0 means another request got there first. */
+    @Modifying
+    @Query("update RefreshToken t set t.revokedAt = :now where t.tokenHash = :tokenHash and t.revokedAt is null")
+    int revokeIfActive(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now);
+}
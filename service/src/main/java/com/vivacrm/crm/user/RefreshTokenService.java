@@ -0,0 +1,99 @@
+package com.vivacrm.crm.user;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+
+import com.vivacrm.crm.util.Sha256;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Issues, rotates and revokes refresh tokens. Every refresh replaces the
+ * presented token with a new one; presenting an already rotated token again
+ * is treated as theft and revokes all of that user's tokens.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    /** A successful rotation: the owner and the replacement token. */
+    public record Rotation(User user, String refreshToken) {}
+
+    private final RefreshTokenRepository repo;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository repo,
+                               @Value("${jwt.refresh-expiration:P30D}") Duration ttl) {
+        this.repo = repo;
+        this.ttl = ttl;
+    }
+
+    @Transactional("sqliteTx")
+    public String issue(User user) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken rt = new RefreshToken();
+        rt.setTokenHash(Sha256.base64(token));
+        rt.setUser(user);
+        rt.setExpiresAt(LocalDateTime.now().plus(ttl));
+        repo.save(rt);
+        return token;
+    }
+
+    /** Exchanges a valid token for a new one; empty if unknown, expired or revoked. */
+    @Transactional("sqliteTx")
+    public Optional<Rotation> rotate(String token) {
+        if (token == null) return Optional.empty();
+        String hash = Sha256.base64(token);
+        RefreshToken rt = repo.findByTokenHash(hash).orElse(null);
+        if (rt == null) return Optional.empty();
+        if (rt.isRevoked()) return reused(rt);
+        if (rt.getExpiresAt().isBefore(LocalDateTime.now())) return Optional.empty();
+
+        // conditional update: of two concurrent refreshes with the same token only one wins
+        if (repo.revokeIfActive(hash, LocalDateTime.now()) == 0) return reused(rt);
+        return Optional.of(new Rotation(rt.getUser(), issue(rt.getUser())));
+    }
+
+    private Optional<Rotation> reused(RefreshToken rt) {
+        log.warn("Revoked refresh token reused for user {}; revoking all sessions", rt.getUser().getUsername());
+        revokeAll(rt.getUser());
+        return Optional.empty();
+    }
+
+    /** Revokes one token (logout); unknown tokens are ignored. */
+    @Transactional("sqliteTx")
+    public void revoke(String token) {
+        if (token == null) return;
+        repo.findByTokenHash(Sha256.base64(token)).filter(rt -> !rt.isRevoked()).ifPresent(rt -> {
+            rt.setRevokedAt(LocalDateTime.now());
+            repo.save(rt);
+        });
+    }
+
+    @Transactional("sqliteTx")
+    public void revokeAll(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        for (RefreshToken rt : repo.findAllByUserAndRevokedAtIsNull(user)) {
+            rt.setRevokedAt(now);
+        }
+    }
+
+    /** Expired rows are useless, revoked ones only matter for reuse detection until they expire. */
+    @Scheduled(cron = "${jwt.refresh-cleanup-cron:0 15 3 * * *}")
+    @Transactional("sqliteTx")
+    public void purgeExpired() {
+        repo.deleteAllByExpiresAtBefore(LocalDateTime.now());
+    }
+}
@@ -25,6 +25,9 @@ public class User {
     private String totpSecret;
     private boolean totpEnabled;
 
+    /** Visible stores: null = all, {@code stores:101,102}, {@code region:North} (see StoreScopeResolver). */
+    private String storeScope;
+
     // Getters and setters
 
     public Long getId() {
@@ -75,4 +78,12 @@ public class User {
         this.totpEnabled = totpEnabled;
     }
 
+    public String getStoreScope() {
+        return storeScope;
+    }
+
+    public void setStoreScope(String storeScope) {
+        this.storeScope = storeScope;
+    }
+
 }
@@ -1,8 +1,10 @@
 package com.vivacrm.crm.user;
 
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.vivacrm.crm.config.CacheConfig;
 import com.vivacrm.crm.security.TotpUtil;
 
 @Service
@@ -24,6 +26,7 @@ public class UserService {
      * @param password the raw password
      * @return the saved User entity
      */
+    @CacheEvict(cacheNames = CacheConfig.USER_DETAILS, key = "#username")
     public User register(String username, String email, String password) {
         User user = new User();
         user.setUsername(username);
@@ -51,6 +54,7 @@ public class UserService {
     }
 
     /** Enable TOTP for the given user and return the generated secret. */
+    @CacheEvict(cacheNames = CacheConfig.USER_DETAILS, key = "#user.username")
     public String enableTotp(User user) {
         String secret = TotpUtil.generateSecret();
         user.setTotpSecret(secret);
@@ -59,7 +63,15 @@ public class UserService {
         return secret;
     }
 
+    /** Set the stores the user may see (null = all); see StoreScopeResolver for the format. */
+    @CacheEvict(cacheNames = CacheConfig.USER_DETAILS, key = "#user.username")
+    public void setStoreScope(User user, String storeScope) {
+        user.setStoreScope(storeScope == null || storeScope.isBlank() ? null : storeScope.trim());
+        userRepository.save(user);
+    }
+
     /** Disable TOTP for the given user. */
+    @CacheEvict(cacheNames = CacheConfig.USER_DETAILS, key = "#user.username")
     public void disableTotp(User user) {
         user.setTotpEnabled(false);
         user.setTotpSecret(null);
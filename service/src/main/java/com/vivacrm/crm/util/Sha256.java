@@ -0,0 +1,26 @@
+// src/main/java/com/vivacrm/crm/util/Sha256.java
+package com.vivacrm.crm.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/** SHA-256 digests for ETags and for storing tokens by hash instead of verbatim. */
+public final class Sha256 {
+
+    private Sha256() {}
+
+    public static byte[] digest(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // mandated by the JDK spec
+        }
+    }
+
+    /** Base64 digest of an ASCII token (JWTs and refresh tokens are ASCII). */
+    public static String base64(String token) {
+        return Base64.getEncoder().encodeToString(digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.vivacrm.crm.config;
+
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.Metric;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DayAwareExpiryTest {
+
+    private static final Duration GRACE = Duration.ofMinutes(5);
+    private static final Duration HISTORICAL = Duration.ofDays(7);
+
+    private final CacheConfig.DayAwareExpiry expiry =
+            new CacheConfig.DayAwareExpiry(ZoneId.of("UTC"), GRACE, HISTORICAL);
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    @Test
+    void pastDaysKeepTheHistoricalTtl() {
+        assertThat(expiry.expireAfterCreate(today.minusDays(1), "v", 0)).isEqualTo(HISTORICAL.toNanos());
+        assertThat(expiry.expireAfterCreate("metrics:2020-01-01", "v", 0)).isEqualTo(HISTORICAL.toNanos());
+    }
+
+    @Test
+    void todayAndUnknownKeysExpireAfterTheNextTopOfHour() {
+        for (Object key : List.of(today, "metrics:" + today, today.plusDays(1), "metrics:not-a-date", "plain", 42)) {
+            long nanos = expiry.expireAfterCreate(key, "v", 0);
+            assertThat(nanos).as("key %s", key)
+                    .isGreaterThan(GRACE.toNanos())
+                    .isLessThanOrEqualTo(Duration.ofHours(1).plus(GRACE).toNanos());
+        }
+    }
+
+    @Test
+    void updatesRecomputeAndReadsKeepTheExpiry() {
+        assertThat(expiry.expireAfterUpdate(today.minusDays(1), "v", 0, 123)).isEqualTo(HISTORICAL.toNanos());
+        assertThat(expiry.expireAfterRead(today, "v", 0, 123)).isEqualTo(123);
+    }
+
+    @Test
+    void estimateGrowsWithPayloadSize() {
+        DashboardPayload small = new DashboardPayload(List.of(), List.of(), List.of(), List.of(), null, null, false);
+        DashboardPayload larger = new DashboardPayload(List.of(new Metric("Shitjet Sod", "1")),
+                List.of(), List.of(), List.of(), null, null, false);
+
+        assertThat(CacheConfig.estimateBytes(larger)).isGreaterThan(CacheConfig.estimateBytes(small));
+        assertThat(CacheConfig.estimateBytes("other")).isEqualTo(1_024);
+    }
+}
@@ -0,0 +1,81 @@
+package com.vivacrm.crm.controller;
+
+import com.vivacrm.crm.config.SecurityConfig;
+import com.vivacrm.crm.push.LiveUpdateHub;
+import com.vivacrm.crm.security.CustomUserDetailsService;
+import com.vivacrm.crm.security.JwtService;
+import com.vivacrm.crm.security.StoreScopeResolver;
+import com.vivacrm.crm.service.DashboardService;
+import com.vivacrm.crm.service.ScopedViews;
+import com.vivacrm.crm.service.StoreKpiService;
+import com.vivacrm.crm.service.StoreScope;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(LiveUpdateController.class)
+@Import({SecurityConfig.class, LiveUpdateControllerTest.Metrics.class})
+class LiveUpdateControllerTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean private LiveUpdateHub hub;
+    @MockitoBean private DashboardService dashboardService;
+    @MockitoBean private StoreKpiService kpiService;
+    @MockitoBean private ScopedViews scopedViews;
+    @MockitoBean private StoreScopeResolver scopes;
+    @MockitoBean private JwtService jwtService;
+    @MockitoBean private CustomUserDetailsService userDetailsService;
+
+    @Test
+    void streamNeedsAToken() throws Exception {
+        mvc.perform(get("/stream")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void asyncDispatchOfAnAuthenticatedStreamIsAllowed() throws Exception {
+        when(jwtService.isClaimsMode()).thenReturn(true);
+        when(jwtService.verify("token")).thenReturn(Optional.of(
+                new JwtService.VerifiedToken("ana", List.of("USER"), null, Long.MAX_VALUE)));
+        when(scopes.current()).thenReturn(StoreScope.ALL);
+        SseEmitter emitter = new SseEmitter();
+        when(hub.subscribe(anyBoolean(), any(), any())).thenReturn(emitter);
+
+        MvcResult result = mvc.perform(get("/stream").param("topics", "dashboard")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        emitter.complete(); // the stream ends (timeout, shutdown): the container dispatches once more
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,157 @@
+package com.vivacrm.crm.schedule;
+
+import com.vivacrm.crm.service.SqlServerUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshJobTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private RefreshJob job(Runnable task, Duration timeout, int maxAttempts) {
+        return new RefreshJob("test", task, Duration.ofMinutes(5), timeout, maxAttempts,
+                Duration.ofMillis(1), executor, ZoneId.of("UTC"));
+    }
+
+    @Test
+    void successfulRunIsRecorded() {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshJob job = job(calls::incrementAndGet, Duration.ofSeconds(5), 3);
+
+        assertThat(job.isStale()).isTrue();
+        assertThat(job.run()).isTrue();
+
+        assertThat(calls).hasValue(1);
+        assertThat(job.getRuns()).isEqualTo(1);
+        assertThat(job.getFailures()).isZero();
+        assertThat(job.getLastSuccess()).isNotNull();
+        assertThat(job.getLastError()).isNull();
+        assertThat(job.isStale()).isFalse();
+    }
+
+    @Test
+    void transientFailuresAreRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshJob job = job(() -> {
+            if (calls.incrementAndGet() < 3) throw new TransientDataAccessResourceException("deadlock victim");
+        }, Duration.ofSeconds(5), 3);
+
+        assertThat(job.run()).isTrue();
+
+        assertThat(calls).hasValue(3);
+        assertThat(job.getRetries()).isEqualTo(2);
+        assertThat(job.getFailures()).isZero();
+        assertThat(job.getLastSuccess()).isNotNull();
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshJob job = job(() -> {
+            calls.incrementAndGet();
+            throw new TransientDataAccessResourceException("deadlock victim");
+        }, Duration.ofSeconds(5), 2);
+
+        assertThat(job.run()).isFalse(); // the scheduler must not count this as a refresh
+
+        assertThat(calls).hasValue(2);
+        assertThat(job.getRetries()).isEqualTo(1);
+        assertThat(job.getFailures()).isEqualTo(1);
+        assertThat(job.getLastSuccess()).isNull();
+        assertThat(job.getLastError()).contains("deadlock victim");
+    }
+
+    @Test
+    void openCircuitIsNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshJob job = job(() -> {
+            calls.incrementAndGet();
+            throw new SqlServerUnavailableException("circuit is open");
+        }, Duration.ofSeconds(5), 3);
+
+        assertThat(job.run()).isFalse();
+
+        assertThat(calls).hasValue(1);
+        assertThat(job.getRetries()).isZero();
+        assertThat(job.getFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void interruptedRunIsAFailure() {
+        CountDownLatch release = new CountDownLatch(1);
+        RefreshJob job = job(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS); // still running when the caller is interrupted
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Duration.ofSeconds(5), 3);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThat(job.run()).isFalse();
+        } finally {
+            assertThat(Thread.interrupted()).isTrue(); // flag restored for the caller
+            release.countDown();
+        }
+        assertThat(job.getFailures()).isEqualTo(1);
+        assertThat(job.getLastError()).isEqualTo("interrupted");
+    }
+
+    @Test
+    void timedOutAttemptIsJoinedInsteadOfStartingAnother() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        RefreshJob job = job(() -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        }, Duration.ofMillis(50), 1);
+
+        assertThat(job.run()).isFalse();
+        assertThat(job.run()).isFalse();
+        assertThat(calls).hasValue(1);
+        assertThat(job.getFailures()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(job.run()).isTrue();
+        assertThat(job.getLastSuccess()).isNotNull();
+        assertThat(calls.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void doesNotRunConcurrentlyWithItself() {
+        AtomicReference<RefreshJob> self = new AtomicReference<>();
+        AtomicReference<Boolean> nested = new AtomicReference<>();
+        RefreshJob job = job(() -> nested.set(self.get().run()), Duration.ofSeconds(5), 1);
+        self.set(job);
+
+        assertThat(job.run()).isTrue();
+
+        assertThat(nested.get()).isFalse();
+        assertThat(job.getRuns()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,57 @@
+package com.vivacrm.crm.security;
+
+import com.vivacrm.crm.service.StoreScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreScopeResolverTest {
+
+    private final StoreScopeResolver resolver = new StoreScopeResolver(new MockEnvironment()
+            .withProperty("app.scope.regions.North", "101,102")
+            .withProperty("app.scope.regions.South", "201"));
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void blankOrWildcardMeansAllStores() {
+        assertThat(resolver.resolve(null)).isSameAs(StoreScope.ALL);
+        assertThat(resolver.resolve(" ")).isSameAs(StoreScope.ALL);
+        assertThat(resolver.resolve(" * ")).isSameAs(StoreScope.ALL);
+    }
+
+    @Test
+    void storeListAndRegionsCombine() {
+        StoreScope scope = resolver.resolve("stores:7, 8; region:north");
+
+        assertThat(scope.isAll()).isFalse();
+        assertThat(scope).isEqualTo(StoreScope.of(7, 8, 101, 102));
+        assertThat(scope.contains(101)).isTrue();
+        assertThat(scope.contains(201)).isFalse();
+    }
+
+    @Test
+    void unknownOrMalformedPartsGrantNothing() {
+        assertThat(resolver.resolve("region:Mars").size()).isZero();
+        assertThat(resolver.resolve("North").size()).isZero();
+        assertThat(resolver.resolve("shops:1").size()).isZero();
+        assertThat(resolver.resolve("stores:1,x,,2")).isEqualTo(StoreScope.of(1, 2));
+        assertThat(resolver.resolve("region:Mars").isAll()).isFalse();
+    }
+
+    @Test
+    void parsedScopesAreMemoized() {
+        assertThat(resolver.resolve("region:South")).isSameAs(resolver.resolve("region:South"));
+    }
+
+    @Test
+    void unauthenticatedCallerSeesAllStores() {
+        assertThat(resolver.current()).isSameAs(StoreScope.ALL);
+    }
+}
@@ -0,0 +1,71 @@
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardRangeService.Period;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.DayTotals;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DashboardRangeServiceTest {
+
+    private static final LocalDate END = LocalDate.of(2024, 3, 10); // a Sunday, long closed
+
+    private final DashboardService dashboardService = mock(DashboardService.class);
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("dashboard");
+    private final DashboardRangeService service = new DashboardRangeService(dashboardService,
+            mock(DaySnapshotStore.class), cacheManager, "UTC");
+
+    private static DashboardPayload day() {
+        return new DashboardPayload(List.of(), List.of(), List.of(), List.of(), DayTotals.ZERO,
+                LocalDateTime.of(2024, 3, 11, 0, 0), false);
+    }
+
+    @Test
+    void coldRangeMakesASingleSqlServerCall() {
+        when(dashboardService.getMetrics(any(LocalDateTime.class))).thenReturn(day());
+
+        DashboardPayload month = service.getRange(Period.MONTH, END);
+
+        assertThat(month.stale()).isTrue(); // nine days still missing
+        verify(dashboardService).getMetrics(END.atStartOfDay()); // the newest day only
+    }
+
+    @Test
+    void daysTheCubeHoldsNeedNoSqlServer() {
+        when(dashboardService.fromCube(any())).thenReturn(Optional.of(day()));
+
+        DashboardPayload week = service.getRange(Period.WEEK, END);
+
+        assertThat(week.stale()).isFalse();
+        verify(dashboardService, never()).getMetrics(any(LocalDateTime.class));
+    }
+
+    @Test
+    void invalidatingADayEvictsTheRangesCoveringIt() {
+        Cache cache = cacheManager.getCache("dashboard");
+        for (String key : List.of("range-MONTH:2024-03-10", "range-YEAR:2024-12-31",
+                "range-WEEK:2024-03-12", "range-MONTH:2024-03-09")) {
+            cache.put(key, day());
+        }
+
+        service.invalidateDay(END);
+
+        assertThat(cache.get("range-MONTH:2024-03-10")).isNull();
+        assertThat(cache.get("range-YEAR:2024-12-31")).isNull();
+        assertThat(cache.get("range-WEEK:2024-03-12")).isNotNull(); // next week
+        assertThat(cache.get("range-MONTH:2024-03-09")).isNotNull(); // ends before the day
+    }
+}
@@ -0,0 +1,127 @@
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.Rows;
+import com.vivacrm.crm.service.DashboardResultSets.StoreYoY;
+import com.vivacrm.crm.service.DashboardResultSets.Summary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntradayDashboardTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 8, 27);
+    private static final LocalDateTime NOW = DAY.atTime(2, 5);
+
+    private static final IntradayDashboard.DeltaSource UNUSED = (day, from, to) -> {
+        throw new AssertionError("no delta fetch expected");
+    };
+
+    private final IntradayDashboard intraday = new IntradayDashboard(1, Duration.ofMinutes(30));
+
+    static HourlyDelta row(char series, int oe, String store, int hour, String amount, int tx) {
+        return new HourlyDelta(series, oe, store, hour, new BigDecimal(amount), tx);
+    }
+
+    /** Hours 0..1: Alpha 10.00 at 0h, Beta 30.00 at 1h; last year Alpha 20.00; yesterday 5.00. */
+    private static List<HourlyDelta> firstHours() {
+        return List.of(
+                row('T', 101, "Alpha", 0, "10.00", 1),
+                row('T', 102, "Beta", 1, "30.00", 2),
+                row('P', 101, "Alpha", 0, "20.00", 2),
+                row('Y', 101, "Alpha", 1, "5.00", 0));
+    }
+
+    private static Rows fullLoad(String totalRevenue) {
+        Summary summary = new Summary(new BigDecimal(totalRevenue), BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "",
+                BigDecimal.ZERO, BigDecimal.ZERO, "", "", BigDecimal.ZERO);
+        List<LabeledAmount> daily = List.of(
+                new LabeledAmount("2025-08-26", new BigDecimal("100.00")),
+                new LabeledAmount("2025-08-27", new BigDecimal(totalRevenue)));
+        return new Rows(summary, daily, List.of(), List.of());
+    }
+
+    @Test
+    void advanceFetchesOnlyTheNewAndRewoundHours() {
+        assertThat(intraday.seed(DAY, 1, NOW, fullLoad("40.00"), firstHours())).isTrue();
+
+        List<String> fetched = new ArrayList<>();
+        Rows rows = intraday.advance(DAY, 2, NOW.plusMinutes(10), (day, from, to) -> {
+            fetched.add(from + ".." + to);
+            return List.of(
+                    row('T', 102, "Beta", 1, "30.00", 2),
+                    row('T', 101, "Alpha", 2, "15.00", 1));
+        }).orElseThrow();
+
+        assertThat(fetched).containsExactly("1..2");
+        Summary summary = rows.summary();
+        assertThat(summary.totalRevenue()).isEqualByComparingTo("55.00");
+        assertThat(summary.transactions()).isEqualByComparingTo("4");
+        assertThat(summary.totalRevenuePY()).isEqualByComparingTo("20.00");
+        assertThat(summary.peakHour()).isEqualTo("1");
+        assertThat(summary.topStoreName()).isEqualTo("Beta");
+        assertThat(summary.topStoreOE()).isEqualTo("102");
+        assertThat(rows.hourly()).extracting(LabeledAmount::label).containsExactly("0h", "1h", "2h");
+        assertThat(rows.daily()).extracting(LabeledAmount::label).containsExactly("2025-08-26", "2025-08-27");
+        assertThat(rows.daily().get(1).amount()).isEqualByComparingTo("55.00");
+        assertThat(rows.stores()).extracting(StoreYoY::store).containsExactly("Alpha", "Beta");
+        assertThat(rows.stores().get(0).thisYear()).isEqualByComparingTo("25.00");
+        assertThat(rows.stores().get(0).lastYear()).isEqualByComparingTo("20.00");
+    }
+
+    @Test
+    void seedDisagreeingWithTheFullLoadDisablesTheDay() {
+        assertThat(intraday.seed(DAY, 1, NOW, fullLoad("99.00"), firstHours())).isFalse();
+
+        assertThat(intraday.canSeed(DAY)).isFalse();
+        assertThat(intraday.canSeed(DAY.plusDays(1))).isTrue();
+        assertThat(intraday.advance(DAY, 2, NOW, UNUSED)).isEmpty();
+    }
+
+    @Test
+    void changedRewoundHourInvalidatesTheState() {
+        intraday.seed(DAY, 1, NOW, fullLoad("40.00"), firstHours());
+
+        assertThat(intraday.advance(DAY, 2, NOW, (day, from, to) -> List.of(
+                row('T', 102, "Beta", 1, "35.00", 2)))).isEmpty();
+        assertThat(intraday.advance(DAY, 2, NOW, UNUSED)).isEmpty();
+    }
+
+    @Test
+    void newDayBackwardsCutoffAndReloadIntervalNeedAFullLoad() {
+        intraday.seed(DAY, 1, NOW, fullLoad("40.00"), firstHours());
+
+        assertThat(intraday.advance(DAY.plusDays(1), 2, NOW, UNUSED)).isEmpty();
+        assertThat(intraday.advance(DAY, 0, NOW, UNUSED)).isEmpty();
+        assertThat(intraday.advance(DAY, 2, NOW.plusMinutes(30), UNUSED)).isEmpty();
+
+        intraday.invalidate();
+        assertThat(intraday.advance(DAY, 2, NOW, UNUSED)).isEmpty();
+    }
+
+    @Test
+    void closedDayRebuildsTheWholeDay() {
+        List<LabeledAmount> prior = new ArrayList<>();
+        for (int i = 6; i >= 1; i--) prior.add(new LabeledAmount(DAY.minusDays(i).toString(), BigDecimal.TEN));
+
+        Rows rows = IntradayDashboard.closedDay(DAY, prior, firstHours());
+
+        Summary summary = rows.summary();
+        assertThat(summary.totalRevenue()).isEqualByComparingTo("40.00");
+        assertThat(summary.revenueVsPYPct()).isEqualByComparingTo("100.00");
+        assertThat(summary.revenueVsYesterdayPct()).isEqualByComparingTo("700.00");
+        assertThat(summary.avgBasketSize()).isEqualByComparingTo("13.33");
+        assertThat(rows.hourly()).hasSize(24);
+        assertThat(rows.daily()).hasSize(7);
+        assertThat(rows.daily().get(6).label()).isEqualTo(DAY.toString());
+    }
+}
@@ -0,0 +1,191 @@
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.DashboardResultSets.HourlyDelta;
+import com.vivacrm.crm.service.DashboardResultSets.LabeledAmount;
+import com.vivacrm.crm.service.DashboardResultSets.Rows;
+import com.vivacrm.crm.service.SalesCube.Dimension;
+import com.vivacrm.crm.service.SalesCube.Slice;
+import com.vivacrm.crm.service.dto.StoreHourly;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.vivacrm.crm.service.IntradayDashboardTest.row;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SalesCubeTest {
+
+    private static final int LAST = SalesCube.HOURS - 1;
+
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    private final List<Object> published = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SalesCube cube = new SalesCube(mock(JdbcTemplate.class),
+            new SqlServerGuard(5, Duration.ofSeconds(30), 4, Duration.ofSeconds(1), 2, Duration.ofSeconds(1), registry),
+            mock(DaySnapshotStore.class), published::add, registry, "UTC", 400, 8, 2, 31);
+
+    private void closedDay(LocalDate day, HourlyDelta... rows) {
+        cube.apply(day, 0, LAST, true, List.of(rows));
+    }
+
+    @Test
+    void sliceAggregatesAlongEachDimension() {
+        LocalDate d1 = today.minusDays(3);
+        LocalDate d2 = today.minusDays(2);
+        closedDay(d1,
+                row('T', 101, "Alpha", 9, "10.00", 1),
+                row('T', 101, "Alpha", 10, "20.00", 2),
+                row('T', 102, "Beta", 10, "30.00", 3),
+                row('P', 102, "Beta", 10, "99.00", 9)); // other days' rows are not stored under d1
+        closedDay(d2, row('T', 101, "Alpha", 9, "5.00", 1));
+
+        Slice total = cube.slice(Dimension.TOTAL, StoreScope.ALL, d1, d2);
+        assertThat(total.complete()).isTrue();
+        assertThat(total.revenue(0)).isEqualByComparingTo("65.00");
+        assertThat(total.transactions(0)).isEqualTo(7);
+
+        Slice hours = cube.slice(Dimension.HOUR, StoreScope.ALL, d1, d1);
+        assertThat(hours.size()).isEqualTo(24);
+        assertThat(hours.revenue(10)).isEqualByComparingTo("50.00");
+
+        Slice days = cube.slice(Dimension.DAY, StoreScope.ALL, d1, today.minusDays(1));
+        assertThat(days.complete()).isFalse(); // yesterday is not loaded
+        assertThat(days.size()).isEqualTo(3);
+        assertThat(days.revenue(0)).isEqualByComparingTo("60.00");
+        assertThat(days.revenue(2)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void storeSliceIsLimitedToTheScope() {
+        LocalDate day = today.minusDays(3);
+        closedDay(day,
+                row('T', 101, "Alpha", 9, "10.00", 1),
+                row('T', 101, "Alpha", 10, "25.00", 3),
+                row('T', 102, "Beta", 10, "30.00", 3));
+
+        Slice stores = cube.slice(Dimension.STORE, StoreScope.of(101), day, day);
+
+        assertThat(stores.size()).isEqualTo(1);
+        assertThat(stores.storeId(0)).isEqualTo(101);
+        assertThat(stores.storeName(0)).isEqualTo("Alpha");
+        assertThat(stores.revenue(0)).isEqualByComparingTo("35.00");
+        assertThat(stores.basket(0)).isEqualByComparingTo("8.75");
+    }
+
+    @Test
+    void reloadedHoursReplaceInsteadOfAdding() {
+        LocalDate day = today.minusDays(3);
+        closedDay(day,
+                row('T', 101, "Alpha", 9, "10.00", 1),
+                row('T', 102, "Beta", 10, "30.00", 3));
+
+        cube.apply(day, 10, 10, true, List.of(row('T', 101, "Alpha", 10, "25.00", 2)));
+
+        Slice stores = cube.slice(Dimension.STORE, StoreScope.ALL, day, day);
+        assertThat(stores.revenue(0)).isEqualByComparingTo("35.00");
+        assertThat(stores.revenue(1)).isEqualByComparingTo("0");
+        assertThat(cube.isClosed(day)).isTrue();
+    }
+
+    @Test
+    void storeKpisNeedTheDayAndLastYearClosed() {
+        LocalDate day = today.minusDays(2);
+        closedDay(day,
+                row('T', 101, "Alpha", 9, "10.00", 1),
+                row('T', 101, "Alpha", 11, "40.00", 3),
+                row('T', 102, "Beta", 9, "30.00", 2));
+        assertThat(cube.storeKpis(day)).isEmpty();
+
+        closedDay(day.minusYears(1), row('T', 101, "Alpha", 9, "40.00", 5));
+        List<StoreKpi> kpis = cube.storeKpis(day).orElseThrow();
+
+        assertThat(kpis).extracting(StoreKpi::storeName).containsExactly("Alpha", "Beta");
+        StoreKpi alpha = kpis.get(0);
+        assertThat(alpha.revenueToday()).isEqualByComparingTo("50.00");
+        assertThat(alpha.revenuePY()).isEqualByComparingTo("40.00");
+        assertThat(alpha.revenuePct()).isEqualByComparingTo("25.00");
+        assertThat(alpha.txToday()).isEqualTo(4);
+        assertThat(alpha.txPct()).isEqualByComparingTo("-20.00");
+        assertThat(alpha.peakHour()).isEqualTo(11);
+        assertThat(alpha.peakHourLabel()).isEqualTo("11h");
+        assertThat(alpha.topArtCode()).isEmpty();
+        StoreKpi beta = kpis.get(1);
+        assertThat(beta.revenuePY()).isEqualByComparingTo("0");
+        assertThat(beta.avgBasketPY()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void dashboardRowsNeedTheWeekAndLastYearClosed() {
+        LocalDate day = today.minusDays(2);
+        for (int i = 0; i < 7; i++) {
+            closedDay(day.minusDays(i), row('T', 101, "Alpha", 12, (10 + i) + ".00", 1));
+        }
+        assertThat(cube.dashboardRows(day)).isEmpty();
+
+        closedDay(day.minusYears(1), row('T', 101, "Alpha", 12, "8.00", 1));
+        Rows rows = cube.dashboardRows(day).orElseThrow();
+
+        assertThat(rows.summary().totalRevenue()).isEqualByComparingTo("10.00");
+        assertThat(rows.summary().revenueYesterday()).isEqualByComparingTo("11.00");
+        assertThat(rows.summary().totalRevenuePY()).isEqualByComparingTo("8.00");
+        assertThat(rows.daily()).extracting(LabeledAmount::label)
+                .first().isEqualTo(day.minusDays(6).toString());
+        assertThat(rows.daily()).hasSize(7);
+        assertThat(rows.daily().get(0).amount()).isEqualByComparingTo("16.00");
+    }
+
+    @Test
+    void todaysLoadPublishesPerStoreCurves() {
+        cube.apply(today, 0, 1, false, List.of(
+                row('T', 101, "Alpha", 0, "10.00", 1),
+                row('P', 101, "Alpha", 0, "8.00", 1),
+                row('T', 101, "Alpha", 1, "4.00", 1)));
+
+        StoreHourlySnapshot curves = cube.storeHourly();
+        assertThat(curves.day()).isEqualTo(today);
+        StoreHourly alpha = curves.get(101);
+        assertThat(alpha.hours()).hasSize(2);
+        assertThat(alpha.hours().get(0).today()).isEqualByComparingTo("10.00");
+        assertThat(alpha.hours().get(0).lastYear()).isEqualByComparingTo("8.00");
+        assertThat(curves.get(999)).isNull();
+        assertThat(published).containsExactly(new StoreHourlyRefreshedEvent(curves));
+        assertThat(cube.isClosed(today)).isFalse();
+    }
+
+    @Test
+    void storesWithoutSalesTodayHaveNoCurve() {
+        closedDay(today.minusDays(2), row('T', 102, "Beta", 9, "30.00", 2)); // Beta has a cube slot
+        cube.apply(today, 0, 1, false, List.of(
+                row('T', 101, "Alpha", 0, "10.00", 1),
+                row('P', 103, "Gamma", 0, "8.00", 1))); // sold last year only
+
+        StoreHourlySnapshot curves = cube.storeHourly();
+        assertThat(curves.get(101)).isNotNull();
+        assertThat(curves.get(102)).isNull();
+        assertThat(curves.get(103)).isNull();
+    }
+
+    @Test
+    void yesterdaysCurvesAreNotServedAfterMidnight() {
+        cube.apply(today.minusDays(1), 0, 5, false, List.of(row('T', 101, "Alpha", 3, "10.00", 1)));
+
+        assertThat(published).hasSize(1);
+        assertThat(cube.storeHourly()).isSameAs(StoreHourlySnapshot.EMPTY);
+    }
+
+    @Test
+    void daysOutsideTheWindowAreIncomplete() {
+        Slice slice = cube.slice(Dimension.TOTAL, StoreScope.ALL, today.minusDays(500), today.minusDays(499));
+
+        assertThat(slice.complete()).isFalse();
+        assertThat(slice.revenue(0)).isEqualByComparingTo("0");
+    }
+}
@@ -0,0 +1,74 @@
+package com.vivacrm.crm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vivacrm.crm.service.dto.DashboardPayload;
+import com.vivacrm.crm.service.dto.DayTotals;
+import com.vivacrm.crm.service.dto.Metric;
+import com.vivacrm.crm.service.dto.StoreCompare;
+import com.vivacrm.crm.service.dto.StoreKpi;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.vivacrm.crm.service.StoreKpiSnapshotTest.kpi;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScopedViewsTest {
+
+    private static final LocalDateTime AS_OF = LocalDateTime.of(2025, 8, 27, 10, 5);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ScopedViews views = new ScopedViews(
+            new JsonRenderCache(new ObjectMapper().findAndRegisterModules(), registry, 100, "UTC"), registry, 10);
+
+    private static StoreCompare store(int id, String name, String lastYear, String thisYear) {
+        return new StoreCompare(id, name, new BigDecimal(lastYear), new BigDecimal(thisYear), lastYear, thisYear);
+    }
+
+    private final DashboardPayload full = new DashboardPayload(
+            List.of(new Metric("Shitjet Sod", "230")),
+            List.of(), List.of(),
+            List.of(store(101, "Alpha", "100.00", "150.00"),
+                    store(102, "Beta", "50.00", "80.00"),
+                    store(0, "Legacy", "1.00", "1.00")),
+            new DayTotals(new BigDecimal("230.00"), new BigDecimal("150.00"), BigDecimal.TEN, BigDecimal.ONE),
+            AS_OF, false);
+
+    @Test
+    void dashboardIsCutToTheScopesStores() {
+        DashboardPayload view = views.dashboard(full, StoreScope.of(101));
+
+        assertThat(view.storeComparison()).extracting(StoreCompare::storeId).containsExactly(101);
+        assertThat(view.metrics().get(0).getName()).isEqualTo("Shitjet Sod");
+        assertThat(view.metrics().get(0).getValue()).isEqualTo("150");
+        assertThat(view.metrics().get(1).getName()).isEqualTo("Top Pika");
+        assertThat(view.totals()).isNull(); // chain-wide figures never leak into a scoped view
+        assertThat(view.asOf()).isEqualTo(AS_OF);
+    }
+
+    @Test
+    void dashboardViewsAreMemoizedPerSourceAndScope() {
+        DashboardPayload view = views.dashboard(full, StoreScope.of(101));
+
+        assertThat(views.dashboard(full, StoreScope.of(101))).isSameAs(view);
+        assertThat(views.dashboard(full, StoreScope.of(102))).isNotSameAs(view);
+        assertThat(views.dashboard(full.asStale(), StoreScope.of(101))).isNotSameAs(view);
+        assertThat(views.dashboard(full, StoreScope.ALL)).isSameAs(full);
+    }
+
+    @Test
+    void storeKpisAreCutAndMemoized() {
+        StoreKpiSnapshot snapshot = StoreKpiSnapshot.of(List.<StoreKpi>of(
+                kpi(101, "Alpha", "150.00", 3, "0"),
+                kpi(102, "Beta", "80.00", 2, "0")), AS_OF);
+
+        StoreKpiSnapshot view = views.storeKpis(snapshot, StoreScope.of(102));
+
+        assertThat(view.all()).extracting(StoreKpi::storeId).containsExactly(102);
+        assertThat(views.storeKpis(snapshot, StoreScope.of(102))).isSameAs(view);
+        assertThat(views.storeKpis(snapshot, StoreScope.ALL)).isSameAs(snapshot);
+    }
+}
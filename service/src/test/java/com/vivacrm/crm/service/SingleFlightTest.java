@@ -0,0 +1,108 @@
+package com.vivacrm.crm.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test");
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = new ArrayList<>();
+        results.add(pool.submit(() -> flight.execute("day", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "payload";
+        })));
+        waitUntil(() -> flight.getInFlight() == 1);
+        for (int i = 0; i < 3; i++) {
+            results.add(pool.submit(() -> flight.execute("day", () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitUntil(() -> flight.getCoalesced() == 3);
+        release.countDown();
+
+        for (Future<String> f : results) assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("payload");
+        assertThat(loads).hasValue(1);
+        assertThat(flight.getExecutions()).isEqualTo(1);
+        assertThat(flight.getInFlight()).isZero();
+    }
+
+    @Test
+    void joinersReceiveTheLeadersException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("SP failed");
+
+        Future<String> leader = pool.submit(() -> flight.execute("day", () -> {
+            await(release);
+            throw failure;
+        }));
+        waitUntil(() -> flight.getInFlight() == 1);
+        Future<String> joiner = pool.submit(() -> flight.execute("day", () -> "unused"));
+        waitUntil(() -> flight.getCoalesced() == 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThatThrownBy(() -> joiner.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThat(flight.getInFlight()).isZero();
+    }
+
+    @Test
+    void completedLoadsAreNotReused() {
+        assertThat(flight.execute("day", () -> "first")).isEqualTo("first");
+        assertThat(flight.execute("day", () -> "second")).isEqualTo("second");
+        assertThat(flight.getExecutions()).isEqualTo(2);
+        assertThat(flight.getCoalesced()).isZero();
+    }
+
+    @Test
+    void differentKeysDoNotCoalesce() {
+        assertThat(flight.execute("a", () -> flight.execute("b", () -> "nested"))).isEqualTo("nested");
+        assertThat(flight.getExecutions()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("not released");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
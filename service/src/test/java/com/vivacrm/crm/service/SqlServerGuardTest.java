@@ -0,0 +1,129 @@
+package com.vivacrm.crm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.BadSqlGrammarException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlServerGuardTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(100);
+
+    private final SqlServerGuard guard = new SqlServerGuard(2, OPEN_DURATION, 2, Duration.ofMillis(10),
+            1, Duration.ofMillis(10), new SimpleMeterRegistry());
+
+    private void fail() {
+        assertThatThrownBy(() -> guard.call("sp", () -> {
+            throw new DataAccessResourceFailureException("connection reset");
+        })).isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndFailsFast() {
+        fail();
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.CLOSED);
+        fail();
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.OPEN);
+
+        AtomicBoolean called = new AtomicBoolean();
+        assertThatThrownBy(() -> guard.call("sp", () -> called.getAndSet(true)))
+                .isInstanceOf(SqlServerUnavailableException.class);
+        assertThat(called).isFalse();
+        assertThat(guard.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        fail();
+        assertThat(guard.call("sp", () -> "ok")).isEqualTo("ok");
+        fail();
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.CLOSED);
+    }
+
+    @Test
+    void successfulTrialClosesTheCircuit() throws InterruptedException {
+        fail();
+        fail();
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+        assertThat(guard.call("sp", () -> "ok")).isEqualTo("ok");
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialReopensTheCircuit() throws InterruptedException {
+        fail();
+        fail();
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+        fail();
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.OPEN);
+    }
+
+    @Test
+    void errorDuringTheTrialReopensTheCircuit() throws InterruptedException {
+        fail();
+        fail();
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+
+        assertThatThrownBy(() -> guard.call("sp", () -> {
+            throw new OutOfMemoryError("result set too large");
+        })).isInstanceOf(OutOfMemoryError.class);
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.OPEN);
+        assertThat(guard.getAvailablePermits()).isEqualTo(2);
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        assertThat(guard.call("sp", () -> "ok")).isEqualTo("ok");
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.CLOSED);
+    }
+
+    @Test
+    void programmingErrorsDoNotOpenTheCircuit() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> guard.call("sp", () -> {
+                throw new BadSqlGrammarException("sp", "EXEC sp", new SQLException("Invalid column"));
+            })).isInstanceOf(BadSqlGrammarException.class);
+        }
+        assertThat(guard.getState()).isEqualTo(SqlServerGuard.State.CLOSED);
+    }
+
+    @Test
+    void fullBulkheadRejects() {
+        assertThatThrownBy(() -> guard.call("a", () -> guard.call("b", () -> guard.call("c", () -> "unreachable"))))
+                .isInstanceOf(SqlServerUnavailableException.class)
+                .hasMessageContaining("too many concurrent");
+        assertThat(guard.getRejected()).isEqualTo(1);
+        assertThat(guard.getAvailablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void backgroundWorkUsesItsOwnLane() {
+        String result = guard.background(() -> guard.call("sp", () -> {
+            assertThat(guard.getAvailableBackgroundPermits()).isZero();
+            assertThat(guard.getAvailablePermits()).isEqualTo(2);
+            assertThat(guard.hasBackgroundCapacity()).isFalse();
+            return "ok";
+        }));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(guard.getAvailableBackgroundPermits()).isEqualTo(1);
+        assertThat(guard.hasBackgroundCapacity()).isTrue();
+        // the marker is cleared afterwards: this call takes a user permit again
+        guard.call("sp", () -> assertThat(guard.getAvailablePermits()).isEqualTo(1));
+    }
+
+    @Test
+    void noBackgroundCapacityWhileTheCircuitIsOpen() {
+        fail();
+        fail();
+
+        assertThat(guard.hasBackgroundCapacity()).isFalse();
+    }
+}
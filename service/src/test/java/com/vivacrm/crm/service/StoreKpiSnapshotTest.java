@@ -0,0 +1,99 @@
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.StoreKpi;
+import com.vivacrm.crm.service.dto.StoreKpiBatch;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreKpiSnapshotTest {
+
+    private static final LocalDateTime AS_OF = LocalDateTime.of(2025, 8, 27, 10, 5);
+
+    static StoreKpi kpi(int storeId, String name, String revenue, int tx, String pct) {
+        BigDecimal rev = new BigDecimal(revenue);
+        return new StoreKpi(storeId, name, rev, BigDecimal.ZERO, tx, 0,
+                BigDecimal.ZERO, BigDecimal.ZERO, rev, new BigDecimal(pct), tx, BigDecimal.ZERO, BigDecimal.ZERO,
+                10, "10h", BigDecimal.ZERO, "", BigDecimal.ZERO, "");
+    }
+
+    private final StoreKpiSnapshot snapshot = StoreKpiSnapshot.of(List.of(
+            kpi(103, "Alpha", "300.00", 3, "5.00"),
+            kpi(101, "Beta", "100.00", 9, "-1.00"),
+            kpi(102, "Gamma", "300.00", 1, "12.50")), AS_OF);
+
+    @Test
+    void indexesByStoreIdAndKeepsSpOrder() {
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.get(101).storeName()).isEqualTo("Beta");
+        assertThat(snapshot.get(104)).isNull();
+        assertThat(snapshot.contains(102)).isTrue();
+        assertThat(snapshot.all()).extracting(StoreKpi::storeName).containsExactly("Alpha", "Beta", "Gamma");
+        assertThat(snapshot.isLoaded()).isTrue();
+        assertThat(snapshot.isStale()).isFalse();
+    }
+
+    @Test
+    void dropsRowsWithoutStoreIdAndKeepsFirstDuplicate() {
+        StoreKpiSnapshot s = StoreKpiSnapshot.of(List.of(
+                kpi(0, "Legacy", "1.00", 1, "0"),
+                kpi(7, "First", "1.00", 1, "0"),
+                kpi(7, "Second", "2.00", 2, "0")), AS_OF);
+
+        assertThat(s.size()).isEqualTo(1);
+        assertThat(s.contains(0)).isFalse();
+        assertThat(s.get(7).storeName()).isEqualTo("First");
+    }
+
+    @Test
+    void restrictToKeepsGenerationAndOrder() {
+        StoreKpiSnapshot scoped = snapshot.asStale().restrictTo(StoreScope.of(102, 103, 999));
+
+        assertThat(scoped.size()).isEqualTo(2);
+        assertThat(scoped.all()).extracting(StoreKpi::storeId).containsExactly(103, 102);
+        assertThat(scoped.contains(101)).isFalse();
+        assertThat(scoped.asOf()).isEqualTo(AS_OF);
+        assertThat(scoped.isStale()).isTrue();
+        assertThat(snapshot.restrictTo(StoreScope.ALL)).isSameAs(snapshot);
+    }
+
+    @Test
+    void fullBatchIsSortedDescendingWithStoreIdTieBreakAndShared() {
+        StoreKpiBatch byRevenue = snapshot.fullBatch(StoreKpiSort.REVENUE);
+
+        assertThat(byRevenue.stores()).extracting(StoreKpi::storeId).containsExactly(102, 103, 101);
+        assertThat(snapshot.fullBatch(StoreKpiSort.TX).stores()).extracting(StoreKpi::storeId)
+                .containsExactly(101, 103, 102);
+        assertThat(snapshot.fullBatch(StoreKpiSort.PCT).stores()).extracting(StoreKpi::storeId)
+                .containsExactly(102, 103, 101);
+        assertThat(snapshot.fullBatch(null).stores()).extracting(StoreKpi::storeId).containsExactly(103, 101, 102);
+        assertThat(snapshot.fullBatch(StoreKpiSort.REVENUE)).isSameAs(byRevenue);
+    }
+
+    @Test
+    void staleCopyIsTheSameGeneration() {
+        StoreKpiSnapshot stale = snapshot.asStale();
+
+        assertThat(stale.isStale()).isTrue();
+        assertThat(stale.asStale()).isSameAs(stale);
+        assertThat(stale.get(101)).isSameAs(snapshot.get(101));
+        assertThat(stale.isSameGeneration(snapshot)).isTrue();
+        assertThat(stale.isNewerThan(snapshot)).isFalse();
+        assertThat(StoreKpiSnapshot.EMPTY.asStale()).isSameAs(StoreKpiSnapshot.EMPTY);
+    }
+
+    @Test
+    void newerGenerationIsDetected() {
+        StoreKpiSnapshot next = StoreKpiSnapshot.of(snapshot.all(), AS_OF.plusHours(1));
+
+        assertThat(next.isNewerThan(snapshot)).isTrue();
+        assertThat(snapshot.isNewerThan(next)).isFalse();
+        assertThat(snapshot.isNewerThan(StoreKpiSnapshot.EMPTY)).isTrue();
+        assertThat(next.isSameGeneration(snapshot)).isFalse();
+        assertThat(StoreKpiSnapshot.EMPTY.isLoaded()).isFalse();
+    }
+}
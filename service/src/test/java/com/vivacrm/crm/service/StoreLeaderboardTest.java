@@ -0,0 +1,99 @@
+package com.vivacrm.crm.service;
+
+import com.vivacrm.crm.service.dto.Leaderboard;
+import com.vivacrm.crm.service.dto.LeaderboardEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.vivacrm.crm.service.StoreKpiSnapshotTest.kpi;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreLeaderboardTest {
+
+    private static final LocalDateTime AS_OF = LocalDateTime.of(2025, 8, 27, 10, 5);
+
+    private final StoreKpiSnapshot snapshot = StoreKpiSnapshot.of(List.of(
+            kpi(4, "Delta", "200.00", 40, "0"),
+            kpi(1, "Alpha", "500.00", 10, "0"),
+            kpi(3, "Gamma", "300.00", 30, "0"),
+            kpi(2, "Beta", "400.00", 20, "0")), AS_OF);
+
+    private final StoreLeaderboard board = StoreLeaderboard.of(snapshot, null);
+
+    @Test
+    void ranksEveryOrder() {
+        assertThat(board.size()).isEqualTo(4);
+        assertThat(board.rank(1, StoreKpiSort.REVENUE)).isEqualTo(1);
+        assertThat(board.rank(4, StoreKpiSort.REVENUE)).isEqualTo(4);
+        assertThat(board.rank(4, StoreKpiSort.TX)).isEqualTo(1);
+        assertThat(board.rank(99, StoreKpiSort.REVENUE)).isEqualTo(-1);
+        assertThat(board.atRank(2, StoreKpiSort.REVENUE).storeId()).isEqualTo(2);
+        assertThat(board.atRank(0, StoreKpiSort.REVENUE)).isNull();
+        assertThat(board.atRank(5, StoreKpiSort.REVENUE)).isNull();
+        assertThat(board.asOf()).isEqualTo(AS_OF);
+    }
+
+    @Test
+    void fullBoardHasGapsToNeighboursAndIsShared() {
+        Leaderboard full = board.full(StoreKpiSort.REVENUE);
+
+        assertThat(full.by()).isEqualTo("revenue");
+        assertThat(full.stores()).extracting(LeaderboardEntry::storeId).containsExactly(1, 2, 3, 4);
+        LeaderboardEntry second = full.stores().get(1);
+        assertThat(second.gapToPrevious()).isEqualByComparingTo("100.00");
+        assertThat(second.gapToNext()).isEqualByComparingTo("100.00");
+        assertThat(full.stores().get(0).gapToPrevious()).isNull();
+        assertThat(full.stores().get(3).gapToNext()).isNull();
+        assertThat(full.stores().get(0).rankDelta()).isNull();
+        assertThat(board.full(StoreKpiSort.REVENUE)).isSameAs(full);
+    }
+
+    @Test
+    void scopedViewKeepsChainRanksButOnlyDisclosesGapsWithinScope() {
+        Leaderboard view = board.view(StoreKpiSort.REVENUE, StoreScope.of(2, 4), null);
+
+        assertThat(view.stores()).extracting(LeaderboardEntry::rank).containsExactly(2, 4);
+        LeaderboardEntry beta = view.stores().get(0);
+        LeaderboardEntry delta = view.stores().get(1);
+        assertThat(beta.gapToPrevious()).isNull(); // Alpha is outside the scope
+        assertThat(beta.gapToNext()).isEqualByComparingTo("200.00");
+        assertThat(delta.gapToPrevious()).isEqualByComparingTo("200.00");
+        assertThat(delta.gapToNext()).isNull();
+    }
+
+    @Test
+    void topCutsTheViewButKeepsTheNextGap() {
+        Leaderboard top = board.view(StoreKpiSort.REVENUE, StoreScope.ALL, 2);
+
+        assertThat(top.stores()).extracting(LeaderboardEntry::storeId).containsExactly(1, 2);
+        assertThat(top.stores().get(1).gapToNext()).isEqualByComparingTo("100.00");
+        assertThat(board.view(StoreKpiSort.REVENUE, StoreScope.ALL, 0).stores()).isEmpty();
+    }
+
+    @Test
+    void rankDeltaComparesWithTheBaseline() {
+        StoreLeaderboard previous = StoreLeaderboard.of(StoreKpiSnapshot.of(List.of(
+                kpi(4, "Delta", "900.00", 40, "0"),
+                kpi(1, "Alpha", "500.00", 10, "0"),
+                kpi(2, "Beta", "400.00", 20, "0")), AS_OF.minusHours(1)), null);
+        StoreLeaderboard current = StoreLeaderboard.of(snapshot, previous);
+
+        List<LeaderboardEntry> entries = current.full(StoreKpiSort.REVENUE).stores();
+        assertThat(entries.get(0).rankDelta()).isEqualTo(1);  // Alpha 2 -> 1
+        assertThat(entries.get(1).rankDelta()).isEqualTo(1);  // Beta 3 -> 2
+        assertThat(entries.get(2).rankDelta()).isNull();      // Gamma was not ranked
+        assertThat(entries.get(3).rankDelta()).isEqualTo(-3); // Delta 1 -> 4
+    }
+
+    @Test
+    void onlyTheDirectPredecessorIsKept() {
+        StoreLeaderboard second = StoreLeaderboard.of(snapshot, board);
+        StoreLeaderboard third = StoreLeaderboard.of(snapshot, second);
+
+        assertThat(third.baseline()).isNotNull();
+        assertThat(third.baseline().baseline()).isNull();
+        assertThat(StoreLeaderboard.EMPTY.size()).isZero();
+    }
+}
@@ -0,0 +1,131 @@
+package com.vivacrm.crm.user;
+
+import com.vivacrm.crm.util.Sha256;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository repo;
+
+    private RefreshTokenService service;
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        service = new RefreshTokenService(repo, Duration.ofDays(30));
+        user.setUsername("ana");
+    }
+
+    private RefreshToken stored(String token, LocalDateTime expiresAt, LocalDateTime revokedAt) {
+        RefreshToken rt = new RefreshToken();
+        rt.setTokenHash(Sha256.base64(token));
+        rt.setUser(user);
+        rt.setExpiresAt(expiresAt);
+        rt.setRevokedAt(revokedAt);
+        return rt;
+    }
+
+    @Test
+    void issueStoresOnlyTheHash() {
+        String token = service.issue(user);
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(repo).save(saved.capture());
+        assertThat(saved.getValue().getTokenHash()).isEqualTo(Sha256.base64(token)).isNotEqualTo(token);
+        assertThat(saved.getValue().getUser()).isSameAs(user);
+        assertThat(saved.getValue().getExpiresAt()).isAfter(LocalDateTime.now().plusDays(29));
+        assertThat(service.issue(user)).isNotEqualTo(token);
+    }
+
+    @Test
+    void rotationRevokesThePresentedTokenAndIssuesANewOne() {
+        RefreshToken current = stored("old", LocalDateTime.now().plusDays(1), null);
+        when(repo.findByTokenHash(Sha256.base64("old"))).thenReturn(Optional.of(current));
+        when(repo.revokeIfActive(eq(Sha256.base64("old")), any())).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = service.rotate("old").orElseThrow();
+
+        assertThat(rotation.user()).isSameAs(user);
+        assertThat(rotation.refreshToken()).isNotEqualTo("old");
+        verify(repo).save(any(RefreshToken.class)); // only the new token; the old one is revoked by update
+    }
+
+    @Test
+    void losingAConcurrentRotationCountsAsReuse() {
+        RefreshToken current = stored("old", LocalDateTime.now().plusDays(1), null);
+        RefreshToken winner = stored("new", LocalDateTime.now().plusDays(1), null);
+        when(repo.findByTokenHash(Sha256.base64("old"))).thenReturn(Optional.of(current));
+        when(repo.revokeIfActive(eq(Sha256.base64("old")), any())).thenReturn(0);
+        when(repo.findAllByUserAndRevokedAtIsNull(user)).thenReturn(List.of(winner));
+
+        assertThat(service.rotate("old")).isEmpty();
+
+        assertThat(winner.isRevoked()).isTrue();
+        verify(repo, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesAllOfTheUsersTokens() {
+        RefreshToken rotated = stored("old", LocalDateTime.now().plusDays(1), LocalDateTime.now().minusMinutes(5));
+        RefreshToken active = stored("new", LocalDateTime.now().plusDays(1), null);
+        when(repo.findByTokenHash(Sha256.base64("old"))).thenReturn(Optional.of(rotated));
+        when(repo.findAllByUserAndRevokedAtIsNull(user)).thenReturn(List.of(active));
+
+        assertThat(service.rotate("old")).isEmpty();
+
+        assertThat(active.isRevoked()).isTrue();
+        verify(repo, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void expiredTokenIsRejectedWithoutRotation() {
+        RefreshToken expired = stored("old", LocalDateTime.now().minusMinutes(1), null);
+        when(repo.findByTokenHash(Sha256.base64("old"))).thenReturn(Optional.of(expired));
+
+        assertThat(service.rotate("old")).isEmpty();
+
+        assertThat(expired.isRevoked()).isFalse();
+        verify(repo, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void unknownOrMissingTokenIsRejected() {
+        when(repo.findByTokenHash(any())).thenReturn(Optional.empty());
+
+        assertThat(service.rotate("forged")).isEmpty();
+        assertThat(service.rotate(null)).isEmpty();
+        verify(repo, never()).findAllByUserAndRevokedAtIsNull(any());
+    }
+
+    @Test
+    void revokeIgnoresUnknownAndAlreadyRevokedTokens() {
+        RefreshToken revoked = stored("gone", LocalDateTime.now().plusDays(1), LocalDateTime.now().minusDays(1));
+        when(repo.findByTokenHash(Sha256.base64("gone"))).thenReturn(Optional.of(revoked));
+        when(repo.findByTokenHash(Sha256.base64("unknown"))).thenReturn(Optional.empty());
+
+        service.revoke("gone");
+        service.revoke("unknown");
+        service.revoke(null);
+
+        verify(repo, never()).save(any(RefreshToken.class));
+    }
+}